@@ -2,6 +2,7 @@
 <%@page import="com.mehinovic.kalah.game.Kalah"%>
 <%@page import="com.mehinovic.kalah.servlet.KalahServlet"%>
 <%@page import="com.mehinovic.kalah.game.KalahConfiguration"%>
+<%@page import="com.mehinovic.kalah.game.repository.GameRepository"%>
 <%@page contentType="text/html" pageEncoding="UTF-8"%>
 <!doctype html>
 <html>
@@ -20,9 +21,19 @@
         <![endif]-->
     </head>
     <%
-        final Kalah game = (Kalah) session.getAttribute(KalahServlet.GAME_KEY);
+        // the session only keeps the id of its game
+        final Object gameId = session.getAttribute(KalahServlet.GAME_KEY);
+        final Kalah game = gameId instanceof Long ? GameRepository.shared().get((Long) gameId) : null;
         final boolean hasGame = game != null;
-        final KalahConfiguration gameConfig = new KalahConfiguration();
+        final KalahConfiguration gameConfig = hasGame ? game.getConfiguration() : new KalahConfiguration();
+
+        // the game of an invitation link, played against the browser that sent it
+        long joinGame = -1;
+        try {
+            joinGame = Long.parseLong(request.getParameter("join"));
+        } catch (NumberFormatException e) {
+            // not an invitation
+        }
     %>
     <body>
         <div class="container">
@@ -52,11 +63,26 @@
             </div>
             <div class="row">
             	<div class="col-xs-10 col-xs-offset-1">
-            		<button id="resetGame" type="button" class="btn btn-primary">New Game</button>
+            		<form class="form-inline" onsubmit="return false;">
+            			<label for="pits">Pits</label>
+            			<input id="pits" type="number" class="form-control" min="1" max="<%= KalahServlet.MAX_PITS %>" value="<%= gameConfig.getPits() %>">
+            			<label for="stones">Stones</label>
+            			<input id="stones" type="number" class="form-control" min="1" max="<%= KalahServlet.MAX_STONES %>" value="<%= gameConfig.getStones() %>">
+            			<label for="opponent">Opponent</label>
+            			<select id="opponent" class="form-control">
+            				<option value="human">Same browser</option>
+            				<option value="computer">Computer</option>
+            				<option value="remote">Another browser</option>
+            			</select>
+            			<button id="resetGame" type="button" class="btn btn-primary">New Game</button>
+            			<button id="undoMove" type="button" class="btn btn-default" disabled>Undo</button>
+            			<button id="redoMove" type="button" class="btn btn-default" disabled>Redo</button>
+            		</form>
+            		<p id="invite" class="help-block"></p>
             	</div>
             </div>
         </div>
-        <script>var hasGame = <%= hasGame %>, pSize = <%= gameConfig.getPits() %>, sSize = <%= gameConfig.getStones() %>;</script>
+        <script>var hasGame = <%= hasGame %>, joinGame = <%= joinGame %>, pSize = <%= gameConfig.getPits() %>, sSize = <%= gameConfig.getStones() %>;</script>
         <script src="resources/js/vendor/prototype.js"></script>
         <script src="resources/js/main.js"></script>
     </body>
@@ -1,39 +1,64 @@
 /* global Ajax, $R */
 var Game = (function() {
+    // the compact response, see KalahServlet
+    var API_VERSION = 2,
+        FLAG_FREE_MOVE = 1,
+        FLAG_GAME_OVER = 2,
+        FLAG_PLAYER_ONE_WON = 4,
+        FLAG_PLAYER_TWO_WON = 8,
+        // the pause before waiting again when a wait failed
+        RETRY_MILLIS = 5000;
+
     var p1Pits = $('playerOnePits'),
         p2Pits = $('playerTwoPits'),
+        // the compact game the server sent, kept up to date with the deltas
+        game,
+        gameId,
+        version,
         config,
         currentPlayer,
         playerOne,
-        playerTwo;
+        playerTwo,
+        // the player of this browser against another browser, null when it plays both
+        seat,
+        waiting = false;
 
     /**
      * resets the game
      */
     function reset() {
+        game = null;
+        gameId = null;
+        version = null;
         config = null;
         currentPlayer = null;
         playerOne = null;
         playerTwo = null;
+        seat = null;
 
         p1Pits.update();
         p2Pits.update();
     }
 
-    function createPits() {
-    	var pps = window.pSize;
+    function createPits(gameConfig) {
+        var pps = gameConfig.pits,
+            // any amount of pits has to fit on one row
+            width = 'width: ' + (100 / pps) + '%';
+
         $R(0, pps - 1).each(function(idx) {
             p1Pits.insert({
                 bottom: new Element('div', {
                     id: 'p1p' + (pps - 1 - idx),
-                    class: 'pit col-xs-' + (12 / pps)
+                    class: 'pit',
+                    style: width
                 })
             });
 
             p2Pits.insert({
                 bottom: new Element('div', {
                     id: 'p2p' + idx,
-                    class: 'pit col-xs-' + (12 / pps)
+                    class: 'pit',
+                    style: width
                 })
             });
         });
@@ -45,21 +70,73 @@ var Game = (function() {
     function startNewGame() {
         reset();
 
-        var pps = window.pSize;
         new Ajax.Request('api', {
             method: 'post',
             parameters: {
+                v: API_VERSION,
                 action: 'new',
+                pits: $F('pits'),
+                stones: $F('stones'),
+                opponent: $F('opponent')
             },
             onSuccess: function(resp) {
                 // create the initial pits
-                createPits();
+                createPits(resp.responseJSON.game);
                 // and update the state
                 updateState(resp.responseJSON);
             }
         });
     }
 
+    /**
+     * takes the second seat of a game started in another browser
+     */
+    function joinGame(id) {
+        reset();
+
+        new Ajax.Request('api', {
+            method: 'post',
+            parameters: {
+                v: API_VERSION,
+                action: 'join',
+                game: id
+            },
+            onSuccess: function(resp) {
+                createPits(resp.responseJSON.game);
+                updateState(resp.responseJSON);
+            }
+        });
+    }
+
+    /**
+     * waits for the opponent in another browser to move, the server answers once the game changed
+     * or after a while without a move, and we wait again
+     */
+    function waitForOpponent() {
+        if (!seat || waiting) {
+            return;
+        }
+
+        waiting = true;
+        new Ajax.Request('api', {
+            method: 'post',
+            parameters: {
+                v: API_VERSION,
+                action: 'wait',
+                id: gameId,
+                since: version
+            },
+            onComplete: function(resp) {
+                waiting = false;
+                if (resp.responseJSON) {
+                    updateState(resp.responseJSON);
+                } else {
+                    setTimeout(waitForOpponent, RETRY_MILLIS);
+                }
+            }
+        });
+    }
+
     /**
      * updates the state without modifying anything
      */
@@ -67,10 +144,13 @@ var Game = (function() {
         var json;
         new Ajax.Request('api', {
             method: 'post',
+            parameters: {
+                v: API_VERSION
+            },
             onSuccess: function(resp) {
                 json = resp.responseJSON;
                 // create the loaded pits
-                createPits();
+                createPits(json.game);
                 // update the state
                 updateState(json);
             }
@@ -81,7 +161,7 @@ var Game = (function() {
      * plays a move from the selected pit.
      */
     function playMove(pitElement) {
-        var parts = /^p(\d{1})p(\d{1})$/.exec(pitElement.id);
+        var parts = /^p(\d{1})p(\d+)$/.exec(pitElement.id);
         if (!parts || parts[1] !== String(currentPlayer)) {
             updateMessage('warning', 'That is not your pit '
                     + getCurrentPlayer().playerName + ', please try again!');
@@ -89,8 +169,12 @@ var Game = (function() {
             new Ajax.Request('api', {
                 method: 'post',
                 parameters: {
+                    v: API_VERSION,
                     action: 'play',
-                    pitId: parts[2]
+                    pitId: parts[2],
+                    // the server only sends what changed since our version
+                    id: gameId,
+                    since: version
                 },
                 onSuccess: function(resp) {
                     updateState(resp.responseJSON);
@@ -99,6 +183,25 @@ var Game = (function() {
         }
     }
 
+    /**
+     * takes back the last move or plays it again, action is undo or redo
+     */
+    function stepMove(action) {
+        new Ajax.Request('api', {
+            method: 'post',
+            parameters: {
+                v: API_VERSION,
+                action: action,
+                // the moves taken back are sent as a delta like a move
+                id: gameId,
+                since: version
+            },
+            onSuccess: function(resp) {
+                updateState(resp.responseJSON);
+            }
+        });
+    }
+
     function updatePlayerStoreAndPits(player) {
         var kalah = $('kalahp' + player.playerId),
             pitEl, isActive;
@@ -108,14 +211,14 @@ var Game = (function() {
 
         kalah.update('<span class="label label-primary">'
                 + player.playerName + '</span><h2>'
-                + player.store.stones.length + '</h2>');
+                + player.store.stones + '</h2>');
 
         // set active states
         kalah[(isActive ? 'add' : 'remove') + 'ClassName']('active');
 
         player.pits.each(function(pit) {
             pitEl = $('p' + player.playerId + 'p' + pit.pitId);
-            pitEl.update('<span class="badge">' + pit.stones.length + '</span>');
+            pitEl.update('<span class="badge">' + pit.stones + '</span>');
 
             // set active states
             pitEl[(isActive ? 'add' : 'remove') + 'ClassName']('active');
@@ -130,6 +233,41 @@ var Game = (function() {
                     + 'ClassName']('opp-active');
     }
 
+    /**
+     * reads a player's pits and store from the compact board,
+     * which holds player one's pits and store followed by player two's
+     */
+    function readPlayer(game, playerId) {
+        var offset = (playerId - 1) * (game.pits + 1);
+
+        return {
+            playerId: playerId,
+            playerName: 'Player' + playerId,
+            store: {
+                stones: game.board[offset + game.pits]
+            },
+            pits: $R(0, game.pits - 1).map(function(idx) {
+                return {
+                    pitId: idx,
+                    stones: game.board[offset + idx]
+                };
+            })
+        };
+    }
+
+    /**
+     * applies the changed cells of the board, the changes hold each cell followed by its stones
+     */
+    function applyDelta(delta) {
+        var changes = delta.changes,
+            idx;
+
+        game.current = delta.current;
+        for (idx = 0; idx < changes.length; idx += 2) {
+            game.board[changes[idx]] = changes[idx + 1];
+        }
+    }
+
     function getCurrentPlayer() {
         return playerOne.playerId === currentPlayer
                 ? playerOne : playerTwo;
@@ -140,15 +278,49 @@ var Game = (function() {
      */
     function updateState(state) {
         if (state) {
-            config = state.game.configuration;
-            currentPlayer = state.game.currentPlayer;
-            playerOne = state.game.playerOne;
-            playerTwo = state.game.playerTwo;
+            // our own move may have been answered before the wait that started earlier,
+            // a full board is always taken, the server's version goes back when it lost its last moves in a crash
+            if (state.delta && state.version < version) {
+                waitForOpponent();
+                return;
+            }
+
+            if (state.game === null) {
+                if (game) {
+                    updateMessage('warning', 'The game has been closed, please start a new one');
+                }
+                return;
+            } else if (state.game) {
+                game = state.game;
+                gameId = state.id;
+            } else if (state.delta && game) {
+                applyDelta(state.delta);
+            } else {
+                return;
+            }
+            version = state.version;
+
+            config = {
+                pits: game.pits
+            };
+            currentPlayer = game.current;
+            playerOne = readPlayer(game, 1);
+            playerTwo = readPlayer(game, 2);
 
             updatePlayerStoreAndPits(playerOne);
             updatePlayerStoreAndPits(playerTwo);
 
-            if (!state.freeMovePlayer) {
+            // moves are only taken back in a browser that plays both players
+            seat = state.seat || null;
+            $('undoMove').disabled = !state.moves || seat;
+            $('redoMove').disabled = !state.takenBack || seat;
+            $('invite').update(seat === 1
+                    ? 'Send this link to your opponent: ' + location.href.split('?')[0] + '?join=' + gameId
+                    : '');
+
+            if (seat && seat !== currentPlayer) {
+                updateMessage('info', 'Waiting for ' + getCurrentPlayer().playerName + ' to move');
+            } else if (!(state.flags & FLAG_FREE_MOVE)) {
                 updateMessage('info', 'Please make a move '
                         + getCurrentPlayer().playerName);
             } else {
@@ -159,13 +331,18 @@ var Game = (function() {
             if (state.problem) {
             	updateMessage('danger', state.problem);
             } else {
-                if (state.tied) {
+                if (state.flags & FLAG_PLAYER_ONE_WON) {
+                    updateMessage('success', 'Game Over, ' + playerOne.playerName
+                            + ' won, and ' + playerTwo.playerName + ' lost!');
+                } else if (state.flags & FLAG_PLAYER_TWO_WON) {
+                    updateMessage('success', 'Game Over, ' + playerTwo.playerName
+                            + ' won, and ' + playerOne.playerName + ' lost!');
+                } else if (state.flags & FLAG_GAME_OVER) {
                     updateMessage('success', 'Game Over, you have a tie!');
-                } else if (state.winner && state.loser) {
-                    updateMessage('success', 'Game Over, ' + state.winner
-                            + ' won, and ' + state.loser + ' lost!');
                 }
             }
+
+            waitForOpponent();
         }
     }
 
@@ -181,7 +358,9 @@ var Game = (function() {
     return {
         loadGameFromSession: loadGameFromSession,
         startNewGame: startNewGame,
-        playMove: playMove
+        joinGame: joinGame,
+        playMove: playMove,
+        stepMove: stepMove
     };
 })();
 
@@ -190,11 +369,21 @@ document.observe('dom:loaded', function () {
         Game.startNewGame();
     });
 
+    document.on('click', '#undoMove', function() {
+        Game.stepMove('undo');
+    });
+
+    document.on('click', '#redoMove', function() {
+        Game.stepMove('redo');
+    });
+
     document.on('click', 'div.pit[id] > span.badge', function(ev, el) {
         Game.playMove(el.up('div.pit'));
     });
 
-    if (window.hasGame) {
+    if (window.joinGame >= 0) {
+        Game.joinGame(window.joinGame);
+    } else if (window.hasGame) {
         Game.loadGameFromSession();
     } else {
     	Game.startNewGame();
@@ -0,0 +1,144 @@
+package com.mehinovic.kalah.game;
+
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import com.mehinovic.kalah.game.events.KalahEvent;
+import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.events.MoveSummary;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Creates games for the benchmarks without going through the servlet
+ */
+public final class BenchGames {
+
+    private BenchGames() {
+    }
+
+    /**
+     * creates a new started game with two bench players, the listener is called for every event
+     * @param configuration the configuration to use for the game
+     * @return a started game, player one is to move
+     */
+    public static Kalah newGame(final KalahConfiguration configuration) {
+        return newGame(configuration, EnumSet.allOf(KalahEvent.class));
+    }
+
+    /**
+     * creates a new started game with two bench players
+     * @param configuration the configuration to use for the game
+     * @param events the events the listener asks for
+     * @return a started game, player one is to move
+     */
+    public static Kalah newGame(final KalahConfiguration configuration, final Set<KalahEvent> events) {
+        return newGame(configuration, new NoopListener(events));
+    }
+
+    /**
+     * creates a new started game with two bench players
+     * @param configuration the configuration to use for the game
+     * @param listener the listener of the game
+     * @return a started game, player one is to move
+     */
+    public static Kalah newGame(final KalahConfiguration configuration, final KalahListener listener) {
+        final Kalah game = new Kalah(configuration, listener);
+        game.setPlayerOne(new BenchPlayer(game, 1));
+        game.setPlayerTwo(new BenchPlayer(game, 2));
+        game.startGame();
+
+        return game;
+    }
+
+    /**
+     * plays the current player's first pit holding stones from a pit on,
+     * so a benchmark can keep playing one game instead of creating a game per call
+     * @param game a started game that has not ended
+     * @param pitId the pit to look for stones from
+     * @return true if the move ended the game, the benchmark starts a new one
+     */
+    public static boolean play(final Kalah game, final int pitId) {
+        final BenchPlayer player = (BenchPlayer) game.getCurrentPlayer();
+        final int pits = game.getConfiguration().getPits();
+        // a game that has not ended leaves the player to move a pit with stones
+        int pit = pitId;
+        while (player.countPitStones(pit) == 0) {
+            pit = (pit + 1) % pits;
+        }
+        player.play(pit);
+
+        return game.isEndOfGame() != null;
+    }
+
+    /**
+     * Player that can be driven directly by a benchmark
+     */
+    public static final class BenchPlayer extends Player {
+
+        private static final long serialVersionUID = 1L;
+
+        public BenchPlayer(final Kalah game, final int playerId) {
+            super(game, playerId);
+        }
+
+        /**
+         * plays a round of kalah from the specified pitId
+         * @param pitId the pit to distribute from
+         */
+        public void play(final int pitId) {
+            this.distributeFromPit(pitId);
+        }
+    }
+
+    /**
+     * Listener that ignores every event
+     */
+    public static final class NoopListener implements KalahListener {
+
+        private final Set<KalahEvent> events;
+
+        /**
+         * a listener without events, the constructor a game snapshot creates its listener with
+         */
+        public NoopListener() {
+            this(EnumSet.noneOf(KalahEvent.class));
+        }
+
+        public NoopListener(final Set<KalahEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public Set<KalahEvent> getEvents() {
+            return this.events;
+        }
+
+        @Override
+        public void gameStart() {}
+
+        @Override
+        public void gameEnd(Player whoWon, Player whoLost) {}
+
+        @Override
+        public void distStart(Player player, Pit fromPit) {}
+
+        @Override
+        public void distEnd(Player player, Pit fromPit) {}
+
+        @Override
+        public void playerSwitch(Player newPlayer) {}
+
+        @Override
+        public void freeMove(Player forPlayer) {}
+
+        @Override
+        public void pitEmpty(Pit pit) {}
+
+        @Override
+        public void stonesAdded(StoneContainer container, int amount) {}
+
+        @Override
+        public void moveSummary(MoveSummary summary) {}
+    }
+}
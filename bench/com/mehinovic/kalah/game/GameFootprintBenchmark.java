@@ -0,0 +1,29 @@
+package com.mehinovic.kalah.game;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap footprint of a freshly created game.
+ * Run with the gc profiler (-prof gc), gc.alloc.rate.norm is the amount
+ * of bytes allocated per game, which is the retained size of a new game
+ * plus a handful of bytes for the container id strings' builders.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameFootprintBenchmark {
+
+    @Benchmark
+    public Kalah newGame() {
+        return BenchGames.newGame(new KalahConfiguration());
+    }
+}
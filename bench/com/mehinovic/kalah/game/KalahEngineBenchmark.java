@@ -0,0 +1,88 @@
+package com.mehinovic.kalah.game;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the engine hot paths over the supported board sizes,
+ * from Kalah(4,3) up to large training boards. The board is passed as pits x stones.
+ * Run with the gc profiler (-prof gc) for the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KalahEngineBenchmark {
+
+    @Param({"4x3", "6x6", "12x12", "32x48"})
+    public String board;
+
+    private KalahConfiguration configuration;
+    private Kalah game;
+    private final JsonWriter writer = new JsonWriter(4096);
+
+    @Setup(Level.Trial)
+    public void parseBoard() {
+        final String[] size = this.board.split("x");
+        this.configuration = new KalahConfiguration(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+    }
+
+    /**
+     * a game per iteration, the reads leave it unchanged and distributeFromPit plays it on
+     */
+    @Setup(Level.Iteration)
+    public void newGame() {
+        this.game = BenchGames.newGame(this.configuration);
+    }
+
+    @Benchmark
+    public Kalah createGame() {
+        return BenchGames.newGame(this.configuration);
+    }
+
+    /**
+     * the moves of whole games from the middle pit on, a new game is only created when one ends
+     */
+    @Benchmark
+    public Kalah distributeFromPit() {
+        if (BenchGames.play(this.game, this.configuration.getPits() / 2)) {
+            this.newGame();
+        }
+        return this.game;
+    }
+
+    @Benchmark
+    public Object isEndOfGame() {
+        return this.game.isEndOfGame();
+    }
+
+    @Benchmark
+    public String serializeGame() {
+        return KalahSerializer.serializeGame(this.game);
+    }
+
+    @Benchmark
+    public int writeGame() {
+        KalahSerializer.writeGame(this.game, this.writer.reset());
+        return this.writer.size();
+    }
+
+    @Benchmark
+    public int writeCompact() {
+        KalahSerializer.writeCompact(this.game, this.writer.reset());
+        return this.writer.size();
+    }
+}
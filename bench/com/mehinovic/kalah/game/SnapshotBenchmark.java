@@ -0,0 +1,99 @@
+package com.mehinovic.kalah.game;
+
+import com.mehinovic.kalah.game.BenchGames.NoopListener;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.impl.RequestPlayer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and reading back a game through java serialization, as a snapshot
+ * and as the default serialization of its players. The board is passed as pits x stones.
+ * The bytes counter divided by the operations is the size of the serialized game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    /**
+     * the moves played before the game is serialized
+     */
+    private static final int MOVES = 8;
+
+    @Param({"6x6", "32x48"})
+    public String board;
+
+    private Kalah game;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void newGame() {
+        final String[] size = this.board.split("x");
+        final KalahConfiguration configuration =
+                new KalahConfiguration(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+
+        this.game = new Kalah(configuration, new NoopListener());
+        this.game.setPlayerOne(new RequestPlayer(this.game, 1));
+        this.game.setPlayerTwo(new RequestPlayer(this.game, 2));
+        this.game.startGame();
+
+        // play the first non empty pit a few times, so the board is not the initial one
+        for (int i = 0; i < MOVES && this.game.isEndOfGame() == null; i++) {
+            final Player player = this.game.getCurrentPlayer();
+            int pitId = 0;
+            while (player.countPitStones(pitId) == 0) {
+                pitId++;
+            }
+            ((RequestPlayer) player).play(pitId);
+        }
+    }
+
+    @Benchmark
+    public Object snapshot(final Counters counters) throws IOException, ClassNotFoundException {
+        return this.roundTrip(this.game, counters);
+    }
+
+    @Benchmark
+    public Object defaultPlayers(final Counters counters) throws IOException, ClassNotFoundException {
+        return this.roundTrip(new Player[] {this.game.getPlayerOne(), this.game.getPlayerTwo()}, counters);
+    }
+
+    private Object roundTrip(final Object value, final Counters counters) throws IOException, ClassNotFoundException {
+        this.buffer.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(this.buffer)) {
+            out.writeObject(value);
+        }
+        counters.bytes += this.buffer.size();
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.buffer.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mehinovic.kalah.game;
+
+import com.mehinovic.kalah.game.events.KalahEvent;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a move on a board of the configured amount of stones per pit,
+ * from a single pass around the board up to hundreds of laps.
+ * The game is played on and only created again when it ends, so the sown pits hold about the configured amount.
+ * The listener asks for every event, for none, or only for the summary of the move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SowingBenchmark {
+
+    @Param({"6", "13", "60", "600", "10000"})
+    public int stones;
+
+    @Param({"all", "none", "summary"})
+    public String events;
+
+    private Kalah game;
+
+    @Setup(Level.Iteration)
+    public void newGame() {
+        this.game = BenchGames.newGame(new KalahConfiguration(6, this.stones),
+                "all".equals(this.events) ? EnumSet.allOf(KalahEvent.class)
+                        : "none".equals(this.events) ? EnumSet.noneOf(KalahEvent.class)
+                        : EnumSet.of(KalahEvent.MOVE_SUMMARY));
+    }
+
+    @Benchmark
+    public Kalah distributeFromPit() {
+        if (BenchGames.play(this.game, 0)) {
+            this.newGame();
+        }
+        return this.game;
+    }
+}
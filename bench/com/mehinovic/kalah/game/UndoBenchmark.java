@@ -0,0 +1,70 @@
+package com.mehinovic.kalah.game;
+
+import com.mehinovic.kalah.game.BenchGames.BenchPlayer;
+import com.mehinovic.kalah.game.events.KalahEvent;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Taking back and playing again the moves of a finished game. The board is passed as pits x stones,
+ * a step only touches the cells its move changed so it takes the same time on every move of the game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UndoBenchmark {
+
+    @Param({"6x6", "32x48"})
+    public String board;
+
+    private Kalah game;
+    private int moves;
+
+    @Setup(Level.Trial)
+    public void playGame() {
+        final String[] size = this.board.split("x");
+        final KalahConfiguration configuration =
+                new KalahConfiguration(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        this.game = BenchGames.newGame(configuration, EnumSet.noneOf(KalahEvent.class));
+
+        // play the last non empty pit until the game ends
+        while (this.game.isEndOfGame() == null) {
+            final BenchPlayer player = (BenchPlayer) this.game.getCurrentPlayer();
+            int pitId = configuration.getPits() - 1;
+            while (player.countPitStones(pitId) == 0) {
+                pitId--;
+            }
+            player.play(pitId);
+        }
+        this.moves = this.game.getMovesPlayed();
+    }
+
+    @Benchmark
+    public long undoRedo() {
+        this.game.undo();
+        this.game.redo();
+        return this.game.getVersion();
+    }
+
+    @Benchmark
+    public long jumpToStartAndBack() {
+        this.game.jumpTo(0);
+        this.game.jumpTo(this.moves);
+        return this.game.getVersion();
+    }
+}
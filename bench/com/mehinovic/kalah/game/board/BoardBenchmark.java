@@ -0,0 +1,54 @@
+package com.mehinovic.kalah.game.board;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of playing a move on a board value, 6x6 is packed into two longs,
+ * the larger boards are array backed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({"6x6", "6x40", "32x48"})
+    public String board;
+
+    private Board initial;
+
+    @Setup
+    public void parseBoard() {
+        final String[] size = this.board.split("x");
+        this.initial = Board.initial(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+    }
+
+    /**
+     * plays the first legal pit until the game ends
+     */
+    @Benchmark
+    public Board playGame() {
+        Board current = this.initial;
+        while (!current.isGameOver()) {
+            int pitId = 0;
+            while (!current.isLegal(pitId)) {
+                pitId++;
+            }
+            current = current.play(pitId);
+        }
+        return current;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mehinovic.kalah.game.events;
+
+import com.mehinovic.kalah.game.BenchGames;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Latency of a move when the listener does expensive work, called inline or through the event bus
+ * with each backpressure strategy. Run with the gc profiler (-prof gc) to see that publishing allocates nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncListenerBenchmark {
+
+    @Param({"inline", "BLOCK", "DROP", "COALESCE"})
+    public String delivery;
+
+    /**
+     * the work the listener does per event, in Blackhole tokens
+     */
+    @Param({"0", "1000"})
+    public long listenerTokens;
+
+    private final KalahConfiguration configuration = new KalahConfiguration(6, 6);
+    private EventBus bus;
+    private AsyncKalahListener async;
+    private Kalah game;
+
+    @Setup(Level.Trial)
+    public void createBus() {
+        if (!"inline".equals(this.delivery)) {
+            this.bus = new EventBus("bench-events", 1, 1024, Backpressure.valueOf(this.delivery));
+        }
+    }
+
+    /**
+     * a game per iteration, played on until it ends, an async listener belongs to a single game
+     */
+    @Setup(Level.Iteration)
+    public void newGame() {
+        final KalahListener listener = new CostlyListener(this.listenerTokens);
+        if (this.bus == null) {
+            this.game = BenchGames.newGame(this.configuration, listener);
+        } else {
+            if (this.async != null) {
+                this.async.close();
+            }
+            this.async = this.bus.listen(listener);
+            this.game = BenchGames.newGame(this.configuration, this.async);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        if (this.bus != null) {
+            this.bus.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Kalah distributeFromPit() {
+        if (BenchGames.play(this.game, 2)) {
+            this.newGame();
+        }
+        return this.game;
+    }
+
+    /**
+     * Listener that burns CPU on every event
+     */
+    private static final class CostlyListener implements KalahListener {
+
+        private final long tokens;
+
+        private CostlyListener(final long tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public Set<KalahEvent> getEvents() {
+            return EnumSet.allOf(KalahEvent.class);
+        }
+
+        @Override
+        public void gameStart() {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void gameEnd(Player whoWon, Player whoLost) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void distStart(Player player, Pit fromPit) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void distEnd(Player player, Pit fromPit) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void playerSwitch(Player newPlayer) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void freeMove(Player forPlayer) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void pitEmpty(Pit pit) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void stonesAdded(StoneContainer container, int amount) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+
+        @Override
+        public void moveSummary(MoveSummary summary) {
+            Blackhole.consumeCPU(this.tokens);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mehinovic.kalah.game.journal;
+
+import com.mehinovic.kalah.game.BenchGames;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.entity.Player;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of journaling a move for every durability, a move is acknowledged once awaitDurable returns.
+ * Run with -t to see how the synchronous journal forces the moves of concurrent requests together,
+ * the journal is written to a temporary directory on the disk of java.io.tmpdir.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class MoveJournalBenchmark {
+
+    @Param({"SYNC", "BATCH"})
+    public String durability;
+
+    private Path directory;
+    private MoveJournal journal;
+    private Player player;
+
+    @Setup(Level.Trial)
+    public void openJournal() throws IOException {
+        this.directory = Files.createTempDirectory("kalah-journal");
+        this.journal = MoveJournal.open(this.directory, Durability.valueOf(this.durability),
+                MoveJournal.DEFAULT_BATCH_MILLIS, MoveJournal.DEFAULT_SEGMENT_BYTES);
+
+        final Kalah game = BenchGames.newGame(new KalahConfiguration());
+        this.player = game.getPlayerOne();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        this.journal.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Benchmark
+    public long move() throws IOException {
+        final long position = this.journal.move(this.player, 3);
+        this.journal.awaitDurable(position);
+        return position;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.util.Random;
+
+/**
+ * Positions for the search benchmarks
+ */
+public final class BenchPositions {
+
+    private BenchPositions() {
+    }
+
+    /**
+     * plays random moves from the start of a game, the game is not over after them
+     * @param random the source of the moves
+     * @param pits the amount of pits per player
+     * @param stones the amount of stones per pit
+     * @param moves the amount of moves to play
+     * @return a board that still has moves left
+     */
+    public static Board randomPosition(final Random random, final int pits, final int stones, final int moves) {
+        while (true) {
+            Board board = Board.initial(pits, stones);
+            for (int i = 0; i < moves && !board.isGameOver(); i++) {
+                int pitId;
+                do {
+                    pitId = random.nextInt(pits);
+                } while (!board.isLegal(pitId));
+                board = board.play(pitId);
+            }
+
+            if (!board.isGameOver()) {
+                return board;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Alpha-beta and monte carlo searches under the same time budget and amount of threads.
+ * The nodes counter is positions for alpha-beta and playouts for monte carlo, per thread
+ * so runs with a different amount of threads compare per core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineComparisonBenchmark {
+
+    @Param({"alphabeta", "montecarlo"})
+    public String engine;
+
+    @Param({"6", "16", "32"})
+    public int pits;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"100"})
+    public long budgetMillis;
+
+    private SearchEngine search;
+    private Board board;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long nodesPerThread;
+    }
+
+    @Setup(Level.Trial)
+    public void position() {
+        this.board = BenchPositions.randomPosition(new Random(42), this.pits, 6, 10);
+    }
+
+    @Setup(Level.Iteration)
+    public void engine() {
+        // a fresh tree and table every iteration so earlier iterations do not help
+        this.search = "montecarlo".equals(this.engine)
+                ? new MonteCarloSearch(this.threads)
+                : new ParallelSearch(this.threads, new AlphaBetaSearch(64, new TranspositionTable(32L << 20)),
+                        ParallelSearch.POOL);
+    }
+
+    @Benchmark
+    public int search(final Counters counters) {
+        final SearchResult result = this.search.search(this.board, this.budgetMillis);
+        counters.nodesPerThread += result.getNodes() / result.getThreads();
+        return result.getBestPit();
+    }
+}
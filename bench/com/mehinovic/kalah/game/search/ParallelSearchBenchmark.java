@@ -0,0 +1,93 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of the parallel search over the amount of threads on Kalah(6,6) positions.
+ * timeToDepth reports the time a fixed depth search takes from an empty table,
+ * nodesPerSecond reports the nodes counter of time budgeted searches sharing the table of an iteration,
+ * like the moves of a game do.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelSearchBenchmark {
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    @Param({"0", "10"})
+    public int openingMoves;
+
+    @Param({"12"})
+    public int depth;
+
+    private ForkJoinPool pool;
+    private TranspositionTable table;
+    private ParallelSearch timed;
+    private ParallelSearch fixedDepth;
+    private Board board;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long nodes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.pool = new ForkJoinPool(this.threads);
+        this.table = new TranspositionTable(64L * 1024 * 1024);
+        this.timed = new ParallelSearch(this.threads, new AlphaBetaSearch(64, this.table), this.pool);
+        this.fixedDepth = new ParallelSearch(this.threads, new AlphaBetaSearch(this.depth, this.table), this.pool);
+        this.board = BenchPositions.randomPosition(new Random(42), 6, 6, this.openingMoves);
+    }
+
+    /**
+     * empties the table per iteration, a single shot of timeToDepth is one search per iteration
+     */
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        this.table.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public SearchResult timeToDepth() {
+        return this.fixedDepth.search(this.board, TimeUnit.MINUTES.toMillis(10));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int nodesPerSecond(final Counters counters) {
+        final SearchResult result = this.timed.search(this.board, 100);
+        counters.nodes += result.getNodes();
+        return result.getBestPit();
+    }
+}
@@ -0,0 +1,62 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time budgeted searches on standard Kalah(6,6) positions.
+ * The nodes counter reports the nodes per second of a single search thread,
+ * which is what a concurrent computer game costs in CPU.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10", "100"})
+    public long budgetMillis;
+
+    /**
+     * the amount of random moves played from the start before searching
+     */
+    @Param({"0", "10", "20"})
+    public int openingMoves;
+
+    private final SearchEngine engine = new AlphaBetaSearch();
+    private Board board;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long nodes;
+    }
+
+    @Setup(Level.Trial)
+    public void position() {
+        this.board = BenchPositions.randomPosition(new Random(42), 6, 6, this.openingMoves);
+    }
+
+    @Benchmark
+    public int search(final Counters counters) {
+        final SearchResult result = this.engine.search(this.board, this.budgetMillis);
+        counters.nodes += result.getNodes();
+        return result.getBestPit();
+    }
+}
@@ -0,0 +1,139 @@
+package com.mehinovic.kalah.servlet;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.entity.Player;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full doPost round trips against mock request/response objects, of the JSON api and of the binary one.
+ * Run with the gc profiler (-prof gc) for the allocation rate per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KalahServletBenchmark {
+
+    @Param({"6x6", "32x48"})
+    public String board;
+
+    /**
+     * the response format, 2 is the compact one and bin the binary api
+     */
+    @Param({"1", "2", "bin"})
+    public String version;
+
+    private final KalahServlet servlet = new KalahServlet();
+    private final KalahBinaryServlet binaryServlet = new KalahBinaryServlet();
+    private final MockExchange exchange = new MockExchange();
+
+    private String pits;
+    private String stones;
+    private int move;
+
+    /**
+     * the requests of the binary api, boards are small enough for single byte varints
+     */
+    private byte[] newGameBody;
+    private byte[] loadGameBody;
+    private byte[][] playMoveBodies;
+
+    @Setup(Level.Trial)
+    public void parseBoard() throws Exception {
+        final String[] size = this.board.split("x");
+        this.pits = size[0];
+        this.stones = size[1];
+
+        this.newGameBody = new byte[] {KalahBinaryServlet.VERSION, KalahBinaryServlet.ACTION_NEW,
+                Byte.parseByte(this.pits), Byte.parseByte(this.stones), KalahBinaryServlet.OPPONENT_HUMAN};
+        this.loadGameBody = new byte[] {KalahBinaryServlet.VERSION, KalahBinaryServlet.ACTION_LOAD};
+        this.playMoveBodies = new byte[Integer.parseInt(this.pits)][];
+        for (int i = 0; i < this.playMoveBodies.length; i++) {
+            this.playMoveBodies[i] = new byte[] {KalahBinaryServlet.VERSION, KalahBinaryServlet.ACTION_PLAY, (byte) i};
+        }
+
+        this.newGame();
+    }
+
+    @Benchmark
+    public int newGame() throws Exception {
+        if (this.isBinary()) {
+            return this.postBinary(this.newGameBody);
+        }
+
+        this.exchange.reset().param("v", this.version).param("action", "new").param("pits", this.pits).param("stones", this.stones);
+        this.servlet.doPost(this.exchange.getRequest(), this.exchange.getResponse());
+
+        return this.exchange.getResponseSize();
+    }
+
+    @Benchmark
+    public int loadGame() throws Exception {
+        if (this.isBinary()) {
+            return this.postBinary(this.loadGameBody);
+        }
+
+        this.exchange.reset().param("v", this.version);
+        this.servlet.doPost(this.exchange.getRequest(), this.exchange.getResponse());
+
+        return this.exchange.getResponseSize();
+    }
+
+    /**
+     * plays the next pit that holds stones, a finished game is replaced by a new one
+     */
+    @Benchmark
+    public int playMove() throws Exception {
+        final Kalah game = KalahActions.getGame(this.exchange.getSession());
+        final Player player = game.getCurrentPlayer();
+        if (player.countPitStones() == 0 || player.getOpponent().countPitStones() == 0) {
+            return this.newGame();
+        }
+
+        final int pitId = this.nextPit(player);
+        if (this.isBinary()) {
+            return this.postBinary(this.playMoveBodies[pitId]);
+        }
+
+        this.exchange.reset().param("v", this.version).param("action", "play").param("pitId", String.valueOf(pitId));
+        this.servlet.doPost(this.exchange.getRequest(), this.exchange.getResponse());
+
+        return this.exchange.getResponseSize();
+    }
+
+    private boolean isBinary() {
+        return "bin".equals(this.version);
+    }
+
+    private int postBinary(final byte[] body) throws Exception {
+        this.exchange.reset().body(body);
+        this.binaryServlet.doPost(this.exchange.getRequest(), this.exchange.getResponse());
+
+        return this.exchange.getResponseSize();
+    }
+
+    private int nextPit(final Player player) {
+        final int pitCount = Integer.parseInt(this.pits);
+        for (int i = 0; i < pitCount; i++) {
+            final int pitId = (this.move++ & Integer.MAX_VALUE) % pitCount;
+            if (player.countPitStones(pitId) > 0) {
+                return pitId;
+            }
+        }
+        throw new IllegalStateException("no pit with stones for " + player);
+    }
+}
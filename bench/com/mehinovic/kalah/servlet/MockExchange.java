@@ -0,0 +1,254 @@
+package com.mehinovic.kalah.servlet;
+
+import com.google.common.collect.Maps;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * A reusable request/response pair for driving a servlet without a container.
+ * The servlet API interfaces are implemented with dynamic proxies, calls that are
+ * not needed by the servlets return the default value of their return type.
+ */
+public final class MockExchange {
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final Map<String, String> parameters = Maps.newHashMap();
+    private final Map<String, Object> sessionAttributes = Maps.newHashMap();
+    private final Map<String, Object> requestAttributes = Maps.newHashMap();
+
+    private final CharArrayWriter written = new CharArrayWriter(4096);
+    private final PrintWriter writer = new PrintWriter(this.written);
+    private final ByteArrayOutputStream streamed = new ByteArrayOutputStream(4096);
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            MockExchange.this.streamed.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            MockExchange.this.streamed.write(b, off, len);
+        }
+    };
+
+    private byte[] body = NO_BODY;
+    private final BodyStream inputStream = new BodyStream();
+
+    private final HttpSession session;
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+
+    private int contentLength = -1;
+    private int status = HttpServletResponse.SC_OK;
+
+    public MockExchange() {
+        this.session = proxy(HttpSession.class, new SessionHandler());
+        this.request = proxy(HttpServletRequest.class, new RequestHandler());
+        this.response = proxy(HttpServletResponse.class, new ResponseHandler());
+    }
+
+    /**
+     * clears the parameters and the response of the previous request, the session is kept
+     * @return this exchange
+     */
+    public MockExchange reset() {
+        this.parameters.clear();
+        this.requestAttributes.clear();
+        this.body = NO_BODY;
+        this.inputStream.rewind();
+        this.written.reset();
+        this.streamed.reset();
+        this.contentLength = -1;
+        this.status = HttpServletResponse.SC_OK;
+
+        return this;
+    }
+
+    /**
+     * @param name the name of the request parameter
+     * @param value the value of the request parameter
+     * @return this exchange
+     */
+    public MockExchange param(final String name, final String value) {
+        this.parameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * @param body the body of the request
+     * @return this exchange
+     */
+    public MockExchange body(final byte[] body) {
+        this.body = body;
+        return this;
+    }
+
+    public HttpServletRequest getRequest() {
+        return this.request;
+    }
+
+    public HttpServletResponse getResponse() {
+        return this.response;
+    }
+
+    public HttpSession getSession() {
+        return this.session;
+    }
+
+    /**
+     * @return the amount of characters or bytes written by the servlet
+     */
+    public int getResponseSize() {
+        this.writer.flush();
+        return this.written.size() + this.streamed.size();
+    }
+
+    /**
+     * @return the text written by the servlet
+     */
+    public String getResponseText() {
+        this.writer.flush();
+        return this.written.toString() + new String(this.streamed.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the bytes written to the output stream by the servlet
+     */
+    public byte[] getResponseBytes() {
+        return this.streamed.toByteArray();
+    }
+
+    /**
+     * @return the content length set by the servlet, or -1
+     */
+    public int getContentLength() {
+        return this.contentLength;
+    }
+
+    /**
+     * @return the status set by the servlet
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object defaultValue(final Method method) {
+        final Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private final class BodyStream extends ServletInputStream {
+        private int position;
+
+        @Override
+        public int read() {
+            return this.position < MockExchange.this.body.length ? MockExchange.this.body[this.position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            final int available = MockExchange.this.body.length - this.position;
+            if (len == 0) {
+                return 0;
+            } else if (available == 0) {
+                return -1;
+            }
+            final int n = Math.min(len, available);
+            System.arraycopy(MockExchange.this.body, this.position, b, off, n);
+            this.position += n;
+            return n;
+        }
+
+        void rewind() {
+            this.position = 0;
+        }
+    }
+
+    private final class SessionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getAttribute":
+                    return MockExchange.this.sessionAttributes.get(args[0]);
+                case "setAttribute":
+                    MockExchange.this.sessionAttributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    MockExchange.this.sessionAttributes.remove(args[0]);
+                    return null;
+                case "getId":
+                    return "bench-session";
+                default:
+                    return defaultValue(method);
+            }
+        }
+    }
+
+    private final class RequestHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getParameter":
+                    return MockExchange.this.parameters.get(args[0]);
+                case "getSession":
+                    return MockExchange.this.session;
+                case "getAttribute":
+                    return MockExchange.this.requestAttributes.get(args[0]);
+                case "setAttribute":
+                    MockExchange.this.requestAttributes.put((String) args[0], args[1]);
+                    return null;
+                case "getMethod":
+                    return "POST";
+                case "getInputStream":
+                    return MockExchange.this.inputStream;
+                case "getContentLength":
+                    return MockExchange.this.body.length;
+                default:
+                    return defaultValue(method);
+            }
+        }
+    }
+
+    private final class ResponseHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getWriter":
+                    return MockExchange.this.writer;
+                case "getOutputStream":
+                    return MockExchange.this.outputStream;
+                case "setContentLength":
+                    MockExchange.this.contentLength = (Integer) args[0];
+                    return null;
+                case "setStatus":
+                    MockExchange.this.status = (Integer) args[0];
+                    return null;
+                default:
+                    return defaultValue(method);
+            }
+        }
+    }
+}
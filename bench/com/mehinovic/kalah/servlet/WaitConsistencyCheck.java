@@ -0,0 +1,187 @@
+package com.mehinovic.kalah.servlet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.entity.Player;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the compact answers of woken waits and loads pair every version with the board of that version
+ * while the game is played at the same time, see GameWaiters, run with
+ * <pre>java -cp target/kalah-bench.jar com.mehinovic.kalah.servlet.WaitConsistencyCheck [pits] [stones] [seconds]</pre>
+ * A thread plays the game as fast as it can, preferring free moves, and takes moves back once it is over,
+ * recording the board of every version. A client alternates woken wait and load requests with the version it has,
+ * rebuilds its board from the deltas and full boards it is sent and compares it with the board of the answer's version.
+ */
+public final class WaitConsistencyCheck {
+
+    private WaitConsistencyCheck() {}
+
+    public static void main(final String[] args) throws Exception {
+        final String pits = args.length > 0 ? args[0] : "6";
+        final String stones = args.length > 1 ? args[1] : "6";
+        final long seconds = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+        final KalahServlet servlet = new KalahServlet();
+        final MockExchange client = new MockExchange();
+        client.reset().param("v", KalahServlet.COMPACT_VERSION).param("action", "new")
+                .param("pits", pits).param("stones", stones);
+        servlet.doPost(client.getRequest(), client.getResponse());
+        final Kalah game = KalahActions.getGame(client.getSession());
+
+        // the board of every version the mover played, as the client writes it
+        final ConcurrentMap<Long, String> boards = new ConcurrentHashMap<>();
+        synchronized (game) {
+            boards.put(game.getVersion(), board(game));
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger freeMoves = new AtomicInteger();
+        final Thread mover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Random random = new Random();
+                while (!done.get()) {
+                    if (game.isEndOfGame() != null) {
+                        for (int i = 1 + random.nextInt(game.getMovesPlayed()); i > 0; i--) {
+                            KalahActions.undo(game, KalahServlet.SEAT_BOTH);
+                            record(game, boards);
+                        }
+                        continue;
+                    }
+
+                    KalahActions.play(game, KalahServlet.SEAT_BOTH, choose(game, random));
+                    if (game.isFreeMove()) {
+                        freeMoves.incrementAndGet();
+                    }
+                    record(game, boards);
+                }
+            }
+        }, "kalah-mover");
+        mover.start();
+
+        final JsonParser parser = new JsonParser();
+        JsonObject answer = parser.parse(client.getResponseText()).getAsJsonObject();
+        final long id = answer.get("id").getAsLong();
+        long version = -1;
+        int[] cells = null;
+        int current = 0;
+        int answers = 0;
+        int deltas = 0;
+        int mismatches = 0;
+        String firstMismatch = null;
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try {
+            while (System.nanoTime() < deadline) {
+                final long answered = answer.get("version").getAsLong();
+                // an answer older than the board of the client is not taken, like the page does
+                if (answered >= version) {
+                    if (answer.has("game")) {
+                        final JsonObject board = answer.getAsJsonObject("game");
+                        final JsonArray counts = board.getAsJsonArray("board");
+                        cells = new int[counts.size()];
+                        for (int i = 0; i < cells.length; i++) {
+                            cells[i] = counts.get(i).getAsInt();
+                        }
+                        current = board.get("current").getAsInt();
+                    } else {
+                        final JsonObject delta = answer.getAsJsonObject("delta");
+                        final JsonArray changes = delta.getAsJsonArray("changes");
+                        for (int i = 0; i < changes.size(); i += 2) {
+                            cells[changes.get(i).getAsInt()] = changes.get(i + 1).getAsInt();
+                        }
+                        current = delta.get("current").getAsInt();
+                        deltas++;
+                    }
+                    version = answered;
+
+                    // the mover records a version right after playing it
+                    String expected;
+                    while ((expected = boards.get(version)) == null) {
+                        Thread.yield();
+                    }
+                    final String actual = current + " " + Arrays.toString(cells);
+                    if (!expected.equals(actual)) {
+                        if (firstMismatch == null) {
+                            firstMismatch = "version " + version + " was answered with " + actual
+                                    + " instead of " + expected;
+                        }
+                        mismatches++;
+                    }
+                    answers++;
+                }
+
+                client.reset().param("v", KalahServlet.COMPACT_VERSION).param("id", String.valueOf(id))
+                        .param("since", String.valueOf(version));
+                if ((answers & 1) == 0) {
+                    // answered like a wait dispatched back once the game changed
+                    client.param("action", "wait");
+                    client.getRequest().setAttribute(GameWaiters.WOKEN_ATTRIBUTE, Boolean.TRUE);
+                }
+                servlet.doPost(client.getRequest(), client.getResponse());
+                answer = parser.parse(client.getResponseText()).getAsJsonObject();
+            }
+        } finally {
+            done.set(true);
+            mover.join();
+        }
+
+        System.out.println(pits + "x" + stones + ", " + seconds + "s: " + answers + " answers, " + deltas + " deltas, "
+                + freeMoves.get() + " free moves played, " + mismatches + " mismatches");
+        if (firstMismatch != null) {
+            throw new IllegalStateException(firstMismatch);
+        }
+    }
+
+    /**
+     * @return a pit whose last stone lands in the store of the player to move, or any pit with stones
+     */
+    private static int choose(final Kalah game, final Random random) {
+        synchronized (game) {
+            final Player player = game.getCurrentPlayer();
+            final int pits = game.getConfiguration().getPits();
+            for (int i = 0; i < pits; i++) {
+                final int stones = player.countPitStones(i);
+                if (stones > 0 && stones % (2 * pits + 1) == pits - i) {
+                    return i;
+                }
+            }
+
+            int pit = random.nextInt(pits);
+            while (player.countPitStones(pit) == 0) {
+                pit = (pit + 1) % pits;
+            }
+            return pit;
+        }
+    }
+
+    private static void record(final Kalah game, final ConcurrentMap<Long, String> boards) {
+        synchronized (game) {
+            boards.put(game.getVersion(), board(game));
+        }
+    }
+
+    /**
+     * @return the player to move and the cells of the compact board
+     */
+    private static String board(final Kalah game) {
+        final int pits = game.getConfiguration().getPits();
+        final int[] cells = new int[2 * pits + 2];
+        for (int i = 0; i < pits; i++) {
+            cells[i] = game.getPlayerOne().countPitStones(i);
+            cells[pits + 1 + i] = game.getPlayerTwo().countPitStones(i);
+        }
+        cells[pits] = game.getPlayerOne().countStoreStones();
+        cells[2 * pits + 1] = game.getPlayerTwo().countStoreStones();
+        return game.getCurrentPlayer().getPlayerId() + " " + Arrays.toString(cells);
+    }
+}
@@ -0,0 +1,278 @@
+package com.mehinovic.kalah.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes JSON as UTF-8 into a byte buffer that is kept between documents, so a document costs no allocation
+ * once the buffer has grown to fit. Strings are escaped, commas and nesting are tracked by the writer.
+ * A writer is not thread safe, keep one per thread and reset it for every document.
+ */
+public final class JsonWriter {
+
+    /**
+     * a buffer that grew past this size is dropped on reset, so one huge document does not pin its memory
+     */
+    private static final int RETAINED_SIZE = 64 * 1024;
+
+    private static final int MAX_DEPTH = 32;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private final int initialSize;
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * per depth, whether the object or array already holds a value and needs a comma before the next
+     */
+    private final boolean[] hasValue = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * @param initialSize the initial size of the buffer in bytes
+     */
+    public JsonWriter(final int initialSize) {
+        if (initialSize < 1) {
+            throw new IllegalArgumentException("invalid buffer size " + initialSize);
+        }
+        this.initialSize = initialSize;
+        this.buffer = new byte[initialSize];
+    }
+
+    /**
+     * empties the writer for the next document
+     * @return this writer
+     */
+    public JsonWriter reset() {
+        if (this.buffer.length > RETAINED_SIZE) {
+            this.buffer = new byte[this.initialSize];
+        }
+        this.size = 0;
+        this.depth = 0;
+        this.hasValue[0] = false;
+        this.afterName = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        return this.open('{');
+    }
+
+    public JsonWriter endObject() {
+        return this.close('}');
+    }
+
+    public JsonWriter beginArray() {
+        return this.open('[');
+    }
+
+    public JsonWriter endArray() {
+        return this.close(']');
+    }
+
+    /**
+     * @param name the name of the next member of the current object
+     * @return this writer
+     */
+    public JsonWriter name(final String name) {
+        this.separate();
+        this.string(name);
+        this.put((byte) ':');
+        this.afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(final long value) {
+        this.separate();
+        if (value == Long.MIN_VALUE) {
+            this.ascii(Long.toString(value));
+            return this;
+        }
+
+        long remaining = value;
+        if (remaining < 0) {
+            this.put((byte) '-');
+            remaining = -remaining;
+        }
+
+        // write the digits backwards into their place
+        int digits = 1;
+        for (long rest = remaining / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        this.ensure(digits);
+        for (int i = this.size + digits - 1; i >= this.size; i--) {
+            this.buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        this.size += digits;
+        return this;
+    }
+
+    public JsonWriter value(final boolean value) {
+        this.separate();
+        this.put(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * @param value the string to write escaped, null writes null
+     * @return this writer
+     */
+    public JsonWriter value(final String value) {
+        this.separate();
+        if (value == null) {
+            this.put(NULL);
+        } else {
+            this.string(value);
+        }
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        this.separate();
+        this.put(NULL);
+        return this;
+    }
+
+    /**
+     * @return the amount of bytes written
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param out the stream to write the document to
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        out.write(this.buffer, 0, this.size);
+    }
+
+    /**
+     * @return the document written so far
+     */
+    @Override
+    public String toString() {
+        return new String(this.buffer, 0, this.size, StandardCharsets.UTF_8);
+    }
+
+    private JsonWriter open(final char bracket) {
+        this.separate();
+        if (this.depth + 1 == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested deeper than " + MAX_DEPTH);
+        }
+        this.put((byte) bracket);
+        this.hasValue[++this.depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(final char bracket) {
+        if (this.depth == 0) {
+            throw new IllegalStateException("Nothing to close with " + bracket);
+        }
+        this.put((byte) bracket);
+        this.depth--;
+        return this;
+    }
+
+    /**
+     * writes the comma before a value or name, unless the value belongs to the name just written
+     */
+    private void separate() {
+        if (this.afterName) {
+            this.afterName = false;
+            return;
+        }
+        if (this.hasValue[this.depth]) {
+            this.put((byte) ',');
+        }
+        this.hasValue[this.depth] = true;
+    }
+
+    private void string(final String value) {
+        this.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                this.put((byte) '\\');
+                this.put((byte) c);
+            } else if (c == '\n') {
+                this.escape('n');
+            } else if (c == '\r') {
+                this.escape('r');
+            } else if (c == '\t') {
+                this.escape('t');
+            } else if (c < 0x20 || c == '<' || c == 0x2028 || c == 0x2029) {
+                // control characters, and what would end a script tag or a javascript string
+                this.ensure(6);
+                this.buffer[this.size++] = '\\';
+                this.buffer[this.size++] = 'u';
+                this.buffer[this.size++] = HEX[c >> 12 & 0xF];
+                this.buffer[this.size++] = HEX[c >> 8 & 0xF];
+                this.buffer[this.size++] = HEX[c >> 4 & 0xF];
+                this.buffer[this.size++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                this.put((byte) c);
+            } else if (c < 0x800) {
+                this.ensure(2);
+                this.buffer[this.size++] = (byte) (0xC0 | c >> 6);
+                this.buffer[this.size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.ensure(4);
+                this.buffer[this.size++] = (byte) (0xF0 | codePoint >> 18);
+                this.buffer[this.size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                this.buffer[this.size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                this.buffer[this.size++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // a lone surrogate cannot be encoded
+                this.put((byte) '?');
+            } else {
+                this.ensure(3);
+                this.buffer[this.size++] = (byte) (0xE0 | c >> 12);
+                this.buffer[this.size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                this.buffer[this.size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        this.put((byte) '"');
+    }
+
+    private void escape(final char c) {
+        this.put((byte) '\\');
+        this.put((byte) c);
+    }
+
+    private void ascii(final String value) {
+        this.ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            this.buffer[this.size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void put(final byte b) {
+        this.ensure(1);
+        this.buffer[this.size++] = b;
+    }
+
+    private void put(final byte[] bytes) {
+        this.ensure(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+        this.size += bytes.length;
+    }
+
+    private void ensure(final int extra) {
+        if (this.size + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + extra));
+        }
+    }
+}
@@ -1,17 +1,45 @@
 package com.mehinovic.kalah.game;
 
+import com.google.common.collect.Sets;
+import com.mehinovic.kalah.game.entity.MoveRecorder;
+import com.mehinovic.kalah.game.entity.Pit;
 import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import com.mehinovic.kalah.game.events.KalahEvent;
 import com.mehinovic.kalah.game.events.KalahListener;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Instance of kalah game
+ * Instance of kalah game, serialized as a KalahSnapshot
  */
-public final class Kalah {
+public final class Kalah implements Serializable {
 
+    private static final long serialVersionUID = -2920913342437236131L;
+
+    /**
+     * the amount of moves a client may be behind and still be sent only the changed cells
+     */
+    public static final int HISTORY_SIZE = 16;
+
+    private final long id;
+    private final transient KalahHistory history;
+    private final transient MoveLog moves;
+    private final transient MoveRecorder recorder;
     private final transient KalahListener listener;
+    private final transient Set<KalahEvent> events;
     private final KalahConfiguration configuration;
 
     private boolean started = false;
+    private boolean freeMove = false;
+    private boolean remote = false;
+    private boolean seatTaken = false;
     private Player currentPlayer;
     private Player playerOne;
     private Player playerTwo;
@@ -21,8 +49,30 @@ public final class Kalah {
      * @param listener Used to keep track of events within the game
      */
     public Kalah(final KalahConfiguration configuration, final KalahListener listener) {
+        this(configuration, listener, newId());
+    }
+
+    /**
+     * @param configuration The configuration for this game of Kalah
+     * @param listener Used to keep track of events within the game
+     * @param id the identifier of the game, when restoring a game
+     */
+    public Kalah(final KalahConfiguration configuration, final KalahListener listener, final long id) {
     	this.configuration = configuration;
     	this.listener = listener;
+    	this.events = Sets.immutableEnumSet(listener.getEvents());
+        this.id = id;
+        this.history = new KalahHistory(2 * (configuration.getPits() + 1), HISTORY_SIZE);
+        this.moves = new MoveLog();
+        this.recorder = new Recorder();
+    }
+
+    /**
+     * @return a new game identifier, random so a client cannot mistake another game for its own,
+     * never negative and small enough to be exact in javascript
+     */
+    public static long newId() {
+        return ThreadLocalRandom.current().nextLong() >>> 11;
     }
 
     /**
@@ -34,7 +84,9 @@ public final class Kalah {
     	}
 
         this.started = true;
-        this.getKalahListener().gameStart();
+        if (this.isListening(KalahEvent.GAME_START)) {
+            this.getKalahListener().gameStart();
+        }
     }
 
     /**
@@ -48,7 +100,53 @@ public final class Kalah {
     	}
 
         this.started = false;
-        this.getKalahListener().gameEnd(whoWon, whoLost);
+        if (this.isListening(KalahEvent.GAME_END)) {
+            this.getKalahListener().gameEnd(whoWon, whoLost);
+        }
+    }
+
+    /**
+     * @return true if the game was started and has not ended yet
+     */
+    public boolean isStarted() {
+        return this.started;
+    }
+
+    /**
+     * @return true if the last move ended in the mover's store, the mover is still the current player
+     */
+    public boolean isFreeMove() {
+        return this.freeMove;
+    }
+
+    /**
+     * @return true if the second player plays from another session than the first
+     */
+    public boolean isRemote() {
+        return this.remote;
+    }
+
+    /**
+     * sets whether the second player plays from another session, before the game is shared or when it is restored
+     * @param remote true if the second player joins from another session
+     */
+    public void setRemote(final boolean remote) {
+        this.remote = remote;
+    }
+
+    /**
+     * @return true if a session joined the remote game to play the second player
+     */
+    public boolean isSeatTaken() {
+        return this.seatTaken;
+    }
+
+    /**
+     * marks the second player of a remote game as played by a session, callers lock the game like for a move
+     * @param seatTaken true if a session plays the second player
+     */
+    public void setSeatTaken(final boolean seatTaken) {
+        this.seatTaken = seatTaken;
     }
 
     /**
@@ -75,6 +173,7 @@ public final class Kalah {
      * @param playerOne Player instance
      */
     public void setPlayerOne(final Player playerOne) {
+        playerOne.attach(this.recorder);
         this.playerOne = playerOne;
     }
 
@@ -83,6 +182,7 @@ public final class Kalah {
      * @param playerTwo Player instance
      */
     public void setPlayerTwo(final Player playerTwo) {
+        playerTwo.attach(this.recorder);
         this.playerTwo = playerTwo;
     }
 
@@ -136,6 +236,243 @@ public final class Kalah {
         return this.listener;
     }
 
+    /**
+     * @param event an event
+     * @return true if the game's listener wants to be called for the event
+     */
+    public boolean isListening(final KalahEvent event) {
+        return this.events.contains(event);
+    }
+
+    /**
+     * @return the identifier of this game
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * @return the version of the board, increased by every move
+     */
+    public long getVersion() {
+        return this.history.getVersion();
+    }
+
+    /**
+     * @param version a version of this game's board
+     * @return the board cells changed since the version in ascending order, see getBoardCell,
+     * or null if the version is unknown or more than HISTORY_SIZE moves old.
+     * Only consistent with getVersion and the board while the lock of the game the moves take is held
+     */
+    public int[] getChangedSince(final long version) {
+        return this.history.changedSince(version);
+    }
+
+    /**
+     * @param container a pit or store of this game
+     * @return the container's cell in the board of the compact form,
+     * player one's pits and store followed by player two's pits and store
+     */
+    public int getBoardCell(final StoneContainer container) {
+        final int pits = this.configuration.getPits();
+        final int offset = container.getPlayer() == this.playerOne ? 0 : pits + 1;
+        return container instanceof Pit ? offset + ((Pit) container).getPitId() : offset + pits;
+    }
+
+    /**
+     * @return the amount of moves played that can be taken back
+     */
+    public int getMovesPlayed() {
+        return this.moves.getPlayed();
+    }
+
+    /**
+     * @return the amount of moves taken back that can be played again
+     */
+    public int getMovesTakenBack() {
+        return this.moves.getRecorded() - this.moves.getPlayed();
+    }
+
+    /**
+     * Takes back the last move played, the listener is not told.
+     * The board changes become the next version like a move, callers lock the game like for a move
+     * @throws IllegalStateException if no move was played
+     */
+    public void undo() {
+        if (this.moves.getPlayed() == 0) {
+            throw new IllegalStateException("There is no move to take back");
+        }
+        this.setState(this.moves.undo(this));
+        this.history.commit();
+    }
+
+    /**
+     * Plays the last move taken back again, the listener is not told
+     * @throws IllegalStateException if no move was taken back
+     */
+    public void redo() {
+        if (this.getMovesTakenBack() == 0) {
+            throw new IllegalStateException("There is no move to play again");
+        }
+        this.setState(this.moves.redo(this));
+        this.history.commit();
+    }
+
+    /**
+     * Takes back or plays again moves until the given amount of moves is played, every move is a version
+     * @param move the amount of moves to be played, from 0 to the moves played and taken back
+     * @throws IllegalArgumentException if the game has no such move
+     */
+    public void jumpTo(final int move) {
+        if (move < 0 || move > this.moves.getRecorded()) {
+            throw new IllegalArgumentException("invalid move " + move + ", the game has "
+                    + this.moves.getRecorded() + " moves");
+        }
+        while (this.moves.getPlayed() > move) {
+            this.undo();
+        }
+        while (this.moves.getPlayed() < move) {
+            this.redo();
+        }
+    }
+
+    /**
+     * @return the estimated memory of the moves kept to be taken back in bytes
+     */
+    public long estimateMoveBytes() {
+        return this.moves.estimateBytes();
+    }
+
+    /**
+     * writes the moves that can be taken back and played again, for a stored game
+     * @param out the output
+     * @throws IOException if the output cannot be written
+     */
+    public void writeMoves(final DataOutput out) throws IOException {
+        this.moves.write(out);
+    }
+
+    /**
+     * reads the moves written by writeMoves, once the game is restored to the board after the moves played
+     * @param in the input
+     * @throws IOException if the input cannot be read or holds no moves of this board
+     */
+    public void readMoves(final DataInput in) throws IOException {
+        this.moves.read(in, 2 * (this.configuration.getPits() + 1));
+    }
+
+    /**
+     * @param cell a cell of the board, see getBoardCell
+     * @return the amount of stones in the cell
+     */
+    int getCellStones(final int cell) {
+        final int pits = this.configuration.getPits();
+        final Player player = cell <= pits ? this.playerOne : this.playerTwo;
+        final int index = cell <= pits ? cell : cell - pits - 1;
+        return index == pits ? player.countStoreStones() : player.countPitStones(index);
+    }
+
+    /**
+     * overwrites the stones of a cell taking back or playing again a move, the cell is a change of the next version
+     * @param cell a cell of the board, see getBoardCell
+     * @param stones the amount of stones in the cell
+     */
+    void restoreCell(final int cell, final int stones) {
+        final int pits = this.configuration.getPits();
+        final Player player = cell <= pits ? this.playerOne : this.playerTwo;
+        final int index = cell <= pits ? cell : cell - pits - 1;
+        if (index == pits) {
+            player.restoreStoreStones(stones);
+        } else {
+            player.restorePitStones(index, stones);
+        }
+        this.history.changed(cell);
+    }
+
+    private int getState() {
+        // no current player yet is player one
+        int state = this.currentPlayer != null && this.currentPlayer == this.playerTwo
+                ? MoveLog.STATE_PLAYER_TWO : 0;
+        state |= this.freeMove ? MoveLog.STATE_FREE_MOVE : 0;
+        state |= this.started ? MoveLog.STATE_STARTED : 0;
+        return state;
+    }
+
+    private void setState(final int state) {
+        this.setCurrentPlayer((state & MoveLog.STATE_PLAYER_TWO) != 0 ? this.playerTwo : this.playerOne);
+        this.freeMove = (state & MoveLog.STATE_FREE_MOVE) != 0;
+        this.started = (state & MoveLog.STATE_STARTED) != 0;
+    }
+
+    /**
+     * sets the state of a stored game once the players and their stones are restored,
+     * the listener is told through the events that led to the state that it was not told yet
+     * @param version the version of the board
+     * @param started true if the game was started and has not ended yet
+     * @param freeMove true if the last move ended in the mover's store
+     */
+    public void restore(final long version, final boolean started, final boolean freeMove) {
+        this.history.restore(version);
+        this.moves.clear();
+        this.freeMove = freeMove;
+
+        final boolean ended = !started && this.isEndOfGame() != null;
+        if ((started || ended) && !this.started) {
+            this.startGame();
+        }
+        if (freeMove && this.isListening(KalahEvent.FREE_MOVE)) {
+            this.getKalahListener().freeMove(this.getCurrentPlayer());
+        }
+        if (ended) {
+            final int p1Score = this.playerOne.countStoreStones();
+            final int p2Score = this.playerTwo.countStoreStones();
+            if (p1Score == p2Score) {
+                this.endGame(null, null);
+            } else {
+                final Player whoWon = p1Score > p2Score ? this.playerOne : this.playerTwo;
+                this.endGame(whoWon, whoWon.getOpponent());
+            }
+        }
+    }
+
+    /**
+     * records the moves of the players into the undo log and the history of the deltas,
+     * only the players of this game hold it
+     */
+    private final class Recorder implements MoveRecorder {
+
+        @Override
+        public void containerChanged(final StoneContainer container) {
+            final int cell = Kalah.this.getBoardCell(container);
+            // called before the stones move, the first change of a cell holds its stones before the move
+            if (Kalah.this.history.changed(cell)) {
+                Kalah.this.moves.changed(cell, container.amountOfStones(), Kalah.this.getState());
+            }
+        }
+
+        @Override
+        public void moveEnded(final boolean freeMove) {
+            Kalah.this.freeMove = freeMove;
+            Kalah.this.history.commit();
+            Kalah.this.moves.commit(Kalah.this, Kalah.this.getState());
+        }
+
+        @Override
+        public void stonesRestored() {
+            // clients are sent the full board since the changes are not known and the moves can no longer be taken back
+            Kalah.this.history.reset();
+            Kalah.this.moves.clear();
+        }
+    }
+
+    private Object writeReplace() {
+        return new KalahSnapshot(this);
+    }
+
+    private void readObject(final ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("A game is read from its snapshot");
+    }
+
     /**
      * @return a JSON representation of the entire game state
      */
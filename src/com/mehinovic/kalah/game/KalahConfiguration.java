@@ -4,8 +4,31 @@ package com.mehinovic.kalah.game;
  * Allows Kalah game configuration
  */
 public final class KalahConfiguration {
-    private final int pits = 6; //optimized for 2,4,6
-    private final int stones = 6;
+    private final int pits; // at least 1, clients of the api may ask for 1 to 32 pits and 1 to 64 stones
+    private final int stones;
+
+    /**
+     * creates the default configuration, 6 pits with 6 stones each
+     */
+    public KalahConfiguration() {
+        this(6, 6);
+    }
+
+    /**
+     * @param pits the amount of pits per player
+     * @param stones the amount of stones each pit starts with
+     */
+    public KalahConfiguration(final int pits, final int stones) {
+        if (pits < 1) {
+            throw new IllegalArgumentException("invalid amount of pits " + pits + ", must be at least 1");
+        }
+        if (stones < 1) {
+            throw new IllegalArgumentException("invalid amount of stones " + stones + ", must be at least 1");
+        }
+
+        this.pits = pits;
+        this.stones = stones;
+    }
 
     /**
      * @return getter for pits
@@ -20,4 +43,4 @@ public final class KalahConfiguration {
     public int getStones() {
         return this.stones;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package com.mehinovic.kalah.game;
+
+/**
+ * The board cells changed by the most recent moves of a game, so a client that is a few moves behind
+ * only has to be sent the cells that differ from what it already has.
+ * Cells are numbered like the compact board, player one's pits and store followed by player two's.
+ * Every move bumps the version by one, the slots are allocated up front so recording a move allocates nothing.
+ */
+final class KalahHistory {
+
+    /**
+     * the cells changed by the move to every version still kept, the slot of a version is version & mask
+     */
+    private final int[][] moves;
+    private final int[] moveSizes;
+    private final int mask;
+
+    /**
+     * the cells changed by the move being played, each once
+     */
+    private final int[] pending;
+    private final boolean[] marked;
+    private int pendingSize;
+
+    /**
+     * the current version, and the oldest version the changes since can still be told
+     */
+    private long version;
+    private long oldest;
+
+    /**
+     * @param cells the amount of cells on the board
+     * @param capacity the amount of moves to keep, a power of two
+     */
+    KalahHistory(final int cells, final int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("invalid capacity " + capacity + ", must be a power of two");
+        }
+
+        this.moves = new int[capacity][cells];
+        this.moveSizes = new int[capacity];
+        this.mask = capacity - 1;
+        this.pending = new int[cells];
+        this.marked = new boolean[cells];
+    }
+
+    /**
+     * records a changed cell of the move being played
+     * @param cell the changed cell
+     * @return true if the cell was not changed by the move before
+     */
+    boolean changed(final int cell) {
+        if (this.marked[cell]) {
+            return false;
+        }
+        this.marked[cell] = true;
+        this.pending[this.pendingSize++] = cell;
+        return true;
+    }
+
+    /**
+     * ends the move being played, its cells become the changes of the next version
+     */
+    synchronized void commit() {
+        final int slot = (int) (this.version + 1) & this.mask;
+        System.arraycopy(this.pending, 0, this.moves[slot], 0, this.pendingSize);
+        this.moveSizes[slot] = this.pendingSize;
+        this.clearPending();
+
+        this.version++;
+        // the slot we just wrote held the oldest move
+        if (this.version - this.oldest > this.moves.length) {
+            this.oldest = this.version - this.moves.length;
+        }
+    }
+
+    /**
+     * forgets all moves, the board was overwritten so only a full board tells what changed
+     */
+    synchronized void reset() {
+        this.clearPending();
+        this.version++;
+        this.oldest = this.version;
+    }
+
+    /**
+     * forgets all moves and continues from a version, used to restore a game
+     * @param version the version of the restored board
+     */
+    synchronized void restore(final long version) {
+        this.clearPending();
+        this.version = version;
+        this.oldest = version;
+    }
+
+    private void clearPending() {
+        for (int i = 0; i < this.pendingSize; i++) {
+            this.marked[this.pending[i]] = false;
+        }
+        this.pendingSize = 0;
+    }
+
+    /**
+     * @return the current version
+     */
+    synchronized long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @param since a version the client has
+     * @return the cells changed since the version in ascending order,
+     * or null if the version is too old or unknown
+     */
+    synchronized int[] changedSince(final long since) {
+        if (since < this.oldest || since > this.version) {
+            return null;
+        }
+
+        final boolean[] seen = new boolean[this.marked.length];
+        int count = 0;
+        for (long v = since + 1; v <= this.version; v++) {
+            final int slot = (int) v & this.mask;
+            final int[] cells = this.moves[slot];
+            for (int i = 0; i < this.moveSizes[slot]; i++) {
+                if (!seen[cells[i]]) {
+                    seen[cells[i]] = true;
+                    count++;
+                }
+            }
+        }
+
+        final int[] changed = new int[count];
+        for (int cell = 0, i = 0; i < count; cell++) {
+            if (seen[cell]) {
+                changed[i++] = cell;
+            }
+        }
+        return changed;
+    }
+}
@@ -7,6 +7,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.mehinovic.kalah.game.entity.Player;
 import java.lang.reflect.Type;
 
 /**
@@ -32,6 +33,96 @@ public final class KalahSerializer {
         return JSON_SERIALIZER.toJson(game);
     }
 
+    /**
+     * writes a game in the same form as serializeGame, without reflection or an intermediate tree
+     * @param game the game to write
+     * @param out the writer to write the JSON object to
+     */
+    public static void writeGame(final Kalah game, final JsonWriter out) {
+        if (game == null) {
+            throw new IllegalArgumentException("Cannot serialize null game");
+        }
+
+        final KalahConfiguration configuration = game.getConfiguration();
+        out.beginObject()
+                .name("configuration").beginObject()
+                .name("pits").value(configuration.getPits())
+                .name("stones").value(configuration.getStones())
+                .endObject()
+                .name("currentPlayer").value(game.getCurrentPlayer().getPlayerId());
+        writePlayer(game.getPlayerOne(), out.name("playerOne"));
+        writePlayer(game.getPlayerTwo(), out.name("playerTwo"));
+        out.endObject();
+    }
+
+    private static void writePlayer(final Player player, final JsonWriter out) {
+        out.beginObject()
+                .name("store").beginObject().name("stones").value(player.countStoreStones()).endObject()
+                .name("pits").beginArray();
+        final int pits = player.getGame().getConfiguration().getPits();
+        for (int i = 0; i < pits; i++) {
+            out.beginObject().name("pitId").value(i).name("stones").value(player.countPitStones(i)).endObject();
+        }
+        out.endArray()
+                .name("playerId").value(player.getPlayerId())
+                .name("playerName").value(player.getPlayerName())
+                .endObject();
+    }
+
+    /**
+     * writes the compact form of a game, only the amount of pits, the current player and the board,
+     * the board is player one's pits and store followed by player two's pits and store
+     * @param game the game to write
+     * @param out the writer to write the JSON object to
+     */
+    public static void writeCompact(final Kalah game, final JsonWriter out) {
+        if (game == null) {
+            throw new IllegalArgumentException("Cannot serialize null game");
+        }
+
+        out.beginObject()
+                .name("pits").value(game.getConfiguration().getPits())
+                .name("current").value(game.getCurrentPlayer().getPlayerId())
+                .name("board").beginArray();
+        writeCounts(game.getPlayerOne(), out);
+        writeCounts(game.getPlayerTwo(), out);
+        out.endArray().endObject();
+    }
+
+    /**
+     * writes the cells of the compact board that changed, with the current player,
+     * the changes hold the cell followed by its amount of stones for every cell.
+     * The caller holds the lock of the game from reading the changed cells until the delta is written,
+     * a move committed in between would otherwise be counted in the version without its cells
+     * @param game the game to write
+     * @param cells the changed cells, see Kalah.getChangedSince
+     * @param out the writer to write the JSON object to
+     */
+    public static void writeDelta(final Kalah game, final int[] cells, final JsonWriter out) {
+        if (game == null) {
+            throw new IllegalArgumentException("Cannot serialize null game");
+        }
+
+        final int pits = game.getConfiguration().getPits();
+        out.beginObject()
+                .name("current").value(game.getCurrentPlayer().getPlayerId())
+                .name("changes").beginArray();
+        for (int cell : cells) {
+            final Player player = cell <= pits ? game.getPlayerOne() : game.getPlayerTwo();
+            final int index = cell <= pits ? cell : cell - pits - 1;
+            out.value(cell).value(index == pits ? player.countStoreStones() : player.countPitStones(index));
+        }
+        out.endArray().endObject();
+    }
+
+    private static void writeCounts(final Player player, final JsonWriter out) {
+        final int pits = player.getGame().getConfiguration().getPits();
+        for (int i = 0; i < pits; i++) {
+            out.value(player.countPitStones(i));
+        }
+        out.value(player.countStoreStones());
+    }
+
     /**
      * Custom serializer for Kalah.class
      */
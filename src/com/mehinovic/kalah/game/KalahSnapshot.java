@@ -0,0 +1,231 @@
+package com.mehinovic.kalah.game;
+
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.impl.RequestPlayer;
+import com.mehinovic.kalah.game.entity.impl.SearchPlayer;
+import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.search.SearchEngines;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.lang.reflect.Constructor;
+
+/**
+ * The serialized form of a game, a game is written as its snapshot and read back as a new game.
+ * Only what cannot be derived is written.
+ * That is the id, the configuration, the version and whether the second player plays from another session.
+ * It is followed by the counts of the board, the kind of each player, the listener's class
+ * and the moves that can be taken back.
+ * Numbers are unsigned varints, seven bits per byte with the high bit set on every byte but the last.
+ * <p>
+ * The listener is created again with its no-arg constructor and told the events that led to the snapshot,
+ * the start of the game, the free move of the last move and the end of the game.
+ * The searches of computer players are picked again for the board, a monte carlo tree starts out empty.
+ */
+public final class KalahSnapshot implements Externalizable {
+
+    private static final long serialVersionUID = 4716339524203175288L;
+
+    /**
+     * version of the format, the first byte of a snapshot. The first format has no moves
+     */
+    private static final int FORMAT = 2;
+    private static final int FORMAT_WITHOUT_MOVES = 1;
+
+    /**
+     * flags of the game's state
+     */
+    private static final int FLAG_STARTED = 1;
+    private static final int FLAG_FREE_MOVE = 2;
+    private static final int FLAG_REMOTE = 4;
+    private static final int FLAG_SEAT_TAKEN = 8;
+
+    /**
+     * kinds of players
+     */
+    private static final int PLAYER_HUMAN = 0;
+    private static final int PLAYER_COMPUTER = 1;
+
+    /**
+     * the game written, or read
+     */
+    private Kalah game;
+
+    /**
+     * used by the serialization to read a snapshot
+     */
+    public KalahSnapshot() {
+    }
+
+    /**
+     * @param game the game to write
+     */
+    KalahSnapshot(final Kalah game) {
+        this.game = game;
+    }
+
+    @Override
+    public void writeExternal(final ObjectOutput out) throws IOException {
+        final Kalah game = this.game;
+        final KalahConfiguration config = game.getConfiguration();
+
+        out.writeByte(FORMAT);
+        out.writeLong(game.getId());
+        writeVarint(out, config.getPits());
+        writeVarint(out, config.getStones());
+        writeVarint(out, game.getVersion());
+        out.writeByte((game.isStarted() ? FLAG_STARTED : 0) | (game.isFreeMove() ? FLAG_FREE_MOVE : 0)
+                | (game.isRemote() ? FLAG_REMOTE : 0) | (game.isSeatTaken() ? FLAG_SEAT_TAKEN : 0));
+
+        this.writePlayer(game.getPlayerOne(), out);
+        this.writePlayer(game.getPlayerTwo(), out);
+        out.writeByte(game.getCurrentPlayer().getPlayerId() == game.getPlayerOne().getPlayerId() ? 1 : 2);
+
+        out.writeUTF(game.getKalahListener().getClass().getName());
+        game.writeMoves(out);
+    }
+
+    private void writePlayer(final Player player, final ObjectOutput out) throws IOException {
+        if (player instanceof SearchPlayer) {
+            out.writeByte(PLAYER_COMPUTER);
+            writeVarint(out, player.getPlayerId());
+            writeVarint(out, ((SearchPlayer) player).getMoveBudgetMillis());
+        } else if (player instanceof RequestPlayer) {
+            out.writeByte(PLAYER_HUMAN);
+            writeVarint(out, player.getPlayerId());
+        } else {
+            throw new NotSerializableException(player.getClass().getName());
+        }
+
+        final int pits = this.game.getConfiguration().getPits();
+        for (int i = 0; i < pits; i++) {
+            writeVarint(out, player.countPitStones(i));
+        }
+        writeVarint(out, player.countStoreStones());
+    }
+
+    @Override
+    public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+        final int format = in.readUnsignedByte();
+        if (format != FORMAT && format != FORMAT_WITHOUT_MOVES) {
+            throw new InvalidObjectException("Unsupported snapshot format " + format);
+        }
+
+        final long id = in.readLong();
+        final int pits = readInt(in);
+        final int stones = readInt(in);
+        final long version = readVarint(in);
+        final int flags = in.readUnsignedByte();
+
+        final KalahConfiguration config;
+        try {
+            config = new KalahConfiguration(pits, stones);
+        } catch (IllegalArgumentException ex) {
+            throw (InvalidObjectException) new InvalidObjectException(ex.getMessage()).initCause(ex);
+        }
+
+        // the players are read before the listener, keep them aside until the game exists
+        final int[][] pitStones = new int[2][pits];
+        final int[] storeStones = new int[2];
+        final int[] kinds = new int[2];
+        final int[] ids = new int[2];
+        final long[] budgets = new long[2];
+        for (int p = 0; p < 2; p++) {
+            kinds[p] = in.readUnsignedByte();
+            ids[p] = readInt(in);
+            if (kinds[p] == PLAYER_COMPUTER) {
+                budgets[p] = readVarint(in);
+            } else if (kinds[p] != PLAYER_HUMAN) {
+                throw new InvalidObjectException("Unknown player kind " + kinds[p]);
+            }
+            for (int i = 0; i < pits; i++) {
+                pitStones[p][i] = readInt(in);
+            }
+            storeStones[p] = readInt(in);
+        }
+        final int current = in.readUnsignedByte();
+        if (current != 1 && current != 2) {
+            throw new InvalidObjectException("Unknown current player " + current);
+        }
+
+        final Kalah game = new Kalah(config, createListener(in.readUTF()), id);
+        final Player[] players = new Player[2];
+        try {
+            for (int p = 0; p < 2; p++) {
+                players[p] = kinds[p] == PLAYER_COMPUTER
+                        ? new SearchPlayer(game, ids[p], SearchEngines.forBoard(config), budgets[p])
+                        : new RequestPlayer(game, ids[p]);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw (InvalidObjectException) new InvalidObjectException(ex.getMessage()).initCause(ex);
+        }
+
+        game.setPlayerOne(players[0]);
+        game.setPlayerTwo(players[1]);
+        game.setCurrentPlayer(players[current - 1]);
+        for (int p = 0; p < 2; p++) {
+            players[p].restoreStones(pitStones[p], storeStones[p]);
+        }
+        game.restore(version, (flags & FLAG_STARTED) != 0, (flags & FLAG_FREE_MOVE) != 0);
+        game.setRemote((flags & FLAG_REMOTE) != 0);
+        game.setSeatTaken((flags & FLAG_SEAT_TAKEN) != 0);
+        if (format == FORMAT) {
+            game.readMoves(in);
+        }
+
+        this.game = game;
+    }
+
+    private static KalahListener createListener(final String className) throws IOException, ClassNotFoundException {
+        final Class<?> type = Class.forName(className, false, KalahSnapshot.class.getClassLoader());
+        if (!KalahListener.class.isAssignableFrom(type)) {
+            throw new InvalidObjectException(className + " is not a listener");
+        }
+
+        try {
+            // the listeners of the servlets are private classes
+            final Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (KalahListener) constructor.newInstance();
+        } catch (ReflectiveOperationException | SecurityException ex) {
+            throw (InvalidObjectException) new InvalidObjectException("Cannot create the listener " + className)
+                    .initCause(ex);
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return this.game;
+    }
+
+    private static void writeVarint(final ObjectOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(final ObjectInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Malformed varint");
+    }
+
+    private static int readInt(final ObjectInput in) throws IOException {
+        final long value = readVarint(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new InvalidObjectException("Number out of range " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,253 @@
+package com.mehinovic.kalah.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * The moves of a game as the cells each move changed and by how many stones,
+ * so moves can be taken back and played again without keeping a board per move.
+ * Moves are only ever taken back from the board after them and played again from the board before them,
+ * so the change of a cell is enough to get either board from the other.
+ * Cells are numbered like the compact board. A move takes two ints per changed cell and two bytes,
+ * taking back or playing again a move only touches the cells it changed however long the game is.
+ * Playing a move after moves were taken back forgets the moves that could have been played again.
+ */
+final class MoveLog {
+
+    /**
+     * the state of the game before and after a move
+     */
+    static final int STATE_PLAYER_TWO = 1;
+    static final int STATE_FREE_MOVE = 2;
+    static final int STATE_STARTED = 4;
+
+    private static final int INITIAL_MOVES = 16;
+
+    /**
+     * the first change of every move, and of the move being played
+     */
+    private int[] starts = new int[INITIAL_MOVES + 1];
+    private byte[] before = new byte[INITIAL_MOVES];
+    private byte[] after = new byte[INITIAL_MOVES];
+
+    /**
+     * the cell and the change of its stones of every change,
+     * the stones before the move while it is being played
+     */
+    private int[] changes = new int[INITIAL_MOVES * 2 * 4];
+    private int size;
+
+    /**
+     * the moves played, and the moves recorded. The moves between them were taken back and can be played again
+     */
+    private int played;
+    private int recorded;
+    private boolean pending;
+
+    /**
+     * records a changed cell of the move being played, the first one starts the move
+     * @param cell the changed cell, each once per move
+     * @param stones the stones of the cell before the move
+     * @param state the state of the game before the move
+     */
+    void changed(final int cell, final int stones, final int state) {
+        if (!this.pending) {
+            // forget the moves taken back
+            this.pending = true;
+            this.recorded = this.played;
+            this.size = this.starts[this.played];
+            this.ensureMoves(this.played + 1);
+            this.before[this.played] = (byte) state;
+        }
+
+        this.ensureChanges(this.size + 2);
+        this.changes[this.size] = cell;
+        this.changes[this.size + 1] = stones;
+        this.size += 2;
+    }
+
+    private void ensureMoves(final int moves) {
+        if (moves > this.before.length) {
+            final int capacity = Math.max(moves, 2 * this.before.length);
+            this.starts = Arrays.copyOf(this.starts, capacity + 1);
+            this.before = Arrays.copyOf(this.before, capacity);
+            this.after = Arrays.copyOf(this.after, capacity);
+        }
+    }
+
+    private void ensureChanges(final int size) {
+        if (size > this.changes.length) {
+            this.changes = Arrays.copyOf(this.changes, Math.max(size, 2 * this.changes.length));
+        }
+    }
+
+    /**
+     * ends the move being played
+     * @param game the game, to read the stones of the changed cells after the move
+     * @param state the state of the game after the move
+     */
+    void commit(final Kalah game, final int state) {
+        if (!this.pending) {
+            return;
+        }
+
+        for (int i = this.starts[this.played]; i < this.size; i += 2) {
+            this.changes[i + 1] = game.getCellStones(this.changes[i]) - this.changes[i + 1];
+        }
+        this.after[this.played] = (byte) state;
+        this.starts[++this.played] = this.size;
+        this.recorded = this.played;
+        this.pending = false;
+    }
+
+    /**
+     * takes back the last move played
+     * @param game the game whose cells are restored
+     * @return the state of the game before the move
+     */
+    int undo(final Kalah game) {
+        final int move = --this.played;
+        for (int i = this.starts[move]; i < this.starts[move + 1]; i += 2) {
+            game.restoreCell(this.changes[i], game.getCellStones(this.changes[i]) - this.changes[i + 1]);
+        }
+        return this.before[move];
+    }
+
+    /**
+     * plays the next move taken back again
+     * @param game the game whose cells are restored
+     * @return the state of the game after the move
+     */
+    int redo(final Kalah game) {
+        final int move = this.played++;
+        for (int i = this.starts[move]; i < this.starts[move + 1]; i += 2) {
+            game.restoreCell(this.changes[i], game.getCellStones(this.changes[i]) + this.changes[i + 1]);
+        }
+        return this.after[move];
+    }
+
+    /**
+     * forgets all moves, the board was overwritten
+     */
+    void clear() {
+        this.played = 0;
+        this.recorded = 0;
+        this.size = 0;
+        this.pending = false;
+    }
+
+    /**
+     * @return the amount of moves played
+     */
+    int getPlayed() {
+        return this.played;
+    }
+
+    /**
+     * @return the amount of moves played and taken back
+     */
+    int getRecorded() {
+        return this.recorded;
+    }
+
+    /**
+     * @return the estimated memory of the log in bytes
+     */
+    long estimateBytes() {
+        return 4L * this.starts.length + 2L * this.before.length + 4L * this.changes.length;
+    }
+
+    /**
+     * writes the moves played and taken back: their amounts, then per move the states before and after,
+     * the amount of changes and every cell with its change. Numbers are varints, changes zigzag encoded
+     * @param out the output
+     * @throws IOException if the output cannot be written
+     */
+    void write(final DataOutput out) throws IOException {
+        writeVarint(out, this.played);
+        writeVarint(out, this.recorded);
+        for (int move = 0; move < this.recorded; move++) {
+            out.writeByte(this.before[move]);
+            out.writeByte(this.after[move]);
+            writeVarint(out, (this.starts[move + 1] - this.starts[move]) / 2);
+            for (int i = this.starts[move]; i < this.starts[move + 1]; i += 2) {
+                writeVarint(out, this.changes[i]);
+                final int change = this.changes[i + 1];
+                writeVarint(out, (change << 1) ^ (change >> 31));
+            }
+        }
+    }
+
+    /**
+     * replaces the moves with the moves written by write
+     * @param in the input
+     * @param cells the amount of cells on the board
+     * @throws IOException if the input cannot be read or holds no moves of the board
+     */
+    void read(final DataInput in, final int cells) throws IOException {
+        this.clear();
+        try {
+            this.readMoves(in, cells);
+        } catch (IOException exc) {
+            this.clear();
+            throw exc;
+        }
+    }
+
+    private void readMoves(final DataInput in, final int cells) throws IOException {
+        final int played = readVarint(in);
+        final int recorded = readVarint(in);
+        if (played > recorded) {
+            throw new StreamCorruptedException("Played " + played + " of " + recorded + " moves");
+        }
+
+        for (int move = 0; move < recorded; move++) {
+            this.ensureMoves(move + 1);
+            this.before[move] = in.readByte();
+            this.after[move] = in.readByte();
+            final int count = readVarint(in);
+            if (count > cells) {
+                throw new StreamCorruptedException("A move cannot change " + count + " cells");
+            }
+            this.ensureChanges(this.size + 2 * count);
+            for (int i = 0; i < count; i++) {
+                final int cell = readVarint(in);
+                if (cell >= cells) {
+                    throw new StreamCorruptedException("Cell " + cell + " is not on the board");
+                }
+                final int change = readVarint(in);
+                this.changes[this.size++] = cell;
+                this.changes[this.size++] = (change >>> 1) ^ -(change & 1);
+            }
+            this.starts[move + 1] = this.size;
+        }
+        this.played = played;
+        this.recorded = recorded;
+    }
+
+    private static void writeVarint(final DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(final DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+}
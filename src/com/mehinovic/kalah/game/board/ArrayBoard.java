@@ -0,0 +1,140 @@
+package com.mehinovic.kalah.game.board;
+
+import java.util.Arrays;
+
+/**
+ * Board of any size, kept in an int array
+ */
+final class ArrayBoard extends Board {
+
+    private final int pits;
+    /**
+     * player one's pits and store followed by player two's pits and store
+     */
+    private final int[] cells;
+    private final int sideToMove;
+
+    ArrayBoard(final int pits, final int[] cells, final int sideToMove, final int flags, final long hash) {
+        super(flags, hash);
+        this.pits = pits;
+        this.cells = cells;
+        this.sideToMove = sideToMove;
+    }
+
+    @Override
+    public Board play(final int pitId) {
+        if (!this.isLegal(pitId)) {
+            throw new IllegalStateException("You cannot make move on that pit");
+        }
+
+        final int[] next = this.cells.clone();
+        final int mover = this.sideToMove;
+        final int base = this.storeIndex(mover) - this.pits;
+        final int oppBase = this.storeIndex(1 - mover) - this.pits;
+        final int ringLength = 2 * this.pits + 1;
+
+        // the ring holds our pits, our store and the opponent's pits, a pit's position is its id
+        final int stones = next[base + pitId];
+        next[base + pitId] = 0;
+
+        // every container of the ring gets a stone per full lap, including the pit we sow from
+        final int laps = stones / ringLength;
+        final int remainder = stones % ringLength;
+        if (laps > 0) {
+            for (int i = 0; i <= this.pits; i++) {
+                next[base + i] += laps;
+            }
+            for (int i = 0; i < this.pits; i++) {
+                next[oppBase + i] += laps;
+            }
+        }
+
+        int ringIndex = pitId;
+        for (int i = 0; i < remainder; i++) {
+            if (++ringIndex == ringLength) {
+                ringIndex = 0;
+            }
+            next[ringIndex <= this.pits ? base + ringIndex : oppBase + ringIndex - this.pits - 1]++;
+        }
+
+        int result = 0;
+        // only a move without a full lap empties its pit and ends in another container
+        if (laps == 0) {
+            if (ringIndex == this.pits) {
+                result |= FREE_MOVE;
+            } else if (ringIndex < this.pits && next[base + ringIndex] == 1) {
+                final int opposite = oppBase + this.pits - ringIndex - 1;
+                if (next[opposite] > 0) {
+                    next[base + this.pits] += next[opposite] + 1;
+                    next[opposite] = 0;
+                    next[base + ringIndex] = 0;
+                    result |= CAPTURE;
+                }
+            }
+        }
+
+        // the game ends when a side runs out of stones, the other side takes its own stones
+        if (sum(next, base, this.pits) == 0) {
+            sweep(next, oppBase, this.pits);
+            result |= GAME_OVER;
+        } else if (sum(next, oppBase, this.pits) == 0) {
+            sweep(next, base, this.pits);
+            result |= GAME_OVER;
+        }
+
+        final boolean samePlayer = (result & (FREE_MOVE | GAME_OVER)) != 0;
+        final int side = samePlayer ? mover : 1 - mover;
+
+        // only the cells that changed have to be rehashed
+        long hash = this.getHash() ^ (side != mover ? Zobrist.SIDE_KEY : 0);
+        for (int i = 0; i < next.length; i++) {
+            if (next[i] != this.cells[i]) {
+                hash ^= Zobrist.key(i, this.cells[i]) ^ Zobrist.key(i, next[i]);
+            }
+        }
+
+        return new ArrayBoard(this.pits, next, side, result, hash);
+    }
+
+    private static int sum(final int[] cells, final int from, final int length) {
+        int sum = 0;
+        for (int i = from; i < from + length; i++) {
+            sum += cells[i];
+        }
+        return sum;
+    }
+
+    private static void sweep(final int[] cells, final int from, final int length) {
+        cells[from + length] += sum(cells, from, length);
+        Arrays.fill(cells, from, from + length, 0);
+    }
+
+    private int storeIndex(final int side) {
+        return side == PLAYER_ONE ? this.pits : 2 * this.pits + 1;
+    }
+
+    @Override
+    public int getPits() {
+        return this.pits;
+    }
+
+    @Override
+    public int getStones(final int side, final int pitId) {
+        return this.cells[this.storeIndex(side) - this.pits + pitId];
+    }
+
+    @Override
+    public int getStore(final int side) {
+        return this.cells[this.storeIndex(side)];
+    }
+
+    @Override
+    public int countPitStones(final int side) {
+        return sum(this.cells, this.storeIndex(side) - this.pits, this.pits);
+    }
+
+    @Override
+    public int getSideToMove() {
+        return this.sideToMove;
+    }
+}
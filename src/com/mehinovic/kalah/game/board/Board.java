@@ -0,0 +1,233 @@
+package com.mehinovic.kalah.game.board;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.entity.Player;
+
+/**
+ * Immutable value of a Kalah board, used to look ahead and simulate without touching a live game.
+ * Playing a move follows the rules of Player.distributeFromPit and Pit.containerReceivedLast,
+ * and returns a new board that remembers what the move did.
+ * Sides are 0 for player one and 1 for player two.
+ * Boards of up to 6 pits with at most 255 stones are packed into two longs,
+ * larger boards are kept in a small int array.
+ */
+public abstract class Board {
+
+    public static final int PLAYER_ONE = 0;
+    public static final int PLAYER_TWO = 1;
+
+    static final int FREE_MOVE = 1;
+    static final int CAPTURE = 1 << 1;
+    static final int GAME_OVER = 1 << 2;
+
+    private final int flags;
+    private final long hash;
+
+    Board(final int flags, final long hash) {
+        this.flags = flags;
+        this.hash = hash;
+    }
+
+    /**
+     * creates the board a new game starts with, player one is to move
+     * @param pits the amount of pits per player
+     * @param stones the amount of stones in every pit
+     * @return a non-null board
+     */
+    public static Board initial(final int pits, final int stones) {
+        final int[] cells = new int[2 * pits + 2];
+        for (int i = 0; i < pits; i++) {
+            cells[i] = stones;
+            cells[pits + 1 + i] = stones;
+        }
+
+        return create(pits, cells, PLAYER_ONE, 0);
+    }
+
+    /**
+     * copies the current state of a live game, the game is only read
+     * @param game the game to copy
+     * @return a non-null board
+     */
+    public static Board of(final Kalah game) {
+        final int pits = game.getConfiguration().getPits();
+        final int[] cells = new int[2 * pits + 2];
+        copyPlayer(game.getPlayerOne(), cells, 0, pits);
+        copyPlayer(game.getPlayerTwo(), cells, pits + 1, pits);
+
+        final int side = game.getCurrentPlayer().equals(game.getPlayerOne()) ? PLAYER_ONE : PLAYER_TWO;
+        return create(pits, cells, side, game.isEndOfGame() != null ? GAME_OVER : 0);
+    }
+
+    /**
+     * creates a board from its cells, used by tools that enumerate or store boards
+     * @param pits the amount of pits per player
+     * @param cells player one's pits and store followed by player two's pits and store, the array is copied
+     * @param sideToMove the side that plays the next move
+     * @return a non-null board, the game on it is over if a side has no stones left in its pits
+     */
+    public static Board of(final int pits, final int[] cells, final int sideToMove) {
+        if (pits < 1 || cells.length != 2 * pits + 2) {
+            throw new IllegalArgumentException("Expected the cells of a board of " + pits + " pits");
+        }
+        if (sideToMove != PLAYER_ONE && sideToMove != PLAYER_TWO) {
+            throw new IllegalArgumentException("invalid side " + sideToMove);
+        }
+
+        int one = 0;
+        int two = 0;
+        for (int i = 0; i < pits; i++) {
+            one += cells[i];
+            two += cells[pits + 1 + i];
+        }
+        return create(pits, cells.clone(), sideToMove, one == 0 || two == 0 ? GAME_OVER : 0);
+    }
+
+    /**
+     * creates a board from its cells
+     * @param pits the amount of pits per player
+     * @param cells player one's pits and store followed by player two's pits and store
+     * @param sideToMove the side that plays the next move
+     * @param flags what the move that produced the board did
+     * @return a packed board if the board fits in two longs, an array backed one otherwise
+     */
+    static Board create(final int pits, final int[] cells, final int sideToMove, final int flags) {
+        int total = 0;
+        for (int cell : cells) {
+            total += cell;
+        }
+
+        final long hash = Zobrist.hash(cells, sideToMove);
+        return PackedBoard.fits(pits, total)
+                ? PackedBoard.pack(pits, cells, sideToMove, flags, hash)
+                : new ArrayBoard(pits, cells, sideToMove, flags, hash);
+    }
+
+    private static void copyPlayer(final Player player, final int[] cells, final int offset, final int pits) {
+        for (int i = 0; i < pits; i++) {
+            cells[offset + i] = player.countPitStones(i);
+        }
+        cells[offset + pits] = player.countStoreStones();
+    }
+
+    /**
+     * writes this board into a live game with the same amount of pits,
+     * no listener events are fired
+     * @param game the game to overwrite
+     * @throws IllegalArgumentException if the game has a different amount of pits
+     */
+    public final void applyTo(final Kalah game) {
+        final int pits = this.getPits();
+        if (game.getConfiguration().getPits() != pits) {
+            throw new IllegalArgumentException("Cannot apply a board of " + pits + " pits to a game of "
+                    + game.getConfiguration().getPits() + " pits");
+        }
+
+        final int[] pitStones = new int[pits];
+        for (int side = PLAYER_ONE; side <= PLAYER_TWO; side++) {
+            for (int i = 0; i < pits; i++) {
+                pitStones[i] = this.getStones(side, i);
+            }
+            final Player player = side == PLAYER_ONE ? game.getPlayerOne() : game.getPlayerTwo();
+            player.restoreStones(pitStones, this.getStore(side));
+        }
+
+        game.setCurrentPlayer(this.getSideToMove() == PLAYER_ONE ? game.getPlayerOne() : game.getPlayerTwo());
+    }
+
+    /**
+     * plays a move for the side to move
+     * @param pitId the pit to distribute stones from
+     * @return the board after the move
+     * @throws IllegalStateException if the move is not legal
+     */
+    public abstract Board play(final int pitId);
+
+    /**
+     * @return the amount of pits per player
+     */
+    public abstract int getPits();
+
+    /**
+     * @param side the side that owns the pit
+     * @param pitId the pit
+     * @return the amount of stones in the pit
+     */
+    public abstract int getStones(final int side, final int pitId);
+
+    /**
+     * @param side the side that owns the store
+     * @return the amount of stones in the store
+     */
+    public abstract int getStore(final int side);
+
+    /**
+     * @return the side that plays the next move
+     */
+    public abstract int getSideToMove();
+
+    /**
+     * @param side the side to count for
+     * @return the sum of the stones in the side's pits
+     */
+    public int countPitStones(final int side) {
+        int sum = 0;
+        for (int i = 0; i < this.getPits(); i++) {
+            sum += this.getStones(side, i);
+        }
+        return sum;
+    }
+
+    /**
+     * @param pitId the pit to check
+     * @return true if the side to move may distribute from the specified pit
+     */
+    public final boolean isLegal(final int pitId) {
+        return !this.isGameOver() && pitId >= 0 && pitId < this.getPits()
+                && this.getStones(this.getSideToMove(), pitId) > 0;
+    }
+
+    /**
+     * @return the zobrist hash of this board, see Zobrist
+     */
+    public final long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * @return true if the move that produced this board ended in the mover's store
+     */
+    public final boolean isFreeMove() {
+        return (this.flags & FREE_MOVE) != 0;
+    }
+
+    /**
+     * @return true if the move that produced this board captured the opposite pit
+     */
+    public final boolean isCapture() {
+        return (this.flags & CAPTURE) != 0;
+    }
+
+    /**
+     * @return true if one of the sides has run out of stones
+     */
+    public final boolean isGameOver() {
+        return (this.flags & GAME_OVER) != 0;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder(this.getClass().getSimpleName()).append('{');
+        for (int side = PLAYER_ONE; side <= PLAYER_TWO; side++) {
+            result.append(side == PLAYER_ONE ? "one=[" : ", two=[");
+            for (int i = 0; i < this.getPits(); i++) {
+                result.append(this.getStones(side, i)).append(',');
+            }
+            result.append('|').append(this.getStore(side)).append(']');
+        }
+
+        return result.append(", sideToMove=").append(this.getSideToMove())
+                .append(", flags=").append(this.flags)
+                .append('}').toString();
+    }
+}
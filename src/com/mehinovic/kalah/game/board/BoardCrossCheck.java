@@ -0,0 +1,94 @@
+package com.mehinovic.kalah.game.board;
+
+import java.util.Random;
+
+/**
+ * Plays random games on a packed and an array backed copy of the same board and compares them after every move,
+ * run with
+ * <pre>java com.mehinovic.kalah.game.board.BoardCrossCheck [games] [seed]</pre>
+ * Games start from random boards of 1 to 6 pits with at most 255 stones, the sizes both boards can hold.
+ */
+public final class BoardCrossCheck {
+
+    private static final int DEFAULT_GAMES = 100000;
+
+    private BoardCrossCheck() {}
+
+    public static void main(final String[] args) {
+        final int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        crossCheck(games, new Random(seed));
+        System.out.println(games + " games of packed and array boards agree, seed " + seed);
+    }
+
+    /**
+     * plays random games on a packed and an array board and compares them after every move
+     * @param games the amount of games to play
+     * @param random the random source to pick the boards and the moves with
+     * @throws IllegalStateException if the boards differ
+     */
+    public static void crossCheck(final int games, final Random random) {
+        for (int g = 0; g < games; g++) {
+            final int pits = 1 + random.nextInt(PackedBoard.MAX_PITS);
+            final int[] cells = randomCells(pits, random);
+            final int side = random.nextInt(2);
+            final long hash = Zobrist.hash(cells, side);
+
+            Board packed = PackedBoard.pack(pits, cells, side, 0, hash);
+            Board array = new ArrayBoard(pits, cells.clone(), side, 0, hash);
+            compare(packed, array);
+
+            while (!packed.isGameOver()) {
+                int pit = random.nextInt(pits);
+                while (!packed.isLegal(pit)) {
+                    pit = (pit + 1) % pits;
+                }
+
+                packed = packed.play(pit);
+                array = array.play(pit);
+                compare(packed, array);
+            }
+        }
+    }
+
+    /**
+     * @return the cells of a board with at least a stone on each side and at most as many stones as a packed board holds
+     */
+    private static int[] randomCells(final int pits, final Random random) {
+        final int[] cells = new int[2 * pits + 2];
+        final int total = 2 + random.nextInt(PackedBoard.MAX_STONES - 1);
+
+        // one stone on each side so the game is not over before the first move
+        cells[random.nextInt(pits)]++;
+        cells[pits + 1 + random.nextInt(pits)]++;
+        for (int i = 2; i < total; i++) {
+            cells[random.nextInt(cells.length)]++;
+        }
+        return cells;
+    }
+
+    private static void compare(final Board packed, final Board array) {
+        if (!(packed instanceof PackedBoard) || !(array instanceof ArrayBoard)) {
+            throw new IllegalStateException("A move changed the kind of board " + packed + " " + array);
+        }
+
+        boolean same = packed.getPits() == array.getPits()
+                && packed.getSideToMove() == array.getSideToMove()
+                && packed.isFreeMove() == array.isFreeMove()
+                && packed.isCapture() == array.isCapture()
+                && packed.isGameOver() == array.isGameOver()
+                && packed.getHash() == array.getHash();
+        for (int side = Board.PLAYER_ONE; same && side <= Board.PLAYER_TWO; side++) {
+            same = packed.getStore(side) == array.getStore(side)
+                    && packed.countPitStones(side) == array.countPitStones(side);
+            for (int i = 0; same && i < packed.getPits(); i++) {
+                same = packed.getStones(side, i) == array.getStones(side, i);
+            }
+        }
+
+        if (!same) {
+            throw new IllegalStateException("The packed board " + packed + " differs from " + array);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.mehinovic.kalah.game.board;
+
+/**
+ * Board of up to 6 pits holding at most 255 stones, packed into two longs.
+ * Each row holds a player's pits in its low bytes followed by the player's store,
+ * the top byte of player one's row holds the amount of pits and the top byte of
+ * player two's row the side to move. No count can exceed 255, so whole rows are
+ * sown with plain additions without carries between the bytes.
+ */
+final class PackedBoard extends Board {
+
+    static final int MAX_PITS = 6;
+    static final int MAX_STONES = 255;
+
+    /**
+     * a one in every byte
+     */
+    private static final long ONES = 0x0101010101010101L;
+    private static final long META_MASK = 0xFFL << 56;
+
+    private final long rowOne;
+    private final long rowTwo;
+
+    private PackedBoard(final long rowOne, final long rowTwo, final int flags, final long hash) {
+        super(flags, hash);
+        this.rowOne = rowOne;
+        this.rowTwo = rowTwo;
+    }
+
+    /**
+     * @param pits the amount of pits per player
+     * @param totalStones the amount of stones on the board, stores included
+     * @return true if a board of this size can be packed
+     */
+    static boolean fits(final int pits, final int totalStones) {
+        return pits <= MAX_PITS && totalStones <= MAX_STONES;
+    }
+
+    static PackedBoard pack(final int pits, final int[] cells, final int sideToMove, final int flags,
+            final long hash) {
+        long rowOne = (long) pits << 56;
+        long rowTwo = (long) sideToMove << 56;
+        for (int i = 0; i <= pits; i++) {
+            rowOne |= (long) cells[i] << (8 * i);
+            rowTwo |= (long) cells[pits + 1 + i] << (8 * i);
+        }
+
+        return new PackedBoard(rowOne, rowTwo, flags, hash);
+    }
+
+    /**
+     * @param from the first byte
+     * @param count the amount of bytes
+     * @return a one in every byte of the range
+     */
+    private static long bytes(final int from, final int count) {
+        return count <= 0 ? 0 : (((1L << (8 * count)) - 1) << (8 * from)) & ONES;
+    }
+
+    /**
+     * @param row a row without its top byte
+     * @return the sum of all bytes of the row
+     */
+    private static int sum(final long row) {
+        return (int) ((row * ONES) >>> 56);
+    }
+
+    private static int get(final long row, final int index) {
+        return (int) (row >>> (8 * index)) & 0xFF;
+    }
+
+    @Override
+    public Board play(final int pitId) {
+        if (!this.isLegal(pitId)) {
+            throw new IllegalStateException("You cannot make move on that pit");
+        }
+
+        final int pits = this.getPits();
+        final int mover = this.getSideToMove();
+        final long pitMask = bytes(0, pits) * 0xFF;
+        final int ringLength = 2 * pits + 1;
+
+        long own = (mover == PLAYER_ONE ? this.rowOne : this.rowTwo) & ~META_MASK;
+        long opp = (mover == PLAYER_ONE ? this.rowTwo : this.rowOne) & ~META_MASK;
+
+        // the ring holds our pits, our store and the opponent's pits, a pit's position is its id
+        final int stones = get(own, pitId);
+        own &= ~(0xFFL << (8 * pitId));
+
+        // every container of the ring gets a stone per full lap, including the pit we sow from
+        final int laps = stones / ringLength;
+        final int remainder = stones % ringLength;
+        own += laps * bytes(0, pits + 1);
+        opp += laps * bytes(0, pits);
+
+        // the remainder goes to the ring positions after our pit, wrapping around once at most
+        final int first = pitId + 1;
+        final int last = pitId + remainder;
+        own += bytes(first, Math.min(last, pits) - first + 1);
+        opp += bytes(Math.max(first, pits + 1) - pits - 1, Math.min(last, ringLength - 1) - Math.max(first, pits + 1) + 1);
+        if (last >= ringLength) {
+            own += bytes(0, Math.min(last - ringLength, pits) + 1);
+            opp += bytes(0, last - ringLength - pits);
+        }
+
+        int result = 0;
+        // only a move without a full lap empties its pit and ends in another container
+        if (laps == 0) {
+            final int ringIndex = last % ringLength;
+            if (ringIndex == pits) {
+                result |= FREE_MOVE;
+            } else if (ringIndex < pits && get(own, ringIndex) == 1) {
+                final int opposite = pits - ringIndex - 1;
+                final int captured = get(opp, opposite);
+                if (captured > 0) {
+                    own &= ~(0xFFL << (8 * ringIndex));
+                    opp &= ~(0xFFL << (8 * opposite));
+                    own += (long) (captured + 1) << (8 * pits);
+                    result |= CAPTURE;
+                }
+            }
+        }
+
+        // the game ends when a side runs out of stones, the other side takes its own stones
+        if ((own & pitMask) == 0) {
+            opp = ((long) sum(opp) << (8 * pits));
+            result |= GAME_OVER;
+        } else if ((opp & pitMask) == 0) {
+            own = ((long) sum(own) << (8 * pits));
+            result |= GAME_OVER;
+        }
+
+        final int side = (result & (FREE_MOVE | GAME_OVER)) != 0 ? mover : 1 - mover;
+        final long one = mover == PLAYER_ONE ? own : opp;
+        final long two = mover == PLAYER_ONE ? opp : own;
+
+        // only the bytes that changed have to be rehashed
+        long hash = this.getHash() ^ (side != mover ? Zobrist.SIDE_KEY : 0);
+        hash = rehash(hash, this.rowOne, one, 0);
+        hash = rehash(hash, this.rowTwo, two, pits + 1);
+
+        return new PackedBoard(one | (this.rowOne & META_MASK), two | ((long) side << 56), result, hash);
+    }
+
+    private static long rehash(long hash, final long before, final long after, final int firstCell) {
+        long changed = (before ^ after) & ~META_MASK;
+        while (changed != 0) {
+            final int index = Long.numberOfTrailingZeros(changed) >>> 3;
+            hash ^= Zobrist.key(firstCell + index, get(before, index)) ^ Zobrist.key(firstCell + index, get(after, index));
+            changed &= ~(0xFFL << (8 * index));
+        }
+        return hash;
+    }
+
+    @Override
+    public int getPits() {
+        return (int) (this.rowOne >>> 56);
+    }
+
+    @Override
+    public int getStones(final int side, final int pitId) {
+        return get(side == PLAYER_ONE ? this.rowOne : this.rowTwo, pitId);
+    }
+
+    @Override
+    public int getStore(final int side) {
+        return get(side == PLAYER_ONE ? this.rowOne : this.rowTwo, this.getPits());
+    }
+
+    @Override
+    public int countPitStones(final int side) {
+        final long row = side == PLAYER_ONE ? this.rowOne : this.rowTwo;
+        return sum(row & (bytes(0, this.getPits()) * 0xFF));
+    }
+
+    @Override
+    public int getSideToMove() {
+        return (int) (this.rowTwo >>> 56);
+    }
+
+    /**
+     * @return player one's row, the top byte holds the amount of pits
+     */
+    long getRowOne() {
+        return this.rowOne;
+    }
+
+    /**
+     * @return player two's row, the top byte holds the side to move
+     */
+    long getRowTwo() {
+        return this.rowTwo;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mehinovic.kalah.game.board;
+
+/**
+ * Zobrist keys for board hashing.
+ * A board's hash is the xor of a key for every cell and its amount of stones,
+ * and a key for the side to move when player two is to move,
+ * so a move only has to xor out the old and xor in the new keys of the cells it changed.
+ * Cells are numbered like the board's cells, player one's pits and store followed by player two's.
+ */
+public final class Zobrist {
+
+    private static final int TABLE_CELLS = 16;
+    private static final int TABLE_COUNTS = 256;
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    /**
+     * keys for the cells and counts of boards that can be packed, larger values are mixed on demand
+     */
+    private static final long[] KEYS = new long[TABLE_CELLS * TABLE_COUNTS];
+    static {
+        for (int cell = 0; cell < TABLE_CELLS; cell++) {
+            for (int count = 0; count < TABLE_COUNTS; count++) {
+                KEYS[cell * TABLE_COUNTS + count] = mix(cell, count);
+            }
+        }
+    }
+
+    /**
+     * the key that is xor'ed in when player two is to move
+     */
+    public static final long SIDE_KEY = mix(-1, 0);
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param cell the cell index
+     * @param count the amount of stones in the cell
+     * @return the key of the cell holding the specified amount of stones
+     */
+    public static long key(final int cell, final int count) {
+        return cell < TABLE_CELLS && count < TABLE_COUNTS
+                ? KEYS[cell * TABLE_COUNTS + count]
+                : mix(cell, count);
+    }
+
+    /**
+     * @param board the board to hash
+     * @return the hash of the board, computed from scratch
+     */
+    public static long hash(final Board board) {
+        final int pits = board.getPits();
+        long hash = board.getSideToMove() == Board.PLAYER_TWO ? SIDE_KEY : 0;
+        for (int side = Board.PLAYER_ONE; side <= Board.PLAYER_TWO; side++) {
+            final int offset = side * (pits + 1);
+            for (int i = 0; i < pits; i++) {
+                hash ^= key(offset + i, board.getStones(side, i));
+            }
+            hash ^= key(offset + pits, board.getStore(side));
+        }
+        return hash;
+    }
+
+    /**
+     * @param cells player one's pits and store followed by player two's pits and store
+     * @param sideToMove the side that plays the next move
+     * @return the hash of the board, computed from scratch
+     */
+    public static long hash(final int[] cells, final int sideToMove) {
+        long hash = sideToMove == Board.PLAYER_TWO ? SIDE_KEY : 0;
+        for (int i = 0; i < cells.length; i++) {
+            hash ^= key(i, cells[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * splitmix64 finalizer over the cell and count
+     */
+    private static long mix(final int cell, final int count) {
+        long z = SEED + (((long) cell << 32) | (count & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
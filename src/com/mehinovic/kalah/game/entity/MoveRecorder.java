@@ -0,0 +1,25 @@
+package com.mehinovic.kalah.game.entity;
+
+/**
+ * Keeps track of the changes of a move for its game, so it can be taken back and sent as a delta.
+ * A game attaches its recorder to its players, only the players call it
+ */
+public interface MoveRecorder {
+
+    /**
+     * Called whenever a container gains or loses stones during a move, before the stones move
+     * @param container the changed container
+     */
+    void containerChanged(StoneContainer container);
+
+    /**
+     * Called once a move is done, the move's changes become the next version
+     * @param freeMove true if the move ended in the mover's store
+     */
+    void moveEnded(boolean freeMove);
+
+    /**
+     * Called when the stones of a player are overwritten
+     */
+    void stonesRestored();
+}
@@ -1,6 +1,7 @@
 package com.mehinovic.kalah.game.entity;
 
 import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.events.KalahEvent;
 
 /**
  * Represents a Pit that belongs to a Player.
@@ -30,16 +31,8 @@ public final class Pit extends StoneContainer {
         		" supplied, must be between 0 and " + (this.configuration.getPits() - 1));
         }
         
-       final int amtStones = this.configuration.getStones();
-
-        // populate the internal stone list as this is a new object, and will only be created for a new game
-        for (int i = 0; i < amtStones; i++) {
-            final Stone newStone = new Stone();
-            newStone.setCurrentPlayer(player);
-
-            // accept this stone into the pit
-            this.accept(newStone);
-        }
+        // populate the pit as this is a new object, and will only be created for a new game
+        this.accept(this.configuration.getStones());
     }
 
     /**
@@ -58,9 +51,17 @@ public final class Pit extends StoneContainer {
         return oppositePlayer.getPitById(this.configuration.getPits() - this.getPitId() - 1);
     }
 
+    @Override
+    protected void stonesChanged(final int delta) {
+        // keep the owner's pit total up to date so the end of the game can be checked without a scan
+        this.getPlayer().pitStonesChanged(delta);
+    }
+
     @Override
     public void containerEmpty() {
-        this.getPlayer().getGame().getKalahListener().pitEmpty(this);
+        if (this.getPlayer().getGame().isListening(KalahEvent.PIT_EMPTY)) {
+            this.getPlayer().getGame().getKalahListener().pitEmpty(this);
+        }
     }
 
     /**
@@ -81,6 +82,7 @@ public final class Pit extends StoneContainer {
             // if the opposite pit has stones, we transfer ours and theirs to our store
             if (oppositePit.amountOfStones() > 0) {
                 final Store store = pitOwner.getStore();
+                pitOwner.moveCaptured(oppositePit.amountOfStones() + 1);
                 // take our new stone and the opponent's stones and transfer to our store
                 oppositePit.distributeAll(store);
                 // since we don't support free moves from this method, 
@@ -1,11 +1,13 @@
 package com.mehinovic.kalah.game.entity;
 
 import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.events.KalahEvent;
+import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.events.MoveSummary;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -19,6 +21,27 @@ public abstract class Player implements Serializable {
     private final Store store;
     private final Pit[] pits;
 
+    /**
+     * the containers this player sows into, in sowing order,
+     * built on the first move since the opponent does not exist yet on construction
+     */
+    private transient StoneContainer[] sowingRing;
+
+    /**
+     * the sum of all stones in this player's pits, kept up to date by the pits
+     */
+    private transient int pitStones;
+
+    /**
+     * the summary of the move this player is making, only collected if the listener wants it
+     */
+    private transient MoveSummary.Builder move;
+
+    /**
+     * the recorder of the game's moves, attached once the game takes this player
+     */
+    private transient MoveRecorder recorder;
+
     private final int playerId;
     private final String playerName;
 
@@ -53,21 +76,43 @@ public abstract class Player implements Serializable {
         return ImmutableList.copyOf(this.pits);
     }
 
+    /**
+     * retrieves the game ring, the player will start distribution from his pit
+     * around this ring until his stones run out.
+     * the ring holds this player's pits, his store and the opponent's pits,
+     * the opponent's store is skipped. A pit's index in the ring equals its pitId.
+     * @return a non-null array of containers in sowing order
+     */
+    private StoneContainer[] getSowingRing() {
+        if (this.sowingRing == null) {
+            final Pit[] opponentPits = this.getOpponent().pits;
+            final StoneContainer[] ring = new StoneContainer[this.pits.length + 1 + opponentPits.length];
+
+            // add our own pits
+            System.arraycopy(this.pits, 0, ring, 0, this.pits.length);
+            // drop in our store, never in opponent's store
+            ring[this.pits.length] = this.store;
+            // drop in opponent's pits
+            System.arraycopy(opponentPits, 0, ring, this.pits.length + 1, opponentPits.length);
+
+            this.sowingRing = ring;
+        }
+
+        return this.sowingRing;
+    }
+
     /**
      * retrieves this player's pit by the specified pitId
      * @param pitId a valid pitId
      * @return a valid pit, or null of none were found or an invalid id was supplied
      */
     protected final Pit getPitById(final int pitId) {
-        Pit usePit = null;
-        for (Pit pit : this.pits) {
-            if (pit.getPitId() == pitId) {
-                usePit = pit;
-                break;
-            }
+        // pits are stored by their id
+        if (pitId < 0 || pitId >= this.pits.length) {
+            return null;
         }
 
-        return usePit;
+        return this.pits[pitId];
     }
     
     /**
@@ -75,36 +120,117 @@ public abstract class Player implements Serializable {
      * @return sum of all stones in pits
      */
     public final int countPitStones() {
-    	return this.countStones(false);
+    	return this.pitStones;
     }
     
+    /**
+     * Count the stones in one of the player's pits
+     * @param pitId a valid pitId
+     * @return the amount of stones in the pit
+     * @throws IllegalArgumentException if the pitId is invalid
+     */
+    public final int countPitStones(final int pitId) {
+        final Pit pit = this.getPitById(pitId);
+        if (pit == null) {
+            throw new IllegalArgumentException("invalid pitId " + pitId);
+        }
+        return pit.amountOfStones();
+    }
+
     /**
      * Count total number of stones in store
      * @return sum of stones in store
      */
     public final int countStoreStones() {
-    	return this.countStones(true);
+    	return this.store.amountOfStones();
     }
 
     /**
-     * Count stones for a player
-     * @param countTakenStones should the count stones in store or in the pits?
-     * @return the sum of all stones in a player's store or pits
+     * overwrites the stones in this player's pits and store without firing any listener events,
+     * used to restore a game from a stored state
+     * @param pitStones the amount of stones for every pit, indexed by pitId
+     * @param storeStones the amount of stones for the store
+     * @throws IllegalArgumentException if the amount of pits does not match
      */
-    private final int countStones(final boolean countTakenStones) {
-        final List<StoneContainer> containers = Lists.newArrayList();
-        if (countTakenStones) {
-            containers.add(this.store);
-        } else {
-        	containers.addAll(Arrays.asList(this.pits));
+    public final void restoreStones(final int[] pitStones, final int storeStones) {
+        if (pitStones == null || pitStones.length != this.pits.length) {
+            throw new IllegalArgumentException("Expected the stones of " + this.pits.length + " pits");
+        }
+
+        for (int i = 0; i < this.pits.length; i++) {
+            this.pits[i].restoreStones(pitStones[i]);
+        }
+        this.store.restoreStones(storeStones);
+        if (this.recorder != null) {
+            this.recorder.stonesRestored();
         }
+    }
 
-        int sum = 0;
-        for (StoneContainer container : containers) {
-            sum += container.amountOfStones();
+    /**
+     * overwrites the stones in one of this player's pits without firing any listener events,
+     * used by the game to take back and play again a move it keeps track of
+     * @param pitId a valid pitId
+     * @param stones the amount of stones for the pit
+     * @throws IllegalArgumentException if the pitId is invalid
+     */
+    public final void restorePitStones(final int pitId, final int stones) {
+        final Pit pit = this.getPitById(pitId);
+        if (pit == null) {
+            throw new IllegalArgumentException("invalid pitId " + pitId);
         }
+        pit.restoreStones(stones);
+    }
 
-        return sum;
+    /**
+     * overwrites the stones in this player's store without firing any listener events,
+     * used by the game to take back and play again a move it keeps track of
+     * @param stones the amount of stones for the store
+     */
+    public final void restoreStoreStones(final int stones) {
+        this.store.restoreStones(stones);
+    }
+
+    /**
+     * Called by the game when it takes this player, a player is only ever attached to its game once
+     * @param recorder the recorder of the game's moves
+     * @throws IllegalStateException if this player is already attached
+     */
+    public final void attach(final MoveRecorder recorder) throws IllegalStateException {
+        if (this.recorder != null) {
+            throw new IllegalStateException(this.playerName + " is already attached to its game");
+        }
+        this.recorder = recorder;
+    }
+
+    /**
+     * Called by this player's pits whenever their amount of stones changes
+     * @param delta the change in the amount of stones
+     */
+    final void pitStonesChanged(final int delta) {
+        this.pitStones += delta;
+    }
+
+    /**
+     * Called by the containers whenever stones move during this player's move
+     * @param from the container the stones were taken from
+     * @param to the container the stones were put in
+     */
+    final void moveChanged(final StoneContainer from, final StoneContainer to) {
+        this.recorder.containerChanged(from);
+        this.recorder.containerChanged(to);
+        if (this.move != null) {
+            this.move.changed(from).changed(to);
+        }
+    }
+
+    /**
+     * Called by this player's pits when they capture
+     * @param stones the stones the capture moves to the store
+     */
+    final void moveCaptured(final int stones) {
+        if (this.move != null) {
+            this.move.captured(stones);
+        }
     }
 
     /**
@@ -134,54 +260,56 @@ public abstract class Player implements Serializable {
         	throw new IllegalStateException("Could not determine opposite player");
         }
 
-        // establish a game ring, the player will start distribution from his pit
-        // around this ring until his stones run out
-        final LinkedList<StoneContainer> gameRing = Lists.newLinkedList();
-
-        // add our own pits
-        gameRing.addAll(this.getPits());
+        // the game ring is built once per game, our pits come first so the pitId is our position
+        final StoneContainer[] gameRing = this.getSowingRing();
 
-        // drop in our store, never in opponent's pit
-        gameRing.add(this.getStore());
+        // let the listener know we are starting with distribution
+        final KalahListener listener = this.game.getKalahListener();
+        if (this.game.isListening(KalahEvent.DIST_START)) {
+            listener.distStart(this, usePit);
+        }
+        this.move = this.game.isListening(KalahEvent.MOVE_SUMMARY) ? new MoveSummary.Builder(this, usePit) : null;
 
-        // drop in opponent's pits
-        gameRing.addAll(oppositePlayer.getPits());
+        // a pit holding more stones than the ring is long sows full laps,
+        // every container gets a stone per lap and the first few containers get one more.
+        // stones sown into the pit we are emptying never leave it, so it keeps one stone per lap
+        // and only a move without a full lap empties it and ends in another container
+        final int stoneCount = usePit.amountOfStones();
+        final int laps = stoneCount / gameRing.length;
+        final int remainder = stoneCount % gameRing.length;
 
-        // let the listener know we are starting with distribution
-        this.game.getKalahListener().distStart(this, usePit);
+        // containers past the remainder only receive the laps, there is nothing left to sow when we have none
+        final int lastOffset = laps == 0 ? remainder : gameRing.length - 1;
 
         // check if we have another move after this round
         boolean freeMove = false;
 
-        // get next pit
-        StoneContainer nextContainer = null;
-        int stoneCount = usePit.amountOfStones();
-        do {
-            //drop first stone in next container
-            final int currentIndex = gameRing.indexOf(nextContainer == null ? usePit : nextContainer);
-            // get the next container to use
-            nextContainer = currentIndex == (gameRing.size() - 1)
-                     // if we were at the end, jump to the first one
-                    ? gameRing.getFirst()
-                     // else we just get the next one in our ring
-                    : gameRing.get(currentIndex + 1);
-                    
+        // the pitId is our position in the ring, sow from the next container on
+        int ringIndex = usePit.getPitId();
+        for (int offset = 1; offset <= lastOffset; offset++) {
+            // get the next container to use, if we were at the end, jump to the first one
+            if (++ringIndex == gameRing.length) {
+                ringIndex = 0;
+            }
+
             // freeMove can only possibly be true on the last iteration, so we can do overwrite
-            freeMove = usePit.distributeTo(nextContainer);
-        } while (--stoneCount > 0);
+            freeMove = usePit.distributeTo(gameRing[ringIndex], offset <= remainder ? laps + 1 : laps, true);
+        }
 
         // let the listener know we have stopped distribution
-        this.game.getKalahListener().distEnd(this, usePit);
+        if (this.game.isListening(KalahEvent.DIST_END)) {
+            listener.distEnd(this, usePit);
+        }
 
         // end of a turn, check if the game has ended (a player has no more stones in a pit)
         // additionally, switch players, and updates scores
         Player endGamePlayer;
-        if ((endGamePlayer = this.game.isEndOfGame()) != null) {
+        final boolean gameOver = (endGamePlayer = this.game.isEndOfGame()) != null;
+        if (gameOver) {
             // the other player moves all remaining stones to their store,
             // and the player with the most stones in their store wins.
             final Player endGameOpponent = endGamePlayer.getOpponent();
-            final List<Pit> endGamePits = endGameOpponent.getPits();
-            for (Pit pit : endGamePits) {
+            for (Pit pit : endGameOpponent.pits) {
                 // distribute all stones to my store
                 pit.distributeAll(endGameOpponent.getStore());
             }
@@ -205,7 +333,17 @@ public abstract class Player implements Serializable {
         } else if (!freeMove) {
             // change the player to the other player
             this.game.setCurrentPlayer(oppositePlayer);
-            this.game.getKalahListener().playerSwitch(oppositePlayer);
+            if (this.game.isListening(KalahEvent.PLAYER_SWITCH)) {
+                listener.playerSwitch(oppositePlayer);
+            }
+        }
+
+        this.recorder.moveEnded(freeMove);
+
+        if (this.move != null) {
+            final MoveSummary summary = this.move.build(freeMove && !gameOver, gameOver);
+            this.move = null;
+            listener.moveSummary(summary);
         }
     };
 
@@ -248,6 +386,15 @@ public abstract class Player implements Serializable {
                 ? this.game.getPlayerTwo() : this.game.getPlayerOne();
     }
 
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        // the pit total is derived from the pits
+        for (Pit pit : this.pits) {
+            this.pitStones += pit.amountOfStones();
+        }
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -1,12 +1,13 @@
 package com.mehinovic.kalah.game.entity;
 
-import com.google.common.collect.Queues;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.events.KalahEvent;
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.Queue;
 
 /**
- * This class manages stones internally
+ * This class manages stones internally, stones are interchangeable
+ * so only the amount of stones is kept
  */
 public abstract class StoneContainer implements Serializable {
 
@@ -14,7 +15,7 @@ public abstract class StoneContainer implements Serializable {
 
     private final transient String containerId;
     private final transient Player player;
-    private final Queue<Stone> stones;
+    private int stones;
 
     /**
      * New StoneContainer with the specified player as base
@@ -27,7 +28,6 @@ public abstract class StoneContainer implements Serializable {
     	}
     	
         this.player = player;
-        this.stones = Queues.newConcurrentLinkedQueue();
         // containers need to be unique per game, this is accomplished
         // by assigning containers per player
         this.containerId = "container_" + this.getClass().getSimpleName().toLowerCase()
@@ -49,10 +49,18 @@ public abstract class StoneContainer implements Serializable {
     public abstract boolean containerReceivedLast(final boolean normalMove);
 
     /**
-     * @return Retrieves the amount of stones within this queue
+     * Called whenever stones are added to or removed from this container
+     * @param delta the change in the amount of stones, negative if stones were removed
+     */
+    protected void stonesChanged(final int delta) {
+        return;
+    }
+
+    /**
+     * @return Retrieves the amount of stones within this container
      */
     public final int amountOfStones() {
-        return this.stones.size();
+        return this.stones;
     }
 
     /**
@@ -61,8 +69,8 @@ public abstract class StoneContainer implements Serializable {
      * @param container the container to distribute the stones to
      */
     protected final void distributeAll(final StoneContainer container) {
-        while (!this.stones.isEmpty()) {
-            this.distributeTo(container, false);
+        if (this.stones > 0) {
+            this.distributeTo(container, this.stones, false);
         }
     }
 
@@ -86,48 +94,81 @@ public abstract class StoneContainer implements Serializable {
      * @return a boolean indicating if the current player has
      * another turn, since this is a turn based game
      */
-    protected boolean distributeTo(final StoneContainer container, final boolean normalMove) {
+    protected final boolean distributeTo(final StoneContainer container, final boolean normalMove) {
+        if (this.stones == 0) {
+            return false;
+        }
+
+        return this.distributeTo(container, 1, normalMove);
+    }
+
+    /**
+     * Distributes the specified amount of stones to the specified container in a single step,
+     * calls containerEmpty() if the current container is empty as a result of this operation
+     * and lets the destination know it received the last stone
+     * @param container the container to distribute the stones to
+     * @param amount the amount of stones to distribute, between 1 and amountOfStones()
+     * @param normalMove indicates whether this call occurred as a result of a "normal move",
+     * or a special move, such as taking an opponent's stones
+     * @return a boolean indicating if the current player has
+     * another turn, since this is a turn based game
+     */
+    protected final boolean distributeTo(final StoneContainer container, final int amount,
+            final boolean normalMove) {
+        if (amount < 1 || amount > this.stones) {
+            throw new IllegalArgumentException("Cannot distribute " + amount
+                    + " stones from a container holding " + this.stones);
+        }
+
         boolean anotherTurn = false;
-        if (this.stones.size() > 0) {
-            final Stone transferStone = this.stones.poll();
-            if(transferStone == null) {
-        		throw new IllegalStateException("stone to transfer was null!");
-        	}
-
-            // send the stone to the source container
-            container.accept(transferStone);
-
-            if (this.stones.isEmpty()) {
-                // let the source know it is empty
-                this.containerEmpty();
-
-                // this distribute call just removed the last stone,
-                // let the destination know
-                anotherTurn = container.containerReceivedLast(normalMove);
-            }
+        this.player.getGame().getCurrentPlayer().moveChanged(this, container);
+        this.stones -= amount;
+        this.stonesChanged(-amount);
+
+        // send the stones to the source container
+        container.accept(amount);
+
+        if (this.stones == 0) {
+            // let the source know it is empty
+            this.containerEmpty();
+
+            // this distribute call just removed the last stone,
+            // let the destination know
+            anotherTurn = container.containerReceivedLast(normalMove);
         }
 
         return anotherTurn;
     }
 
     /**
-     * accepts a stone into this container
-     * @param stone a valid non-null stone
+     * accepts stones into this container
+     * @param amount the amount of stones to accept, at least 1
      */
-    protected final void accept(final Stone stone) {
-        if(stone == null) {
-    		throw new IllegalArgumentException("Cannot accept a null stone!");
-    	}
-
-        // set the current player for the stone
-        stone.setCurrentPlayer(this.getPlayer());
+    protected final void accept(final int amount) {
+        // add the new stones to this container
+        this.stones += amount;
+        this.stonesChanged(amount);
+
+        // let the game listener know this container received stones
+        final Kalah game = this.getPlayer().getGame();
+        if (game.isListening(KalahEvent.STONES_ADDED)) {
+            game.getKalahListener().stonesAdded(this, amount);
+        }
+    }
 
-        // add the new stone to this container
-        this.stones.offer(stone);
+    /**
+     * overwrites the amount of stones in this container without firing any listener events,
+     * used to restore a game from a stored state
+     * @param amount the amount of stones this container should hold
+     */
+    final void restoreStones(final int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Cannot restore a negative amount of stones");
+        }
 
-        // let the game listener know this container received a stone
-        this.getPlayer().getGame().getKalahListener()
-                .stoneAdded(this, stone);
+        final int delta = amount - this.stones;
+        this.stones = amount;
+        this.stonesChanged(delta);
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.mehinovic.kalah.game.entity;
 
+import com.mehinovic.kalah.game.events.KalahEvent;
+
 /**
  * Store that may contain an arbitrary number of stones.
  */
@@ -22,7 +24,9 @@ public final class Store extends StoneContainer {
         final Player storeOwner = this.getPlayer();
         if (normalMove) {
             // if the last stone lands in the player's store, the player gets an additional move.
-            storeOwner.getGame().getKalahListener().freeMove(storeOwner);
+            if (storeOwner.getGame().isListening(KalahEvent.FREE_MOVE)) {
+                storeOwner.getGame().getKalahListener().freeMove(storeOwner);
+            }
             // indicate to the caller we have another move
             return true;
         }
@@ -34,6 +34,15 @@ public class RequestPlayer extends Player {
     		throw new IllegalArgumentException("Cannot parse pit Id");
     	}
     	
-    	this.distributeFromPit(pitId);
+    	this.play(pitId);
+    }
+
+    /**
+     * plays a round of kalah from the specified pitId
+     * @param pitId the pit to distribute stones from
+     * @throws IllegalStateException if the move is not allowed
+     */
+    public void play(final int pitId) throws IllegalStateException {
+        this.distributeFromPit(pitId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.mehinovic.kalah.game.entity.impl;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.search.SearchEngine;
+import com.mehinovic.kalah.game.search.SearchResult;
+
+/**
+ * Computer player that searches a copy of the board for its moves
+ */
+public class SearchPlayer extends Player {
+
+    private static final long serialVersionUID = -2503180415930427736L;
+
+    private final transient SearchEngine engine;
+    private final long moveBudgetMillis;
+
+    /**
+     * @param game the game that this player is associated with
+     * @param playerId an identifier for this player
+     * @param engine the search used to find moves
+     * @param moveBudgetMillis the time a single move may take in milliseconds
+     */
+    public SearchPlayer(final Kalah game, final int playerId, final SearchEngine engine,
+            final long moveBudgetMillis) {
+        super(game, playerId);
+
+        if (engine == null) {
+            throw new IllegalArgumentException("Cannot create a SearchPlayer without a search engine!");
+        }
+        if (moveBudgetMillis < 1) {
+            throw new IllegalArgumentException("invalid move budget " + moveBudgetMillis + ", must be at least 1ms");
+        }
+
+        this.engine = engine;
+        this.moveBudgetMillis = moveBudgetMillis;
+    }
+
+    /**
+     * searches and plays a round of kalah,
+     * the search only works on a copy of the board so the game and its listener are untouched until the move is made
+     * @return the result of the search that picked the move
+     * @throws IllegalStateException if it is not this player's turn
+     */
+    public SearchResult play() throws IllegalStateException {
+        if (!this.equals(this.getGame().getCurrentPlayer())) {
+            throw new IllegalStateException("It is not your turn " + this.getPlayerName());
+        }
+
+        final SearchResult result = this.search(Board.of(this.getGame()));
+        this.distributeFromPit(result.getBestPit());
+
+        return result;
+    }
+
+    /**
+     * searches a move on a copy of the game's board without playing it,
+     * the game is not read so it need not be locked for the time the search takes
+     * @param board the board of the game when it is this player's turn
+     * @return the result of the search, its move is played with play(int)
+     */
+    public SearchResult search(final Board board) {
+        return this.engine.search(board, this.moveBudgetMillis);
+    }
+
+    /**
+     * plays a move the search found before, used to play a game again
+     * @param pitId the pit to distribute stones from
+     * @throws IllegalStateException if the move is not allowed
+     */
+    public void play(final int pitId) throws IllegalStateException {
+        this.distributeFromPit(pitId);
+    }
+
+    /**
+     * @return the search used to find moves
+     */
+    public SearchEngine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * @return the time a single move may take in milliseconds
+     */
+    public long getMoveBudgetMillis() {
+        return this.moveBudgetMillis;
+    }
+}
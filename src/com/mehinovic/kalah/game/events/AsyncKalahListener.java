@@ -0,0 +1,92 @@
+package com.mehinovic.kalah.game.events;
+
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import java.util.Set;
+
+/**
+ * Listener of a single game that publishes its events to the game's ring buffer of an EventBus,
+ * a consumer thread calls the delegate with them later, so the cost of the delegate does not slow down moves.
+ * The delegate gets the live game objects, only the amounts passed to it are as they were when the event happened.
+ * Created by EventBus.listen.
+ */
+public final class AsyncKalahListener implements KalahListener {
+
+    private final EventRing ring;
+
+    AsyncKalahListener(final EventRing ring) {
+        this.ring = ring;
+    }
+
+    /**
+     * stops publishing, the consumer delivers the events that are waiting and forgets the game
+     */
+    public void close() {
+        this.ring.close();
+    }
+
+    /**
+     * @return the amount of events dropped because the ring was full
+     */
+    public long getDropped() {
+        return this.ring.getDropped();
+    }
+
+    /**
+     * @return the amount of events added to a waiting event because the ring was full
+     */
+    public long getCoalesced() {
+        return this.ring.getCoalesced();
+    }
+
+    @Override
+    public Set<KalahEvent> getEvents() {
+        return this.ring.getDelegate().getEvents();
+    }
+
+    @Override
+    public void gameStart() {
+        this.ring.publish(KalahEvent.GAME_START, null, null, null, null, 0, null);
+    }
+
+    @Override
+    public void gameEnd(final Player whoWon, final Player whoLost) {
+        this.ring.publish(KalahEvent.GAME_END, whoWon, whoLost, null, null, 0, null);
+    }
+
+    @Override
+    public void distStart(final Player player, final Pit fromPit) {
+        this.ring.publish(KalahEvent.DIST_START, player, null, fromPit, null, 0, null);
+    }
+
+    @Override
+    public void distEnd(final Player player, final Pit fromPit) {
+        this.ring.publish(KalahEvent.DIST_END, player, null, fromPit, null, 0, null);
+    }
+
+    @Override
+    public void playerSwitch(final Player newPlayer) {
+        this.ring.publish(KalahEvent.PLAYER_SWITCH, newPlayer, null, null, null, 0, null);
+    }
+
+    @Override
+    public void freeMove(final Player forPlayer) {
+        this.ring.publish(KalahEvent.FREE_MOVE, forPlayer, null, null, null, 0, null);
+    }
+
+    @Override
+    public void pitEmpty(final Pit pit) {
+        this.ring.publish(KalahEvent.PIT_EMPTY, null, null, pit, null, 0, null);
+    }
+
+    @Override
+    public void stonesAdded(final StoneContainer container, final int amount) {
+        this.ring.publish(KalahEvent.STONES_ADDED, null, null, null, container, amount, null);
+    }
+
+    @Override
+    public void moveSummary(final MoveSummary summary) {
+        this.ring.publish(KalahEvent.MOVE_SUMMARY, null, null, null, null, 0, summary);
+    }
+}
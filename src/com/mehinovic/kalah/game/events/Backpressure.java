@@ -0,0 +1,23 @@
+package com.mehinovic.kalah.game.events;
+
+/**
+ * What an asynchronous listener does with an event when its ring buffer is full
+ */
+public enum Backpressure {
+
+    /**
+     * the move waits until the consumer made room
+     */
+    BLOCK,
+
+    /**
+     * the event is dropped and counted
+     */
+    DROP,
+
+    /**
+     * stones added to the same container as the newest waiting event are added to that event,
+     * any other event is dropped and counted
+     */
+    COALESCE
+}
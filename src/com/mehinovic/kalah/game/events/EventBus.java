@@ -0,0 +1,159 @@
+package com.mehinovic.kalah.game.events;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers game events to listeners on consumer threads instead of the thread playing the game.
+ * Every game gets its own ring buffer, the rings are spread over a fixed amount of shards
+ * and every shard has one thread that drains its rings in batches.
+ */
+public final class EventBus {
+
+    /**
+     * the most events delivered from one ring before the next ring of the shard gets its turn
+     */
+    private static final int BATCH = 256;
+
+    /**
+     * an idle consumer checks its rings at least this often, in case a wake up was missed
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Shard[] shards;
+    private final int ringCapacity;
+    private final Backpressure backpressure;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    /**
+     * @param name the name of the consumer threads
+     * @param threads the amount of consumer threads
+     * @param ringCapacity the amount of events a game may have waiting, a power of two
+     * @param backpressure what a game does with events when its ring is full
+     */
+    public EventBus(final String name, final int threads, final int ringCapacity, final Backpressure backpressure) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid amount of threads " + threads + ", must be at least 1");
+        }
+        if (ringCapacity < 2 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("invalid capacity " + ringCapacity + ", must be a power of two");
+        }
+        if (backpressure == null) {
+            throw new IllegalArgumentException("Cannot create an event bus without a backpressure strategy!");
+        }
+
+        this.ringCapacity = ringCapacity;
+        this.backpressure = backpressure;
+        this.shards = new Shard[threads];
+        for (int i = 0; i < threads; i++) {
+            this.shards[i] = new Shard(name + "-" + i);
+            this.shards[i].thread.start();
+        }
+    }
+
+    /**
+     * creates the listener of a single game, it has to be closed once the game is no longer played
+     * @param delegate the listener to call on a consumer thread
+     * @return a listener to pass to the game
+     */
+    public AsyncKalahListener listen(final KalahListener delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Cannot listen without a listener!");
+        }
+
+        final Shard shard = this.shards[Math.abs(this.nextShard.getAndIncrement() % this.shards.length)];
+        final EventRing ring = new EventRing(this.ringCapacity, this.backpressure, delegate, shard);
+        shard.add(ring);
+        return new AsyncKalahListener(ring);
+    }
+
+    /**
+     * stops the consumer threads once they delivered the events that are waiting
+     */
+    public void shutdown() {
+        for (Shard shard : this.shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+    }
+
+    /**
+     * a consumer thread and the rings it drains
+     */
+    static final class Shard implements Runnable {
+
+        private final Thread thread;
+
+        /**
+         * replaced as a whole when rings come and go, so draining does not allocate an iterator
+         */
+        private volatile EventRing[] rings = new EventRing[0];
+        private volatile boolean idle;
+        private volatile boolean running = true;
+
+        private Shard(final String name) {
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        private synchronized void add(final EventRing ring) {
+            final EventRing[] added = Arrays.copyOf(this.rings, this.rings.length + 1);
+            added[added.length - 1] = ring;
+            this.rings = added;
+        }
+
+        private synchronized void remove(final EventRing ring) {
+            final EventRing[] current = this.rings;
+            final EventRing[] removed = new EventRing[current.length - 1];
+            int next = 0;
+            for (EventRing other : current) {
+                if (other != ring) {
+                    removed[next++] = other;
+                }
+            }
+            this.rings = removed;
+        }
+
+        /**
+         * called by producers after publishing
+         */
+        void wake() {
+            if (this.idle) {
+                this.idle = false;
+                LockSupport.unpark(this.thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int delivered = 0;
+                for (EventRing ring : this.rings) {
+                    delivered += ring.drain(BATCH);
+                    if (ring.isClosed() && ring.isDrained()) {
+                        this.remove(ring);
+                    }
+                }
+
+                if (delivered == 0) {
+                    if (!this.running) {
+                        return;
+                    }
+
+                    // announce we are going to sleep, then look once more so a publish in between is not missed
+                    this.idle = true;
+                    boolean waiting = false;
+                    for (EventRing ring : this.rings) {
+                        waiting |= !ring.isDrained();
+                    }
+                    if (!waiting) {
+                        LockSupport.parkNanos(this, IDLE_NANOS);
+                    }
+                    this.idle = false;
+                }
+            }
+        }
+    }
+}
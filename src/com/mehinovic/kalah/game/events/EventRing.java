@@ -0,0 +1,244 @@
+package com.mehinovic.kalah.game.events;
+
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Preallocated ring buffer of the events of a single game, written by the thread playing the game
+ * and drained by a single consumer thread. Every slot carries a sequence, the producer may write a slot
+ * whose sequence is its position and the consumer may read it once the sequence is one higher.
+ * Publishing only writes fields of existing slots, so it allocates nothing.
+ */
+final class EventRing {
+
+    private static final Logger LOGGER = Logger.getLogger(EventRing.class.getName());
+
+    /**
+     * sequences of a slot that is being coalesced into or read
+     */
+    private static final long EDITING = -1;
+    private static final long READING = -2;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Backpressure backpressure;
+    private final KalahListener delegate;
+    private final EventBus.Shard shard;
+
+    /**
+     * the position of the next event to publish, only used by the producer
+     */
+    private long head;
+
+    /**
+     * the position of the next event to deliver, only used by the consumer
+     */
+    private long tail;
+
+    private volatile boolean closed;
+    private volatile long dropped;
+    private volatile long coalesced;
+
+    EventRing(final int capacity, final Backpressure backpressure, final KalahListener delegate,
+            final EventBus.Shard shard) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("invalid capacity " + capacity + ", must be a power of two");
+        }
+
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.slots[i] = new Slot(i);
+        }
+        this.mask = capacity - 1;
+        this.backpressure = backpressure;
+        this.delegate = delegate;
+        this.shard = shard;
+    }
+
+    /**
+     * publishes an event, the arguments the event does not have are null or 0
+     */
+    void publish(final KalahEvent type, final Player player, final Player other, final Pit pit,
+            final StoneContainer container, final int amount, final MoveSummary summary) {
+        if (this.closed) {
+            return;
+        }
+
+        final long position = this.head;
+        final Slot slot = this.slots[(int) position & this.mask];
+        while (slot.sequence != position) {
+            // the consumer has not read the event a lap ago yet
+            if (this.backpressure == Backpressure.BLOCK) {
+                this.shard.wake();
+                LockSupport.parkNanos(1000);
+            } else {
+                if (this.backpressure == Backpressure.COALESCE && this.coalesce(type, container, amount)) {
+                    this.coalesced++;
+                } else {
+                    this.dropped++;
+                }
+                return;
+            }
+        }
+
+        slot.type = type;
+        slot.player = player;
+        slot.other = other;
+        slot.pit = pit;
+        slot.container = container;
+        slot.amount = amount;
+        slot.summary = summary;
+        Slot.SEQUENCE.lazySet(slot, position + 1);
+        this.head = position + 1;
+
+        this.shard.wake();
+    }
+
+    /**
+     * adds stones to the newest waiting event if it added stones to the same container
+     */
+    private boolean coalesce(final KalahEvent type, final StoneContainer container, final int amount) {
+        if (type != KalahEvent.STONES_ADDED) {
+            return false;
+        }
+
+        final long newest = this.head - 1;
+        final Slot slot = this.slots[(int) newest & this.mask];
+        if (!Slot.SEQUENCE.compareAndSet(slot, newest + 1, EDITING)) {
+            // the consumer is reading it already
+            return false;
+        }
+
+        final boolean merged = slot.type == KalahEvent.STONES_ADDED && slot.container == container;
+        if (merged) {
+            slot.amount += amount;
+        }
+        Slot.SEQUENCE.set(slot, newest + 1);
+        return merged;
+    }
+
+    /**
+     * delivers waiting events to the delegate, only called by the consumer thread
+     * @param batch the largest amount of events to deliver
+     * @return the amount of events delivered
+     */
+    int drain(final int batch) {
+        int delivered = 0;
+        while (delivered < batch) {
+            final long position = this.tail;
+            final Slot slot = this.slots[(int) position & this.mask];
+            if (!Slot.SEQUENCE.compareAndSet(slot, position + 1, READING)) {
+                // nothing published yet, or the producer is coalescing into it
+                break;
+            }
+
+            try {
+                this.deliver(slot);
+            } catch (RuntimeException exc) {
+                LOGGER.log(Level.WARNING, "Listener failed on " + slot.type, exc);
+            }
+
+            // let go of the game objects and hand the slot back to the producer for the next lap
+            slot.player = null;
+            slot.other = null;
+            slot.pit = null;
+            slot.container = null;
+            slot.summary = null;
+            Slot.SEQUENCE.lazySet(slot, position + this.slots.length);
+            this.tail = position + 1;
+            delivered++;
+        }
+        return delivered;
+    }
+
+    private void deliver(final Slot slot) {
+        switch (slot.type) {
+            case GAME_START:
+                this.delegate.gameStart();
+                break;
+            case GAME_END:
+                this.delegate.gameEnd(slot.player, slot.other);
+                break;
+            case DIST_START:
+                this.delegate.distStart(slot.player, slot.pit);
+                break;
+            case DIST_END:
+                this.delegate.distEnd(slot.player, slot.pit);
+                break;
+            case PLAYER_SWITCH:
+                this.delegate.playerSwitch(slot.player);
+                break;
+            case FREE_MOVE:
+                this.delegate.freeMove(slot.player);
+                break;
+            case PIT_EMPTY:
+                this.delegate.pitEmpty(slot.pit);
+                break;
+            case STONES_ADDED:
+                this.delegate.stonesAdded(slot.container, slot.amount);
+                break;
+            case MOVE_SUMMARY:
+                this.delegate.moveSummary(slot.summary);
+                break;
+            default:
+                throw new IllegalStateException("Unknown event " + slot.type);
+        }
+    }
+
+    /**
+     * @return true if every published event has been delivered
+     */
+    boolean isDrained() {
+        final long sequence = this.slots[(int) this.tail & this.mask].sequence;
+        return sequence != this.tail + 1 && sequence != EDITING;
+    }
+
+    void close() {
+        this.closed = true;
+        this.shard.wake();
+    }
+
+    boolean isClosed() {
+        return this.closed;
+    }
+
+    KalahListener getDelegate() {
+        return this.delegate;
+    }
+
+    long getDropped() {
+        return this.dropped;
+    }
+
+    long getCoalesced() {
+        return this.coalesced;
+    }
+
+    /**
+     * a preallocated event
+     */
+    private static final class Slot {
+
+        private static final AtomicLongFieldUpdater<Slot> SEQUENCE =
+                AtomicLongFieldUpdater.newUpdater(Slot.class, "sequence");
+
+        private volatile long sequence;
+
+        private KalahEvent type;
+        private Player player;
+        private Player other;
+        private Pit pit;
+        private StoneContainer container;
+        private int amount;
+        private MoveSummary summary;
+
+        private Slot(final long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.mehinovic.kalah.game.events;
+
+/**
+ * The events a KalahListener can be called for, one per listener method
+ */
+public enum KalahEvent {
+
+    GAME_START,
+    GAME_END,
+    DIST_START,
+    DIST_END,
+    PLAYER_SWITCH,
+    FREE_MOVE,
+    PIT_EMPTY,
+    STONES_ADDED,
+
+    /**
+     * a single call at the end of every move, instead of or next to the events during the move
+     */
+    MOVE_SUMMARY
+}
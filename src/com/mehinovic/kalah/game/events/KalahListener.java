@@ -2,14 +2,22 @@ package com.mehinovic.kalah.game.events;
 
 import com.mehinovic.kalah.game.entity.Pit;
 import com.mehinovic.kalah.game.entity.Player;
-import com.mehinovic.kalah.game.entity.Stone;
 import com.mehinovic.kalah.game.entity.StoneContainer;
+import java.util.Set;
 
 /**
  * Defines Kalah Event System.
+ * A listener is only called for the events it asks for, the game does not even
+ * collect what an event needs when no listener wants it.
  */
 public interface KalahListener {
 
+    /**
+     * asked once when the game is created
+     * @return the events this listener should be called for
+     */
+    public Set<KalahEvent> getEvents();
+
     /**
      * called when the game is in the started state.
      */
@@ -57,10 +65,17 @@ public interface KalahListener {
     public void pitEmpty(final Pit pit);
 
     /**
-     * called when an container (either a pit or a store) receives a stone
-     * @param container the container that has received the specified stone
-     * @param stone the stone that has been added to the specified container
+     * called when an container (either a pit or a store) receives stones,
+     * a single call is made for all stones a container receives at once
+     * @param container the container that has received the stones
+     * @param amount the amount of stones that have been added, at least 1
+     */
+    public void stonesAdded(final StoneContainer container, final int amount);
+
+    /**
+     * called once at the end of every move, after all other events of the move
+     * @param summary what the move did
      */
-    public void stoneAdded(final StoneContainer container, final Stone stone);
+    public void moveSummary(final MoveSummary summary);
 
 }
\ No newline at end of file
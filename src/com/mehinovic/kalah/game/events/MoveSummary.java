@@ -0,0 +1,149 @@
+package com.mehinovic.kalah.game.events;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import java.util.List;
+
+/**
+ * Everything a single move did, handed to a listener once the move is done
+ */
+public final class MoveSummary {
+
+    private final Player player;
+    private final Pit fromPit;
+    private final List<StoneContainer> changedContainers;
+    private final int captures;
+    private final int capturedStones;
+    private final boolean freeMove;
+    private final boolean gameOver;
+
+    private MoveSummary(final Builder builder, final boolean freeMove, final boolean gameOver) {
+        this.player = builder.player;
+        this.fromPit = builder.fromPit;
+        this.changedContainers = ImmutableList.copyOf(builder.changedContainers);
+        this.captures = builder.captures;
+        this.capturedStones = builder.capturedStones;
+        this.freeMove = freeMove;
+        this.gameOver = gameOver;
+    }
+
+    /**
+     * @return the player that moved
+     */
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * @return the pit the player distributed from
+     */
+    public Pit getFromPit() {
+        return this.fromPit;
+    }
+
+    /**
+     * @return the pits and stores that gained or lost stones, each once, in the order they first changed
+     */
+    public List<StoneContainer> getChangedContainers() {
+        return this.changedContainers;
+    }
+
+    /**
+     * @return the amount of captures the move made
+     */
+    public int getCaptures() {
+        return this.captures;
+    }
+
+    /**
+     * @return the stones the captures moved to the player's store, the capturing stone included
+     */
+    public int getCapturedStones() {
+        return this.capturedStones;
+    }
+
+    /**
+     * @return true if the player moves again
+     */
+    public boolean isFreeMove() {
+        return this.freeMove;
+    }
+
+    /**
+     * @return true if the move ended the game
+     */
+    public boolean isGameOver() {
+        return this.gameOver;
+    }
+
+    @Override
+    public String toString() {
+        return "MoveSummary{"
+                + "player=" + this.player.getPlayerName()
+                + ", fromPit=" + this.fromPit.getPitId()
+                + ", changedContainers=" + this.changedContainers.size()
+                + ", captures=" + this.captures
+                + ", capturedStones=" + this.capturedStones
+                + ", freeMove=" + this.freeMove
+                + ", gameOver=" + this.gameOver
+                + '}';
+    }
+
+    /**
+     * Collects the summary while a move is played
+     */
+    public static final class Builder {
+
+        private final Player player;
+        private final Pit fromPit;
+        private final List<StoneContainer> changedContainers = Lists.newArrayList();
+        private int captures;
+        private int capturedStones;
+
+        /**
+         * @param player the player that moves
+         * @param fromPit the pit the player distributes from
+         */
+        public Builder(final Player player, final Pit fromPit) {
+            this.player = player;
+            this.fromPit = fromPit;
+        }
+
+        /**
+         * @param container a container that gained or lost stones
+         * @return this builder
+         */
+        public Builder changed(final StoneContainer container) {
+            // a move changes a handful of containers, a scan is cheaper than hashing them
+            for (int i = this.changedContainers.size() - 1; i >= 0; i--) {
+                if (this.changedContainers.get(i) == container) {
+                    return this;
+                }
+            }
+            this.changedContainers.add(container);
+            return this;
+        }
+
+        /**
+         * @param stones the stones a capture moved to the player's store
+         * @return this builder
+         */
+        public Builder captured(final int stones) {
+            this.captures++;
+            this.capturedStones += stones;
+            return this;
+        }
+
+        /**
+         * @param freeMove true if the player moves again
+         * @param gameOver true if the move ended the game
+         * @return the summary of the move
+         */
+        public MoveSummary build(final boolean freeMove, final boolean gameOver) {
+            return new MoveSummary(this, freeMove, gameOver);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.mehinovic.kalah.game.journal;
+
+/**
+ * When the moves written to the journal are forced to disk
+ */
+public enum Durability {
+
+    /**
+     * a move is only acknowledged once it is on disk, moves written meanwhile by other requests
+     * are forced along with it so a busy server does not force once per move
+     */
+    SYNC,
+
+    /**
+     * the moves are forced every few milliseconds in the background,
+     * a crash loses the moves of the last interval
+     */
+    BATCH
+}
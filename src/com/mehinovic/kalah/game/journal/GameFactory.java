@@ -0,0 +1,18 @@
+package com.mehinovic.kalah.game.journal;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+
+/**
+ * Creates the games of the journal again while it is replayed, the way the server created them
+ */
+public interface GameFactory {
+
+    /**
+     * @param id the identifier of the game
+     * @param configuration the configuration of the game
+     * @param computer true if the second player is the computer
+     * @return a started game before its first move
+     */
+    Kalah newGame(long id, KalahConfiguration configuration, boolean computer);
+}
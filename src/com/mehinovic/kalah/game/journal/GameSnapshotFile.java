@@ -0,0 +1,398 @@
+package com.mehinovic.kalah.game.journal;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.impl.SearchPlayer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The live games at a point of the journal, so the segments before that point can be deleted.
+ * The games are grouped by their amount of pits and every group is stored column by column:
+ * the ids, the versions, the stones per pit the games started with and their state flags,
+ * followed by one fixed-width record of board counts per game, player one's pits and store followed by player two's,
+ * and the moves every game can take back and play again, see Kalah.writeMoves, with the length of each game's moves.
+ * The file ends with the checksum of everything before it, and replaces the previous snapshot in one rename.
+ */
+final class GameSnapshotFile {
+
+    static final int MAGIC = 0x4B534E50;
+    static final int VERSION = 2;
+
+    /**
+     * the version without the moves of the games
+     */
+    static final int VERSION_WITHOUT_MOVES = 1;
+
+    /**
+     * flags of a game's state
+     */
+    private static final int FLAG_COMPUTER = 1;
+    private static final int FLAG_STARTED = 2;
+    private static final int FLAG_FREE_MOVE = 4;
+    private static final int FLAG_PLAYER_TWO = 8;
+    private static final int FLAG_REMOTE = 16;
+    private static final int FLAG_SEAT_TAKEN = 32;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * the magic, the version, the first segment and the amount of groups
+     */
+    private static final int HEADER_SIZE = 20;
+
+    private static final Logger LOGGER = Logger.getLogger(GameSnapshotFile.class.getName());
+
+    /**
+     * the first segment of the journal whose records may not be in the snapshot
+     */
+    private final long firstSegment;
+    private final Map<Integer, Group> groups = new TreeMap<>();
+
+    private GameSnapshotFile(final long firstSegment) {
+        this.firstSegment = firstSegment;
+    }
+
+    /**
+     * copies the games, a game is locked while it is copied like a move locks it
+     * @param games the games to copy
+     * @param firstSegment the first segment of the journal whose records may not be in the games
+     * @return the snapshot
+     */
+    static GameSnapshotFile copy(final List<Kalah> games, final long firstSegment) {
+        final GameSnapshotFile snapshot = new GameSnapshotFile(firstSegment);
+        for (Kalah game : games) {
+            final int pits = game.getConfiguration().getPits();
+            Group group = snapshot.groups.get(pits);
+            if (group == null) {
+                group = new Group(pits, 16);
+                snapshot.groups.put(pits, group);
+            }
+
+            synchronized (game) {
+                final Player playerOne = game.getPlayerOne();
+                final Player playerTwo = game.getPlayerTwo();
+                int flags = playerTwo instanceof SearchPlayer ? FLAG_COMPUTER : 0;
+                flags |= game.isStarted() ? FLAG_STARTED : 0;
+                flags |= game.isFreeMove() ? FLAG_FREE_MOVE : 0;
+                flags |= playerTwo.equals(game.getCurrentPlayer()) ? FLAG_PLAYER_TWO : 0;
+                flags |= game.isRemote() ? FLAG_REMOTE : 0;
+                flags |= game.isSeatTaken() ? FLAG_SEAT_TAKEN : 0;
+
+                final int index = group.add(game.getId(), game.getVersion(), game.getConfiguration().getStones(),
+                        flags);
+                final int offset = index * group.cells;
+                copyCounts(playerOne, group.counts, offset);
+                copyCounts(playerTwo, group.counts, offset + pits + 1);
+                group.copyMoves(game, index);
+            }
+        }
+        return snapshot;
+    }
+
+    private static void copyCounts(final Player player, final int[] counts, final int offset) {
+        final int pits = player.getGame().getConfiguration().getPits();
+        for (int i = 0; i < pits; i++) {
+            counts[offset + i] = player.countPitStones(i);
+        }
+        counts[offset + pits] = player.countStoreStones();
+    }
+
+    /**
+     * @return the first segment of the journal whose records may not be in the snapshot
+     */
+    long getFirstSegment() {
+        return this.firstSegment;
+    }
+
+    /**
+     * @return the amount of games
+     */
+    int size() {
+        int size = 0;
+        for (Group group : this.groups.values()) {
+            size += group.size;
+        }
+        return size;
+    }
+
+    /**
+     * writes the snapshot next to the file and renames it over the file once it is on disk
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    void write(final Path file) throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final CRC32 checksum = new CRC32();
+            final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), checksum));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(this.firstSegment);
+            out.writeInt(this.groups.size());
+            for (Group group : this.groups.values()) {
+                group.write(out);
+            }
+            out.writeInt((int) checksum.getValue());
+            out.flush();
+
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * reads a snapshot, the checksum is checked before the sizes in the file are trusted
+     * @param file a snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    static GameSnapshotFile read(final Path file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final int length = bytes.length - 4;
+        if (length < HEADER_SIZE) {
+            throw new IOException(file + " is not a complete game snapshot");
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, length);
+        if ((int) checksum.getValue() != ByteBuffer.wrap(bytes).getInt(length)) {
+            throw new IOException(file + " is not a complete game snapshot");
+        }
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+        final int magic = in.readInt();
+        final int version = in.readInt();
+        if (magic != MAGIC || (version != VERSION && version != VERSION_WITHOUT_MOVES)) {
+            throw new IOException(file + " is not a game snapshot");
+        }
+
+        final GameSnapshotFile snapshot = new GameSnapshotFile(in.readLong());
+        final int groups = in.readInt();
+        for (int i = 0; i < groups; i++) {
+            final Group group = Group.read(in, version == VERSION);
+            snapshot.groups.put(group.pits, group);
+        }
+        if (in.available() != 0) {
+            throw new IOException(file + " is not a complete game snapshot");
+        }
+        return snapshot;
+    }
+
+    /**
+     * creates the games of the snapshot, a game that cannot be restored is skipped
+     * @param factory creates the games before their stones are restored
+     * @return the games by id
+     */
+    Map<Long, Kalah> restore(final GameFactory factory) {
+        final Map<Long, Kalah> games = new HashMap<>(2 * this.size());
+        for (Group group : this.groups.values()) {
+            final int pits = group.pits;
+            final int[] pitStones = new int[pits];
+            for (int i = 0; i < group.size; i++) {
+                final long id = group.ids[i];
+                final int flags = group.flags[i];
+                try {
+                    final Kalah game = factory.newGame(id, new KalahConfiguration(pits, group.stones[i]),
+                            (flags & FLAG_COMPUTER) != 0);
+
+                    final int offset = i * group.cells;
+                    System.arraycopy(group.counts, offset, pitStones, 0, pits);
+                    game.getPlayerOne().restoreStones(pitStones, group.counts[offset + pits]);
+                    System.arraycopy(group.counts, offset + pits + 1, pitStones, 0, pits);
+                    game.getPlayerTwo().restoreStones(pitStones, group.counts[offset + 2 * pits + 1]);
+
+                    game.setCurrentPlayer((flags & FLAG_PLAYER_TWO) != 0 ? game.getPlayerTwo() : game.getPlayerOne());
+                    game.restore(group.versions[i], (flags & FLAG_STARTED) != 0, (flags & FLAG_FREE_MOVE) != 0);
+                    game.setRemote((flags & FLAG_REMOTE) != 0);
+                    game.setSeatTaken((flags & FLAG_SEAT_TAKEN) != 0);
+                    group.restoreMoves(game, i);
+                    games.put(id, game);
+                } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException exc) {
+                    LOGGER.log(Level.WARNING, "Cannot restore game " + id + " from the snapshot, skipping it", exc);
+                }
+            }
+        }
+        return games;
+    }
+
+    /**
+     * the games with the same amount of pits, as columns
+     */
+    private static final class Group {
+
+        private final int pits;
+        private final int cells;
+        private long[] ids;
+        private long[] versions;
+        private int[] stones;
+        private byte[] flags;
+        private int[] counts;
+        private int size;
+
+        /**
+         * the moves of all games one after the other, and where the moves of every game end
+         */
+        private final ByteArrayOutputStream moveBytes = new ByteArrayOutputStream();
+        private final DataOutputStream moveOut = new DataOutputStream(this.moveBytes);
+        private int[] moveEnds;
+        private byte[] moves = new byte[0];
+
+        private Group(final int pits, final int capacity) {
+            this.pits = pits;
+            this.cells = 2 * (pits + 1);
+            this.ids = new long[capacity];
+            this.versions = new long[capacity];
+            this.stones = new int[capacity];
+            this.flags = new byte[capacity];
+            this.counts = new int[capacity * this.cells];
+            this.moveEnds = new int[capacity];
+        }
+
+        private int add(final long id, final long version, final int stones, final int flags) {
+            if (this.size == this.ids.length) {
+                final int capacity = 2 * this.size;
+                this.ids = Arrays.copyOf(this.ids, capacity);
+                this.versions = Arrays.copyOf(this.versions, capacity);
+                this.stones = Arrays.copyOf(this.stones, capacity);
+                this.flags = Arrays.copyOf(this.flags, capacity);
+                this.counts = Arrays.copyOf(this.counts, capacity * this.cells);
+                this.moveEnds = Arrays.copyOf(this.moveEnds, capacity);
+            }
+
+            this.ids[this.size] = id;
+            this.versions[this.size] = version;
+            this.stones[this.size] = stones;
+            this.flags[this.size] = (byte) flags;
+            return this.size++;
+        }
+
+        private void copyMoves(final Kalah game, final int index) {
+            try {
+                game.writeMoves(this.moveOut);
+            } catch (IOException exc) {
+                throw new AssertionError("Cannot write to memory", exc);
+            }
+            this.moveEnds[index] = this.moveOut.size();
+        }
+
+        private void restoreMoves(final Kalah game, final int index) {
+            final int start = index == 0 ? 0 : this.moveEnds[index - 1];
+            if (start == this.moveEnds[index]) {
+                return;
+            }
+
+            try {
+                game.readMoves(new DataInputStream(new ByteArrayInputStream(this.moves, start,
+                        this.moveEnds[index] - start)));
+            } catch (IOException exc) {
+                // the board is still right, only its moves cannot be taken back
+                LOGGER.log(Level.WARNING, "Cannot restore the moves of game " + game.getId()
+                        + " from the snapshot", exc);
+            }
+        }
+
+        private void write(final DataOutputStream out) throws IOException {
+            // most boards fit every count in two bytes, the record stays fixed-width within the group
+            int maxCount = 0;
+            for (int i = 0; i < this.size * this.cells; i++) {
+                maxCount = Math.max(maxCount, this.counts[i]);
+            }
+            final int width = maxCount > 0xFFFF ? 4 : 2;
+
+            out.writeInt(this.pits);
+            out.writeInt(this.size);
+            out.writeByte(width);
+            for (int i = 0; i < this.size; i++) {
+                out.writeLong(this.ids[i]);
+            }
+            for (int i = 0; i < this.size; i++) {
+                out.writeLong(this.versions[i]);
+            }
+            for (int i = 0; i < this.size; i++) {
+                out.writeInt(this.stones[i]);
+            }
+            out.write(this.flags, 0, this.size);
+            for (int i = 0; i < this.size * this.cells; i++) {
+                if (width == 2) {
+                    out.writeShort(this.counts[i]);
+                } else {
+                    out.writeInt(this.counts[i]);
+                }
+            }
+            for (int i = 0; i < this.size; i++) {
+                out.writeInt(this.moveEnds[i]);
+            }
+            this.moveBytes.writeTo(out);
+        }
+
+        private static Group read(final DataInputStream in, final boolean withMoves) throws IOException {
+            final int pits = in.readInt();
+            final int size = in.readInt();
+            final int width = in.readUnsignedByte();
+            if (pits < 1 || size < 0 || (width != 2 && width != 4)
+                    || (long) size * 2 * (pits + 1) > Integer.MAX_VALUE) {
+                throw new IOException("Malformed group of " + size + " games with " + pits + " pits");
+            }
+            // the ids, versions, stones, flags, counts and the ends of the moves of every game
+            final long gameBytes = 8 + 8 + 4 + 1 + 2L * (pits + 1) * width + (withMoves ? 4 : 0);
+            if (size * gameBytes > in.available()) {
+                throw new IOException("Malformed group of " + size + " games with " + pits + " pits");
+            }
+
+            final Group group = new Group(pits, size);
+            for (int i = 0; i < size; i++) {
+                group.ids[i] = in.readLong();
+            }
+            for (int i = 0; i < size; i++) {
+                group.versions[i] = in.readLong();
+            }
+            for (int i = 0; i < size; i++) {
+                group.stones[i] = in.readInt();
+            }
+            in.readFully(group.flags, 0, size);
+            for (int i = 0; i < size * group.cells; i++) {
+                group.counts[i] = width == 2 ? in.readUnsignedShort() : in.readInt();
+            }
+            if (withMoves) {
+                for (int i = 0; i < size; i++) {
+                    group.moveEnds[i] = in.readInt();
+                    if (group.moveEnds[i] < (i == 0 ? 0 : group.moveEnds[i - 1])) {
+                        throw new IOException("Malformed moves of game " + group.ids[i]);
+                    }
+                }
+                final int moves = size == 0 ? 0 : group.moveEnds[size - 1];
+                if (moves > in.available()) {
+                    throw new IOException("Malformed moves of " + size + " games with " + pits + " pits");
+                }
+                group.moves = new byte[moves];
+                in.readFully(group.moves);
+            }
+            group.size = size;
+            return group;
+        }
+    }
+}
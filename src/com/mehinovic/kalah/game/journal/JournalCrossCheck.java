@@ -0,0 +1,375 @@
+package com.mehinovic.kalah.game.journal;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import com.mehinovic.kalah.game.entity.impl.RequestPlayer;
+import com.mehinovic.kalah.game.events.KalahEvent;
+import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.events.MoveSummary;
+import com.mehinovic.kalah.game.repository.GameRepository;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Writes random games to a journal, damages it the way a crash or a bad disk would, replays it
+ * and compares the replayed games with the games as they were played, run with
+ * <pre>java com.mehinovic.kalah.game.journal.JournalCrossCheck [rounds] [seed]</pre>
+ * Every round plays new games, moves, moves taken back and played again and removed games,
+ * with a snapshot halfway, then replays the journal intact, with a torn record and with a truncated segment
+ * at the tail, with a record of another version and with a damaged snapshot.
+ */
+public final class JournalCrossCheck {
+
+    private static final int DEFAULT_ROUNDS = 20;
+
+    /**
+     * the games and the records of a round
+     */
+    private static final int GAMES = 24;
+    private static final int RECORDS = 3000;
+
+    /**
+     * small segments, so a round fills many of them
+     */
+    private static final int SEGMENT_BYTES = MoveJournal.HEADER_SIZE + 64 * MoveJournal.RECORD_SIZE;
+
+    private static final GameFactory FACTORY = new GameFactory() {
+        @Override
+        public Kalah newGame(final long id, final KalahConfiguration configuration, final boolean computer) {
+            final Kalah game = new Kalah(configuration, new SilentListener(), id);
+            game.setPlayerOne(new RequestPlayer(game, 1));
+            game.setPlayerTwo(new RequestPlayer(game, 2));
+            game.startGame();
+            return game;
+        }
+    };
+
+    private JournalCrossCheck() {}
+
+    public static void main(final String[] args) throws IOException {
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        crossCheck(rounds, new Random(seed));
+        System.out.println(rounds + " rounds of journals replayed as played, seed " + seed);
+    }
+
+    /**
+     * plays random games into journals and compares them with the games replayed from the damaged journals
+     * @param rounds the amount of journals to write
+     * @param random the random source to pick the games, the moves and the damage with
+     * @throws IOException if a journal cannot be written or read
+     * @throws IllegalStateException if a replayed journal differs from the games as they were played
+     */
+    public static void crossCheck(final int rounds, final Random random) throws IOException {
+        for (int round = 0; round < rounds; round++) {
+            final Path directory = Files.createTempDirectory("kalah-journal");
+            try {
+                final List<Change> changes = play(directory, random);
+                final List<Record> tail = listRecords(directory);
+                // the records before the snapshot were deleted with their segments
+                final int snapshotted = changes.size() - tail.size();
+
+                compare("intact", replay(directory, random), expect(changes, changes.size()));
+
+                // a crash tears the last record written, or the disk loses the end of the last segment
+                final Record last = tail.get(tail.size() - 1);
+                final List<Record> lastSegment = new ArrayList<>();
+                for (Record record : tail) {
+                    if (record.segment.equals(last.segment)) {
+                        lastSegment.add(record);
+                    }
+                }
+                final Record torn = lastSegment.get(random.nextInt(lastSegment.size()));
+                final int tornAt = snapshotted + tail.indexOf(torn);
+
+                Path copy = copy(directory);
+                final byte[] bytes = Files.readAllBytes(copy.resolve(torn.segment));
+                bytes[torn.offset + random.nextInt(MoveJournal.RECORD_SIZE)] ^= 1 + random.nextInt(255);
+                Files.write(copy.resolve(torn.segment), bytes);
+                compare("torn", replay(copy, random), expect(changes, tornAt));
+                delete(copy);
+
+                copy = copy(directory);
+                final byte[] truncated = Files.readAllBytes(copy.resolve(torn.segment));
+                Files.write(copy.resolve(torn.segment),
+                        Arrays.copyOf(truncated, torn.offset + random.nextInt(MoveJournal.RECORD_SIZE)));
+                compare("truncated", replay(copy, random), expect(changes, tornAt));
+                delete(copy);
+
+                // a record of a move played to another version drops its game
+                final List<Record> played = new ArrayList<>();
+                for (Record record : tail) {
+                    if (record.type == MoveJournal.TYPE_MOVE || record.type == MoveJournal.TYPE_UNDO
+                            || record.type == MoveJournal.TYPE_REDO) {
+                        played.add(record);
+                    }
+                }
+                if (!played.isEmpty()) {
+                    final Record mismatched = played.get(random.nextInt(played.size()));
+                    copy = copy(directory);
+                    final byte[] segment = Files.readAllBytes(copy.resolve(mismatched.segment));
+                    final ByteBuffer buffer = ByteBuffer.wrap(segment);
+                    buffer.putLong(mismatched.offset + 24, buffer.getLong(mismatched.offset + 24) + 1);
+                    final CRC32 checksum = new CRC32();
+                    checksum.update(segment, mismatched.offset + 4, MoveJournal.RECORD_SIZE - 4);
+                    buffer.putInt(mismatched.offset, (int) checksum.getValue());
+                    Files.write(copy.resolve(mismatched.segment), segment);
+
+                    final Map<Long, String> expected = expect(changes, changes.size());
+                    expected.remove(mismatched.id);
+                    compare("mismatched", replay(copy, random), expected);
+                    delete(copy);
+                }
+
+                // a damaged snapshot is not loaded at all
+                copy = copy(directory);
+                final Path snapshot = copy.resolve(MoveJournal.SNAPSHOT_FILE);
+                final byte[] games = Files.readAllBytes(snapshot);
+                games[random.nextInt(games.length)] ^= 1 + random.nextInt(255);
+                Files.write(snapshot, games);
+                try {
+                    replay(copy, random);
+                    throw new IllegalStateException("A damaged snapshot was loaded");
+                } catch (IOException exc) {
+                    // expected
+                }
+                delete(copy);
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    /**
+     * plays random games into a new journal and takes a snapshot halfway
+     * @return the state of the changed game after every record, in the order of the records
+     */
+    private static List<Change> play(final Path directory, final Random random) throws IOException {
+        final MoveJournal journal = MoveJournal.open(directory, Durability.BATCH, 1, SEGMENT_BYTES);
+        final GameRepository repository = new GameRepository(1L << 30, TimeUnit.HOURS.toMillis(1),
+                TimeUnit.HOURS.toMillis(1));
+        final List<Kalah> live = new ArrayList<>();
+        final List<Change> changes = new ArrayList<>(RECORDS);
+        boolean snapshot = false;
+        try {
+            while (changes.size() < RECORDS) {
+                if (!snapshot && changes.size() >= RECORDS / 2) {
+                    journal.snapshot(repository);
+                    snapshot = true;
+                }
+
+                if (live.size() < GAMES) {
+                    final Kalah game = FACTORY.newGame(Kalah.newId(),
+                            new KalahConfiguration(1 + random.nextInt(8), 1 + random.nextInt(6)), false);
+                    repository.put(game);
+                    live.add(game);
+                    journal.newGame(game);
+                    changes.add(new Change(game));
+                    continue;
+                }
+
+                final Kalah game = live.get(random.nextInt(live.size()));
+                final Board board = Board.of(game);
+                final int action = random.nextInt(20);
+                if (action == 0) {
+                    repository.remove(game.getId());
+                    live.remove(game);
+                    journal.remove(game);
+                    changes.add(new Change(game.getId()));
+                } else if (action < 4 && game.getMovesPlayed() > 0) {
+                    game.undo();
+                    journal.undo(game);
+                    changes.add(new Change(game));
+                } else if (action < 6 && game.getMovesTakenBack() > 0) {
+                    game.redo();
+                    journal.redo(game);
+                    changes.add(new Change(game));
+                } else if (!board.isGameOver()) {
+                    int pit = random.nextInt(board.getPits());
+                    while (!board.isLegal(pit)) {
+                        pit = (pit + 1) % board.getPits();
+                    }
+                    final RequestPlayer player = (RequestPlayer) game.getCurrentPlayer();
+                    player.play(pit);
+                    journal.move(player, pit);
+                    changes.add(new Change(game));
+                }
+            }
+        } finally {
+            repository.close();
+            journal.close();
+        }
+        return changes;
+    }
+
+    private static Map<Long, Kalah> replay(final Path directory, final Random random) throws IOException {
+        final MoveJournal journal = MoveJournal.open(directory, Durability.BATCH, 1, SEGMENT_BYTES);
+        try {
+            return journal.replay(FACTORY, 1 + random.nextInt(4));
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * @param changes the changes of the games
+     * @param count the amount of changes that survived
+     * @return the state of every live game after the changes, by id
+     */
+    private static Map<Long, String> expect(final List<Change> changes, final int count) {
+        final Map<Long, String> games = new HashMap<>();
+        for (Change change : changes.subList(0, count)) {
+            if (change.state == null) {
+                games.remove(change.id);
+            } else {
+                games.put(change.id, change.state);
+            }
+        }
+        return games;
+    }
+
+    private static void compare(final String journal, final Map<Long, Kalah> replayed,
+            final Map<Long, String> expected) {
+        final Map<Long, String> games = new HashMap<>();
+        for (Kalah game : replayed.values()) {
+            games.put(game.getId(), state(game));
+        }
+        if (!games.equals(expected)) {
+            throw new IllegalStateException("The " + journal + " journal replayed " + games + " instead of "
+                    + expected);
+        }
+    }
+
+    private static String state(final Kalah game) {
+        return "version=" + game.getVersion() + ", moves=" + game.getMovesPlayed() + "/" + game.getMovesTakenBack()
+                + ", " + Board.of(game);
+    }
+
+    /**
+     * @return the records of the segments that are left, in the order they were written
+     */
+    private static List<Record> listRecords(final Path directory) throws IOException {
+        final List<Record> records = new ArrayList<>();
+        for (Path file : MoveJournal.listSegments(directory)) {
+            final ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(file));
+            for (int offset = MoveJournal.HEADER_SIZE; offset + MoveJournal.RECORD_SIZE <= segment.limit()
+                    && segment.get(offset + 4) != 0; offset += MoveJournal.RECORD_SIZE) {
+                records.add(new Record(file.getFileName(), offset, segment.get(offset + 4),
+                        segment.getLong(offset + 16)));
+            }
+        }
+        return records;
+    }
+
+    private static Path copy(final Path directory) throws IOException {
+        final Path copy = Files.createTempDirectory("kalah-journal");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * the state of a game after one of its records, or the id of a removed game
+     */
+    private static final class Change {
+
+        private final long id;
+        private final String state;
+
+        private Change(final Kalah game) {
+            this.id = game.getId();
+            this.state = state(game);
+        }
+
+        private Change(final long id) {
+            this.id = id;
+            this.state = null;
+        }
+    }
+
+    /**
+     * a record of a segment file
+     */
+    private static final class Record {
+
+        private final Path segment;
+        private final int offset;
+        private final int type;
+        private final long id;
+
+        private Record(final Path segment, final int offset, final int type, final long id) {
+            this.segment = segment;
+            this.offset = offset;
+            this.type = type;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Listener of the checked games, which nobody watches
+     */
+    private static final class SilentListener implements KalahListener {
+
+        @Override
+        public Set<KalahEvent> getEvents() {
+            return EnumSet.noneOf(KalahEvent.class);
+        }
+
+        @Override
+        public void gameStart() {}
+
+        @Override
+        public void gameEnd(Player whoWon, Player whoLost) {}
+
+        @Override
+        public void distStart(Player player, Pit fromPit) {}
+
+        @Override
+        public void distEnd(Player player, Pit fromPit) {}
+
+        @Override
+        public void playerSwitch(Player newPlayer) {}
+
+        @Override
+        public void freeMove(Player forPlayer) {}
+
+        @Override
+        public void pitEmpty(Pit pit) {}
+
+        @Override
+        public void stonesAdded(StoneContainer container, int amount) {}
+
+        @Override
+        public void moveSummary(MoveSummary summary) {}
+    }
+}
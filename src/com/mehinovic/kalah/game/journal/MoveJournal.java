@@ -0,0 +1,896 @@
+package com.mehinovic.kalah.game.journal;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.impl.RequestPlayer;
+import com.mehinovic.kalah.game.entity.impl.SearchPlayer;
+import com.mehinovic.kalah.game.repository.GameRepository;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * The new games, joins, moves, moves taken back and removed games of the server in the order they were played,
+ * so the live games can be played again after a restart. The journal is a directory of segment files that are memory mapped and only appended to,
+ * writing a move copies a record into the mapping and never waits on the disk itself.
+ * Whether the moves are then forced to disk for every request or every few milliseconds is the Durability.
+ * <p>
+ * A record is the checksum, the type, the player, the pit, the stones, the game id and the version of the game
+ * after the move, 32 bytes so a record never crosses a page. A new segment is started once one is full
+ * and every time the journal is opened, the segments found when opening are replayed once, in parallel by game.
+ * <p>
+ * A snapshot writes the live games to a single file and deletes the segments before it,
+ * so replaying is loading the snapshot and playing the moves since, however long the server has been running.
+ * The journal of the JVM is opened in the directory named by the kalah.journal system property.
+ */
+public final class MoveJournal {
+
+    /**
+     * system properties holding the directory of the journal, the durability,
+     * the milliseconds between two forces of the batch durability and the size of a segment file in bytes
+     */
+    public static final String PATH_PROPERTY = "kalah.journal";
+    public static final String DURABILITY_PROPERTY = "kalah.journal.durability";
+    public static final String BATCH_MILLIS_PROPERTY = "kalah.journal.batchMillis";
+    public static final String SEGMENT_BYTES_PROPERTY = "kalah.journal.segmentBytes";
+
+    /**
+     * system property holding the seconds between two snapshots of the live games
+     */
+    public static final String SNAPSHOT_SECONDS_PROPERTY = "kalah.journal.snapshotSeconds";
+
+    public static final Durability DEFAULT_DURABILITY = Durability.BATCH;
+    public static final long DEFAULT_BATCH_MILLIS = 10;
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    public static final long DEFAULT_SNAPSHOT_SECONDS = 60;
+
+    static final int MAGIC = 0x4B4A524E;
+    static final int VERSION = 1;
+
+    /**
+     * magic and version, padded to a record
+     */
+    static final int HEADER_SIZE = 32;
+
+    static final int RECORD_SIZE = 32;
+
+    /**
+     * types of records, a zero type is the unwritten end of a segment
+     */
+    static final int TYPE_NEW = 1;
+    static final int TYPE_MOVE = 2;
+    static final int TYPE_UNDO = 3;
+    static final int TYPE_REDO = 4;
+    static final int TYPE_JOIN = 5;
+    static final int TYPE_REMOVE = 6;
+
+    /**
+     * opponents of a new game
+     */
+    static final int OPPONENT_HUMAN = 0;
+    static final int OPPONENT_COMPUTER = 1;
+    static final int OPPONENT_REMOTE = 2;
+
+    private static final String SEGMENT_PREFIX = "moves-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String LOCK_FILE = "journal.lock";
+    static final String SNAPSHOT_FILE = "games.snapshot";
+
+    private static final Logger LOGGER = Logger.getLogger(MoveJournal.class.getName());
+
+    private static final MoveJournal SHARED = openShared();
+
+    private final Path directory;
+    private final Durability durability;
+    private final int segmentBytes;
+    private final FileChannel lock;
+
+    /**
+     * the segments written before the journal was opened
+     */
+    private final List<Path> recovered;
+
+    /**
+     * the record being written and the segment it is written to, guarded by this.
+     * The full segments are forced along with the current one by the next force,
+     * so no request waits on the disk while the journal moves to a new segment.
+     * The next segment is created and mapped ahead by a force, outside of this lock, the journal only swaps it in
+     */
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 checksum = new CRC32();
+    private final List<MappedByteBuffer> rotated = new ArrayList<>();
+    private MappedByteBuffer segment;
+    private MappedByteBuffer nextSegment;
+    private boolean preparing;
+    private long segmentIndex;
+    private long segmentsOpened;
+    private long written;
+    private boolean closed;
+
+    /**
+     * the amount of records on disk, the segments whose files are on disk and whether a thread is forcing them,
+     * guarded by the flush lock
+     */
+    private final Object flushLock = new Object();
+    private long forced;
+    private long forces;
+    private long directorySynced;
+    private boolean flushing;
+
+    /**
+     * taken by a snapshot, one at a time
+     */
+    private final Object snapshotLock = new Object();
+
+    private final ScheduledExecutorService flusher;
+
+    private MoveJournal(final Path directory, final Durability durability, final long batchMillis,
+            final int segmentBytes, final FileChannel lock, final List<Path> recovered, final long segmentIndex)
+            throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentBytes = segmentBytes;
+        this.lock = lock;
+        this.recovered = recovered;
+        this.segmentIndex = segmentIndex;
+        this.segment = this.openSegment(segmentIndex);
+        this.segmentsOpened = 1;
+
+        if (durability == Durability.BATCH) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("kalah-journal-flush-%d")
+                    .setDaemon(true)
+                    .build());
+            this.flusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        MoveJournal.this.flush();
+                    } catch (IOException | RuntimeException exc) {
+                        // an exception would cancel the schedule
+                        LOGGER.log(Level.WARNING, "Cannot force the move journal", exc);
+                    }
+                }
+            }, batchMillis, batchMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * @return the journal named by the kalah.journal system properties, or null if there is none
+     */
+    public static MoveJournal shared() {
+        return SHARED;
+    }
+
+    /**
+     * opens the journal of a directory, appending to a new segment
+     * @param directory the directory of the segments, created if it does not exist
+     * @param durability when the moves are forced to disk
+     * @param batchMillis the time between two forces of the batch durability
+     * @param segmentBytes the size of a segment file
+     * @return the opened journal
+     * @throws IOException if the directory cannot be written or another journal has it open
+     */
+    public static MoveJournal open(final Path directory, final Durability durability, final long batchMillis,
+            final int segmentBytes) throws IOException {
+        if (durability == null) {
+            throw new IllegalArgumentException("Cannot open a journal without a durability!");
+        }
+        if (batchMillis < 1) {
+            throw new IllegalArgumentException("invalid batch interval " + batchMillis + "ms, must be at least 1ms");
+        }
+        if (segmentBytes < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("invalid segment size " + segmentBytes + ", must be at least "
+                    + (HEADER_SIZE + RECORD_SIZE) + " bytes");
+        }
+
+        Files.createDirectories(directory);
+        final FileChannel lock = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            final FileLock fileLock = lock.tryLock();
+            if (fileLock == null) {
+                throw new IOException("The journal " + directory + " is used by another process");
+            }
+
+            final List<Path> recovered = listSegments(directory);
+            final long next = recovered.isEmpty() ? 0 : segmentIndex(recovered.get(recovered.size() - 1)) + 1;
+            return new MoveJournal(directory, durability, batchMillis, segmentBytes, lock, recovered, next);
+        } catch (IOException | RuntimeException exc) {
+            lock.close();
+            throw exc;
+        }
+    }
+
+    private static MoveJournal openShared() {
+        final String path = System.getProperty(PATH_PROPERTY);
+        if (path == null) {
+            return null;
+        }
+
+        try {
+            final Durability durability = Durability.valueOf(
+                    System.getProperty(DURABILITY_PROPERTY, DEFAULT_DURABILITY.name()).toUpperCase(Locale.ROOT));
+            return open(Paths.get(path), durability,
+                    Long.getLong(BATCH_MILLIS_PROPERTY, DEFAULT_BATCH_MILLIS),
+                    Integer.getInteger(SEGMENT_BYTES_PROPERTY, DEFAULT_SEGMENT_BYTES));
+        } catch (IOException | IllegalArgumentException exc) {
+            LOGGER.log(Level.WARNING, "Cannot open the move journal " + path + ", games are not journaled", exc);
+            return null;
+        }
+    }
+
+    /**
+     * @return the durability of the journal
+     */
+    public Durability getDurability() {
+        return this.durability;
+    }
+
+    /**
+     * writes a new game, before its first move
+     * @param game the new game
+     * @return the position of the record, to wait for with awaitDurable
+     * @throws IOException if a new segment cannot be created
+     */
+    public long newGame(final Kalah game) throws IOException {
+        final KalahConfiguration configuration = game.getConfiguration();
+        final int opponent = game.getPlayerTwo() instanceof SearchPlayer ? OPPONENT_COMPUTER
+                : game.isRemote() ? OPPONENT_REMOTE : OPPONENT_HUMAN;
+        return this.append(TYPE_NEW, opponent, configuration.getPits(), configuration.getStones(),
+                game.getId(), game.getVersion());
+    }
+
+    /**
+     * writes that a session took the second seat of a remote game, once it was taken
+     * @param game the game
+     * @return the position of the record, to wait for with awaitDurable
+     * @throws IOException if a new segment cannot be created
+     */
+    public long join(final Kalah game) throws IOException {
+        return this.append(TYPE_JOIN, 0, 0, 0, game.getId(), game.getVersion());
+    }
+
+    /**
+     * writes that a game left the repository, so it is not played again
+     * @param game the removed or evicted game
+     * @return the position of the record, to wait for with awaitDurable
+     * @throws IOException if a new segment cannot be created
+     */
+    public long remove(final Kalah game) throws IOException {
+        return this.append(TYPE_REMOVE, 0, 0, 0, game.getId(), game.getVersion());
+    }
+
+    /**
+     * writes a move once it was played
+     * @param player the player who played the move
+     * @param pitId the pit the move was played from
+     * @return the position of the record, to wait for with awaitDurable
+     * @throws IOException if a new segment cannot be created
+     */
+    public long move(final Player player, final int pitId) throws IOException {
+        final Kalah game = player.getGame();
+        return this.append(TYPE_MOVE, player.getPlayerId(), pitId, 0, game.getId(), game.getVersion());
+    }
+
+    /**
+     * writes a move taken back once it was taken back
+     * @param game the game
+     * @return the position of the record, to wait for with awaitDurable
+     * @throws IOException if a new segment cannot be created
+     */
+    public long undo(final Kalah game) throws IOException {
+        return this.append(TYPE_UNDO, 0, 0, 0, game.getId(), game.getVersion());
+    }
+
+    /**
+     * writes a move taken back and played again once it was played again
+     * @param game the game
+     * @return the position of the record, to wait for with awaitDurable
+     * @throws IOException if a new segment cannot be created
+     */
+    public long redo(final Kalah game) throws IOException {
+        return this.append(TYPE_REDO, 0, 0, 0, game.getId(), game.getVersion());
+    }
+
+    private synchronized long append(final int type, final int player, final int pit, final int stones,
+            final long id, final long version) throws IOException {
+        if (this.closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        // another appender may have filled the segment while this one waited for the next
+        while (this.segment.remaining() < RECORD_SIZE) {
+            this.rotate();
+        }
+
+        final ByteBuffer record = this.record;
+        record.clear();
+        record.putInt(0)
+                .put((byte) type)
+                .put((byte) player)
+                .putShort((short) pit)
+                .putInt(stones)
+                .putInt(0)
+                .putLong(id)
+                .putLong(version);
+        this.checksum.reset();
+        this.checksum.update(record.array(), 4, RECORD_SIZE - 4);
+        record.putInt(0, (int) this.checksum.getValue());
+
+        this.segment.put(record.array());
+        return ++this.written;
+    }
+
+    /**
+     * continues in a new segment, the full one is left to the next force.
+     * The segment prepared ahead is swapped in, it is only created here when none was prepared yet.
+     * Waiting for the segment being prepared lets other appenders in, they may have rotated already
+     * @return the index of the new segment
+     */
+    private long rotate() throws IOException {
+        final long index = this.segmentIndex;
+        // the segment being prepared has the next index, it would collide with one created here
+        while (this.preparing) {
+            try {
+                this.wait();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next journal segment");
+            }
+        }
+        if (this.closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        // another thread rotated while this one waited, its segment also started after this call
+        if (this.segmentIndex != index) {
+            return this.segmentIndex;
+        }
+
+        MappedByteBuffer next = this.nextSegment;
+        this.nextSegment = null;
+        if (next == null) {
+            next = this.openSegment(this.segmentIndex + 1);
+        }
+        this.rotated.add(this.segment);
+        this.segment = next;
+        this.segmentsOpened++;
+        return ++this.segmentIndex;
+    }
+
+    /**
+     * creates and maps the next segment unless it already is, without holding the lock of the appenders
+     */
+    private void prepareSegment() {
+        final long index;
+        synchronized (this) {
+            if (this.nextSegment != null || this.preparing || this.closed) {
+                return;
+            }
+            this.preparing = true;
+            index = this.segmentIndex + 1;
+        }
+
+        MappedByteBuffer next = null;
+        try {
+            next = this.openSegment(index);
+        } catch (IOException exc) {
+            LOGGER.log(Level.WARNING, "Cannot prepare the journal segment " + index
+                    + ", it is created once the current one is full", exc);
+        } finally {
+            synchronized (this) {
+                this.nextSegment = next;
+                this.preparing = false;
+                this.notifyAll();
+            }
+        }
+    }
+
+    private Path segmentFile(final long index) {
+        return this.directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private MappedByteBuffer openSegment(final long index) throws IOException {
+        final Path file = this.segmentFile(index);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the file is grown sparse, the pages are only written as the records reach them
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    this.segmentBytes - (this.segmentBytes - HEADER_SIZE) % RECORD_SIZE);
+            segment.putInt(MAGIC).putInt(VERSION);
+            segment.position(HEADER_SIZE);
+
+            // the mapping stays valid after the channel is closed, the header is forced with the first records
+            return segment;
+        }
+    }
+
+    private void syncDirectory() {
+        // makes the new file itself durable, not every platform can open a directory
+        try (FileChannel channel = FileChannel.open(this.directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException exc) {
+            LOGGER.log(Level.FINE, "Cannot force the journal directory " + this.directory, exc);
+        }
+    }
+
+    /**
+     * waits until a record is on disk if the journal is synchronous, returns immediately otherwise
+     * @param position the position of the record
+     * @throws IOException if the record cannot be forced
+     */
+    public void awaitDurable(final long position) throws IOException {
+        if (this.durability == Durability.SYNC) {
+            this.force(position);
+        }
+    }
+
+    /**
+     * forces all records written so far
+     * @throws IOException if the records cannot be forced
+     */
+    public void flush() throws IOException {
+        final long position;
+        synchronized (this) {
+            position = this.written;
+        }
+        this.force(position);
+    }
+
+    /**
+     * group commit, the first waiting thread forces every record written so far,
+     * the threads that wrote meanwhile wait for it instead of forcing on their own
+     */
+    private void force(final long position) throws IOException {
+        while (true) {
+            synchronized (this.flushLock) {
+                while (this.flushing && this.forced < position) {
+                    try {
+                        this.flushLock.wait();
+                    } catch (InterruptedException exc) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the journal");
+                    }
+                }
+                if (this.forced >= position) {
+                    return;
+                }
+                this.flushing = true;
+            }
+
+            long target = 0;
+            long opened = 0;
+            boolean done = false;
+            try {
+                final MappedByteBuffer segment;
+                final MappedByteBuffer[] full;
+                synchronized (this) {
+                    segment = this.segment;
+                    target = this.written;
+                    opened = this.segmentsOpened;
+                    full = this.rotated.toArray(new MappedByteBuffer[this.rotated.size()]);
+                }
+
+                for (MappedByteBuffer previous : full) {
+                    previous.force();
+                }
+                // only the leader reads and writes the synced segments
+                if (opened > this.directorySynced) {
+                    this.syncDirectory();
+                }
+                segment.force();
+                // still the leader, no other thread copied the full segments since, later rotations are appended
+                if (full.length > 0) {
+                    synchronized (this) {
+                        this.rotated.subList(0, full.length).clear();
+                    }
+                }
+                done = true;
+            } finally {
+                synchronized (this.flushLock) {
+                    if (done) {
+                        this.directorySynced = Math.max(this.directorySynced, opened);
+                        if (target > this.forced) {
+                            this.forced = target;
+                            this.forces++;
+                        }
+                    }
+                    this.flushing = false;
+                    this.flushLock.notifyAll();
+                }
+            }
+
+            // the waiting threads are released, the leader creates the next segment so no appender has to
+            this.prepareSegment();
+        }
+    }
+
+    /**
+     * @return the amount of records written since the journal was opened
+     */
+    public synchronized long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * @return the amount of times records were forced to disk, fewer than the records under load
+     */
+    public long getForces() {
+        synchronized (this.flushLock) {
+            return this.forces;
+        }
+    }
+
+    /**
+     * writes the games of a repository to the snapshot and deletes the segments it replaces.
+     * The journal continues in a new segment before the games are listed, so every record of the older segments
+     * is in the copied games. A game is only locked while it is copied, a request waits for that copy at most
+     * @param repository the live games
+     * @return the amount of games in the snapshot
+     * @throws IOException if the snapshot cannot be written, the segments are kept
+     */
+    public int snapshot(final GameRepository repository) throws IOException {
+        synchronized (this.snapshotLock) {
+            final long firstSegment;
+            synchronized (this) {
+                if (this.closed) {
+                    throw new IllegalStateException("The journal is closed");
+                }
+                firstSegment = this.rotate();
+            }
+
+            final GameSnapshotFile snapshot = GameSnapshotFile.copy(repository.getGames(), firstSegment);
+            snapshot.write(this.directory.resolve(SNAPSHOT_FILE));
+            this.syncDirectory();
+
+            // the segment the snapshot starts at is never deleted, a reopened journal continues after it
+            for (Path file : listSegments(this.directory)) {
+                if (segmentIndex(file) < firstSegment) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            return snapshot.size();
+        }
+    }
+
+    /**
+     * plays the games of the snapshot and the segments written before the journal was opened again.
+     * The records are split by game id over the threads, every thread plays its games in journal order.
+     * A segment ends at its first record with a bad checksum, the record a crash tore.
+     * A game whose move cannot be played or ends at another version than the one written is dropped,
+     * records already in the snapshot and moves of games started before the oldest segment are skipped.
+     * A game removed from the repository is dropped at its remove record, it was no longer live
+     * @param factory creates the new games
+     * @param threads the amount of threads to play the games with
+     * @return the played games by id
+     * @throws IOException if a segment cannot be read
+     */
+    public Map<Long, Kalah> replay(final GameFactory factory, final int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid amount of threads " + threads + ", must be at least 1");
+        }
+
+        final long start = System.nanoTime();
+        long firstSegment = 0;
+        final Bucket[] buckets = new Bucket[threads];
+        for (int i = 0; i < threads; i++) {
+            buckets[i] = new Bucket();
+        }
+
+        int restored = 0;
+        final Path snapshotFile = this.directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            final GameSnapshotFile snapshot = GameSnapshotFile.read(snapshotFile);
+            firstSegment = snapshot.getFirstSegment();
+            for (Kalah game : snapshot.restore(factory).values()) {
+                buckets[(int) (game.getId() % threads)].games.put(game.getId(), game);
+                restored++;
+            }
+        }
+
+        // reading the records is cheap next to playing them, one pass splits them up
+        final CRC32 checksum = new CRC32();
+        final List<ByteBuffer> segments = new ArrayList<>(this.recovered.size());
+        long records = 0;
+        for (Path file : this.recovered) {
+            // the older segments are in the snapshot
+            if (segmentIndex(file) < firstSegment) {
+                continue;
+            }
+
+            final ByteBuffer segment = mapSegment(file);
+            if (segment == null) {
+                continue;
+            }
+
+            final int index = segments.size();
+            segments.add(segment);
+            for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= segment.limit(); offset += RECORD_SIZE) {
+                if (!isValid(segment, offset, checksum)) {
+                    if (segment.getInt(offset) != 0 || segment.get(offset + 4) != 0) {
+                        LOGGER.warning("Torn record in journal segment " + file + " at " + offset);
+                    }
+                    break;
+                }
+
+                // ids are random and never negative
+                final long id = segment.getLong(offset + 16);
+                buckets[(int) (id % threads)].add((long) index << 32 | offset);
+                records++;
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("kalah-journal-replay-%d")
+                .setDaemon(true)
+                .build());
+        final Map<Long, Kalah> games = new HashMap<>();
+        int dropped = 0;
+        try {
+            final List<ReplayTask> tasks = new ArrayList<>(threads);
+            for (Bucket bucket : buckets) {
+                tasks.add(new ReplayTask(segments, bucket, factory));
+            }
+            for (Future<Map<Long, Kalah>> future : executor.invokeAll(tasks)) {
+                games.putAll(future.get());
+            }
+            for (ReplayTask task : tasks) {
+                dropped += task.dropped;
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying the journal");
+        } catch (ExecutionException exc) {
+            throw new IOException("Cannot replay the journal " + this.directory, exc.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.info("Replayed " + records + " records of " + games.size() + " games from " + segments.size()
+                + " journal segments after a snapshot of " + restored + " games in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms, " + dropped + " games dropped");
+        return games;
+    }
+
+    private static boolean isValid(final ByteBuffer segment, final int offset, final CRC32 checksum) {
+        if (segment.get(offset + 4) == 0) {
+            return false;
+        }
+
+        final ByteBuffer record = segment.duplicate();
+        record.limit(offset + RECORD_SIZE);
+        record.position(offset + 4);
+        checksum.reset();
+        checksum.update(record);
+        return (int) checksum.getValue() == segment.getInt(offset);
+    }
+
+    private static ByteBuffer mapSegment(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (segment.limit() < HEADER_SIZE || segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION) {
+                LOGGER.warning(file + " is not a journal segment, skipping it");
+                return null;
+            }
+            return segment;
+        }
+    }
+
+    static List<Path> listSegments(final Path directory) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // the index is zero padded, so the names sort in the order the segments were written
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long segmentIndex(final Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * forces the records written so far and stops the batch force, the journal can no longer be written
+     * @throws IOException if the records cannot be forced
+     */
+    public void close() throws IOException {
+        final long unused;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+
+            boolean interrupted = false;
+            while (this.preparing) {
+                try {
+                    this.wait();
+                } catch (InterruptedException exc) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            unused = this.nextSegment != null ? this.segmentIndex + 1 : -1;
+            this.nextSegment = null;
+        }
+
+        if (this.flusher != null) {
+            this.flusher.shutdown();
+        }
+        try {
+            this.flush();
+        } finally {
+            // a segment prepared but never written would be replayed as an empty one
+            if (unused >= 0) {
+                try {
+                    Files.deleteIfExists(this.segmentFile(unused));
+                } catch (IOException exc) {
+                    LOGGER.log(Level.FINE, "Cannot delete the unused journal segment " + unused, exc);
+                }
+            }
+            // releases the file lock
+            this.lock.close();
+        }
+    }
+
+    /**
+     * the games of a thread from the snapshot, and the records of its games as the segment index and offset of each
+     */
+    private static final class Bucket {
+
+        private final Map<Long, Kalah> games = new HashMap<>();
+        private long[] records = new long[1024];
+        private int size;
+
+        private void add(final long record) {
+            if (this.size == this.records.length) {
+                this.records = Arrays.copyOf(this.records, 2 * this.size);
+            }
+            this.records[this.size++] = record;
+        }
+    }
+
+    /**
+     * plays the records of a bucket in order
+     */
+    private static final class ReplayTask implements Callable<Map<Long, Kalah>> {
+
+        private final List<ByteBuffer> segments;
+        private final Bucket bucket;
+        private final GameFactory factory;
+        private int dropped;
+
+        private ReplayTask(final List<ByteBuffer> segments, final Bucket bucket, final GameFactory factory) {
+            this.segments = segments;
+            this.bucket = bucket;
+            this.factory = factory;
+        }
+
+        @Override
+        public Map<Long, Kalah> call() {
+            final Map<Long, Kalah> games = this.bucket.games;
+            for (int i = 0; i < this.bucket.size; i++) {
+                final long record = this.bucket.records[i];
+                // absolute reads do not touch the position, the threads share the segments
+                final ByteBuffer segment = this.segments.get((int) (record >>> 32));
+                final int offset = (int) record;
+
+                final int type = segment.get(offset + 4);
+                final int player = segment.get(offset + 5);
+                final int pit = segment.getShort(offset + 6) & 0xFFFF;
+                final long id = segment.getLong(offset + 16);
+                final long version = segment.getLong(offset + 24);
+
+                Kalah game = null;
+                try {
+                    if (type == TYPE_NEW) {
+                        // a game created after the snapshot started is in it already
+                        game = games.get(id);
+                        if (game != null && version <= game.getVersion()) {
+                            continue;
+                        }
+                        game = this.factory.newGame(id, new KalahConfiguration(pit, segment.getInt(offset + 8)),
+                                player == OPPONENT_COMPUTER);
+                        game.setRemote(player == OPPONENT_REMOTE);
+                        games.put(id, game);
+                    } else if (type == TYPE_JOIN) {
+                        // a join does not change the version, the snapshot may have the game after later moves
+                        game = games.get(id);
+                        if (game != null) {
+                            game.setSeatTaken(true);
+                        }
+                        continue;
+                    } else if (type == TYPE_REMOVE) {
+                        // the moves of the game written after it was removed are skipped like those of a dropped game
+                        games.remove(id);
+                        continue;
+                    } else if (type == TYPE_MOVE) {
+                        game = games.get(id);
+                        // started before the oldest segment, or dropped
+                        if (game == null || version <= game.getVersion()) {
+                            continue;
+                        }
+                        replayMove(game, player, pit);
+                    } else if (type == TYPE_UNDO || type == TYPE_REDO) {
+                        game = games.get(id);
+                        if (game == null || version <= game.getVersion()) {
+                            continue;
+                        }
+                        // the moves of a game loaded from a snapshot were loaded with it
+                        if (type == TYPE_UNDO) {
+                            game.undo();
+                        } else {
+                            game.redo();
+                        }
+                    } else {
+                        throw new IllegalStateException("Unknown record type " + type);
+                    }
+                } catch (IllegalArgumentException | IllegalStateException exc) {
+                    LOGGER.log(Level.WARNING, "Cannot replay game " + id + ", dropping it", exc);
+                    this.drop(games, id);
+                    continue;
+                }
+
+                if (game.getVersion() != version) {
+                    LOGGER.warning("Game " + id + " is at version " + game.getVersion() + " instead of "
+                            + version + ", dropping it");
+                    this.drop(games, id);
+                }
+            }
+            return games;
+        }
+
+        private void drop(final Map<Long, Kalah> games, final long id) {
+            if (games.remove(id) != null) {
+                this.dropped++;
+            }
+        }
+
+        private static void replayMove(final Kalah game, final int playerId, final int pitId) {
+            final Player player = game.getPlayerOne().getPlayerId() == playerId
+                    ? game.getPlayerOne() : game.getPlayerTwo();
+            if (player instanceof RequestPlayer) {
+                ((RequestPlayer) player).play(pitId);
+            } else if (player instanceof SearchPlayer) {
+                ((SearchPlayer) player).play(pitId);
+            } else {
+                throw new IllegalStateException("Cannot replay the moves of " + player.getClass().getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.mehinovic.kalah.game.repository;
+
+import com.mehinovic.kalah.game.Kalah;
+
+/**
+ * Told about the games that leave a repository, removed or evicted, not replaced by a game with the same id
+ */
+public interface GameRemovalListener {
+
+    /**
+     * called on the thread that removed the game or cleaned up the repository, after it let go of the games
+     * @param game the game that left the repository
+     */
+    void gameRemoved(Kalah game);
+}
@@ -0,0 +1,287 @@
+package com.mehinovic.kalah.game.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.impl.SearchPlayer;
+import com.mehinovic.kalah.game.search.MonteCarloSearch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The live games of the server by id. Games are evicted once they have not been used for a while,
+ * or the least recently used ones once the games take more than the allowed amount of memory.
+ * The map is split in segments with a lock each, so requests for different games rarely wait on each other.
+ * Expired games are cleaned up on a schedule instead of whenever a request happens to touch their segment.
+ */
+public final class GameRepository {
+
+    private static final Logger LOGGER = Logger.getLogger(GameRepository.class.getName());
+
+    /**
+     * system properties overriding the memory the games may take in bytes,
+     * and the minutes a game is kept without being used
+     */
+    public static final String MAX_BYTES_PROPERTY = "kalah.games.maxBytes";
+    public static final String IDLE_MINUTES_PROPERTY = "kalah.games.idleMinutes";
+
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+    public static final long DEFAULT_IDLE_MINUTES = 30;
+
+    /**
+     * the amount of segments, about the amount of request threads expected to update games at the same time.
+     * Every segment evicts on its own share of the memory, a computer player's tree on a wide board
+     * takes megabytes so the shares should not get too small
+     */
+    private static final int CONCURRENCY_LEVEL = 8;
+
+    /**
+     * the seconds between two clean ups of expired games
+     */
+    private static final long CLEANUP_SECONDS = 30;
+
+    /**
+     * estimated heap of a game, measured on a 64 bit jvm with compressed references.
+     * A game without pits, a pit with its share of the history ring,
+     * and a monte carlo node with its board, without pits and per pit.
+     * The moves a game keeps to be taken back are measured by the game
+     */
+    static final int GAME_BYTES = 1240;
+    static final int PIT_BYTES = 170;
+    static final int NODE_BYTES = 110;
+    static final int NODE_PIT_BYTES = 8;
+
+    private static final GameRepository SHARED = new GameRepository(
+            Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES),
+            TimeUnit.MINUTES.toMillis(Long.getLong(IDLE_MINUTES_PROPERTY, DEFAULT_IDLE_MINUTES)),
+            TimeUnit.SECONDS.toMillis(CLEANUP_SECONDS));
+
+    private final Cache<Long, Entry> games;
+    private final AtomicLong bytes = new AtomicLong();
+    private final ScheduledExecutorService cleanup;
+    private volatile GameRemovalListener removalListener;
+
+    /**
+     * @param maxBytes the memory the games may take in bytes
+     * @param idleMillis the time a game is kept without being used
+     * @param cleanupMillis the time between two clean ups of expired games
+     */
+    public GameRepository(final long maxBytes, final long idleMillis, final long cleanupMillis) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("invalid maximum of " + maxBytes + " bytes, must be at least 1");
+        }
+        if (idleMillis < 1 || cleanupMillis < 1) {
+            throw new IllegalArgumentException("invalid idle time " + idleMillis + "ms or clean up interval "
+                    + cleanupMillis + "ms, must be at least 1ms");
+        }
+
+        this.games = CacheBuilder.newBuilder()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<Long, Entry>() {
+                    @Override
+                    public int weigh(final Long id, final Entry entry) {
+                        return entry.bytes;
+                    }
+                })
+                .expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<Long, Entry>() {
+                    @Override
+                    public void onRemoval(final RemovalNotification<Long, Entry> notification) {
+                        GameRepository.this.bytes.addAndGet(-notification.getValue().bytes);
+                        // a game measured again by update is replaced by itself
+                        final GameRemovalListener listener = GameRepository.this.removalListener;
+                        if (listener != null && notification.getCause() != RemovalCause.REPLACED) {
+                            listener.gameRemoved(notification.getValue().game);
+                        }
+                    }
+                })
+                .recordStats()
+                .build();
+
+        this.cleanup = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("kalah-game-cleanup-%d")
+                .setDaemon(true)
+                .build());
+        this.cleanup.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                GameRepository.this.cleanUp();
+            }
+        }, cleanupMillis, cleanupMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the repository of the server, sized by the kalah.games system properties
+     */
+    public static GameRepository shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param listener told about the games removed or evicted from now on, null for none
+     */
+    public void setRemovalListener(final GameRemovalListener listener) {
+        this.removalListener = listener;
+    }
+
+    /**
+     * @param id the identifier of a game
+     * @return the game, or null if it does not exist or was evicted
+     */
+    public Kalah get(final long id) {
+        final Entry entry = this.games.getIfPresent(id);
+        return entry == null ? null : entry.game;
+    }
+
+    /**
+     * adds a game, replacing a game with the same id
+     * @param game the game to add
+     */
+    public void put(final Kalah game) {
+        final Entry entry = new Entry(game);
+        this.bytes.addAndGet(entry.bytes);
+        this.games.put(game.getId(), entry);
+    }
+
+    /**
+     * measures a game again after it was played, a computer player's search tree grows with the game.
+     * The game is only replaced when its size changed
+     * @param game a game of this repository
+     * @return false if the game is no longer in the repository
+     */
+    public boolean update(final Kalah game) {
+        // the map view does not count towards the hits and misses
+        final Entry current = this.games.asMap().get(game.getId());
+        if (current == null || current.game != game) {
+            return false;
+        }
+
+        final int bytes = estimateBytes(game);
+        if (bytes == current.bytes) {
+            return true;
+        }
+
+        final Entry entry = new Entry(game, bytes);
+        this.bytes.addAndGet(bytes);
+        if (!this.games.asMap().replace(game.getId(), current, entry)) {
+            // evicted or replaced meanwhile, the entry never made it in
+            this.bytes.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param id the identifier of the game to remove
+     */
+    public void remove(final long id) {
+        this.games.invalidate(id);
+    }
+
+    /**
+     * @return the games at the time of the call, listing them neither uses nor locks them
+     */
+    public List<Kalah> getGames() {
+        final List<Kalah> games = new ArrayList<>((int) Math.min(this.games.size(), Integer.MAX_VALUE));
+        for (Entry entry : this.games.asMap().values()) {
+            games.add(entry.game);
+        }
+        return games;
+    }
+
+    /**
+     * @return the amount of games
+     */
+    public long size() {
+        return this.games.size();
+    }
+
+    /**
+     * @return the estimated memory of the games in bytes
+     */
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    /**
+     * @return the hits, misses and evictions of the repository
+     */
+    public CacheStats stats() {
+        return this.games.stats();
+    }
+
+    /**
+     * evicts the expired games, done on a schedule by the repository itself
+     */
+    public void cleanUp() {
+        try {
+            this.games.cleanUp();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(this.size() + " games of about " + this.getBytes() + " bytes, " + this.stats());
+            }
+        } catch (RuntimeException exc) {
+            // an exception would cancel the schedule
+            LOGGER.log(Level.WARNING, "Cannot clean up the games", exc);
+        }
+    }
+
+    /**
+     * stops the scheduled clean up, the games are kept
+     */
+    public void close() {
+        this.cleanup.shutdownNow();
+    }
+
+    /**
+     * @param game the game to measure
+     * @return the estimated memory of the game in bytes
+     */
+    static int estimateBytes(final Kalah game) {
+        final int pits = game.getConfiguration().getPits();
+        long bytes = GAME_BYTES + 2L * pits * PIT_BYTES;
+        bytes += estimateSearchBytes(game.getPlayerOne(), pits) + estimateSearchBytes(game.getPlayerTwo(), pits);
+        bytes += game.estimateMoveBytes();
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static long estimateSearchBytes(final Player player, final int pits) {
+        // the other searches keep no state per game
+        if (player instanceof SearchPlayer && ((SearchPlayer) player).getEngine() instanceof MonteCarloSearch) {
+            final MonteCarloSearch search = (MonteCarloSearch) ((SearchPlayer) player).getEngine();
+            return (long) search.getTreeNodes() * (NODE_BYTES + pits * NODE_PIT_BYTES);
+        }
+        return 0;
+    }
+
+    /**
+     * a game with the memory it was accounted for
+     */
+    private static final class Entry {
+
+        private final Kalah game;
+        private final int bytes;
+
+        private Entry(final Kalah game) {
+            this(game, estimateBytes(game));
+        }
+
+        private Entry(final Kalah game, final int bytes) {
+            this.game = game;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.search.endgame.EndgameDatabase;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Iterative deepening alpha-beta search over copies of the board.
+ * The best move of a transposition table entry is searched first, followed by
+ * moves that give a free move and captures.
+ * Scores are store differences from the point of view of the side to move,
+ * finished games score WIN_SCORE on top of the difference.
+ * Boards the endgame database covers are not searched, they score as finished games with their exact result.
+ */
+public final class AlphaBetaSearch implements SearchEngine {
+
+    /**
+     * added to the score of a won game, larger than any store difference
+     */
+    public static final int WIN_SCORE = 1000000;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * the clock is only read every this many nodes
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final EndgameDatabase database;
+
+    /**
+     * creates a search that deepens until the time budget runs out,
+     * using the shared transposition table and endgame database
+     */
+    public AlphaBetaSearch() {
+        this(64, TranspositionTable.shared());
+    }
+
+    /**
+     * @param maxDepth the deepest depth to search to, in moves
+     * @param table the transposition table to use
+     */
+    public AlphaBetaSearch(final int maxDepth, final TranspositionTable table) {
+        this(maxDepth, table, EndgameDatabase.shared());
+    }
+
+    /**
+     * @param maxDepth the deepest depth to search to, in moves
+     * @param table the transposition table to use
+     * @param database the endgame database to look boards up in, or null
+     */
+    public AlphaBetaSearch(final int maxDepth, final TranspositionTable table, final EndgameDatabase database) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("invalid depth " + maxDepth + ", must be at least 1");
+        }
+        if (table == null) {
+            throw new IllegalArgumentException("Cannot search without a transposition table!");
+        }
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.database = database;
+    }
+
+    @Override
+    public SearchResult search(final Board board, final long timeBudgetMillis) {
+        if (board.isGameOver()) {
+            throw new IllegalArgumentException("Cannot search a finished game");
+        }
+
+        final long start = System.nanoTime();
+        this.table.newSearch();
+
+        return this.deepen(board, start, start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis), null, 0);
+    }
+
+    /**
+     * runs the iterative deepening loop, parallel searches run one loop per worker on the same table
+     * @param board the board to search
+     * @param start the System.nanoTime() the search started at
+     * @param deadline the System.nanoTime() the search has to stop at
+     * @param stop set by another worker to stop this one, or null
+     * @param worker the index of the worker, helpers start deeper and try moves in a different order
+     * @return the result of the deepest completed iteration
+     */
+    SearchResult deepen(final Board board, final long start, final long deadline, final AtomicBoolean stop,
+            final int worker) {
+        final Search search = new Search(this.table, this.database, deadline, stop, worker);
+
+        // always have a move, even if not a single depth completes in time
+        int bestPit = firstLegalPit(board);
+        int score = 0;
+        int depth = 0;
+        for (int d = 1 + (worker & 1); d <= this.maxDepth; d++) {
+            search.reachedHorizon = false;
+            final int[] result = search.root(board, d);
+            if (search.timedOut) {
+                break;
+            }
+
+            bestPit = result[0];
+            score = result[1];
+            depth = d;
+
+            // every line ended before the horizon, deeper searches would find the same
+            if (!search.reachedHorizon) {
+                break;
+            }
+        }
+
+        return new SearchResult(bestPit, score, depth, search.nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the transposition table used by this search
+     */
+    TranspositionTable getTable() {
+        return this.table;
+    }
+
+    private static int firstLegalPit(final Board board) {
+        for (int i = 0; i < board.getPits(); i++) {
+            if (board.isLegal(i)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("There are no legal moves");
+    }
+
+    /**
+     * plays every legal move, the specified first pit comes first,
+     * then the moves that give a free move and then captures
+     * @param board the board to expand
+     * @param pits receives the pit of every returned board
+     * @param firstPit the pit to search first, or -1
+     * @param rotation moves of the same kind are tried starting from this pit
+     * @return the boards after each legal move, indexed the same as the pits array
+     */
+    static Board[] children(final Board board, final int[] pits, final int firstPit, final int rotation) {
+        final Board[] played = new Board[board.getPits()];
+        int count = 0;
+        for (int i = 0; i < played.length; i++) {
+            if (board.isLegal(i)) {
+                played[i] = board.play(i);
+                count++;
+            }
+        }
+
+        final Board[] ordered = new Board[count];
+        int next = 0;
+        for (int pass = 0; pass < 4; pass++) {
+            for (int j = 0; j < played.length; j++) {
+                final int i = (j + rotation) % played.length;
+                final Board child = played[i];
+                if (child != null && (i == firstPit ? 0 : priority(child)) == pass) {
+                    pits[next] = i;
+                    ordered[next++] = child;
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private static int priority(final Board child) {
+        return child.isFreeMove() ? 1 : child.isCapture() ? 2 : 3;
+    }
+
+    /**
+     * @param board the board to score
+     * @return the store difference from the point of view of the side to move
+     */
+    static int evaluate(final Board board) {
+        final int side = board.getSideToMove();
+        final int difference = board.getStore(side) - board.getStore(1 - side);
+        if (!board.isGameOver()) {
+            return difference;
+        }
+
+        return decided(difference);
+    }
+
+    /**
+     * @param board the board to score
+     * @param rest the stones the side to move gains on its opponent from here on
+     * @return the score of the finished game from the point of view of the side to move
+     */
+    static int evaluate(final Board board, final int rest) {
+        final int side = board.getSideToMove();
+        return decided(board.getStore(side) - board.getStore(1 - side) + rest);
+    }
+
+    private static int decided(final int difference) {
+        return difference > 0 ? WIN_SCORE + difference : difference < 0 ? -WIN_SCORE + difference : 0;
+    }
+
+    /**
+     * state of a single search
+     */
+    private static final class Search {
+
+        private final TranspositionTable table;
+        private final EndgameDatabase database;
+        private final long deadline;
+        private final AtomicBoolean stop;
+        private final int rotation;
+
+        private long nodes;
+        private boolean timedOut;
+        private boolean reachedHorizon;
+
+        private Search(final TranspositionTable table, final EndgameDatabase database, final long deadline,
+                final AtomicBoolean stop, final int rotation) {
+            this.table = table;
+            this.database = database;
+            this.deadline = deadline;
+            this.stop = stop;
+            this.rotation = rotation;
+        }
+
+        /**
+         * @return the best pit and its score
+         */
+        private int[] root(final Board board, final int depth) {
+            // the previous iteration left its best move in the table
+            final long entry = this.table.probe(board.getHash());
+            final int[] pits = new int[board.getPits()];
+            final Board[] children = children(board, pits, entry != 0 ? TranspositionTable.bestPit(entry) : -1,
+                    this.rotation);
+
+            int bestPit = pits[0];
+            int alpha = -INFINITY;
+            for (int i = 0; i < children.length; i++) {
+                final int score = this.score(board, children[i], depth - 1, alpha, INFINITY);
+                if (this.timedOut) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestPit = pits[i];
+                }
+            }
+
+            if (!this.timedOut) {
+                this.table.store(board.getHash(), depth, alpha, TranspositionTable.EXACT, bestPit);
+            }
+            return new int[] {bestPit, alpha};
+        }
+
+        /**
+         * scores a child from the point of view of its parent's side to move
+         */
+        private int score(final Board parent, final Board child, final int depth, final int alpha, final int beta) {
+            // after a free move the same side moves again, otherwise the window flips
+            return child.getSideToMove() == parent.getSideToMove()
+                    ? this.negamax(child, depth, alpha, beta)
+                    : -this.negamax(child, depth, -beta, -alpha);
+        }
+
+        private int negamax(final Board board, final int depth, int alpha, int beta) {
+            if (++this.nodes % CLOCK_INTERVAL == 0
+                    && (System.nanoTime() > this.deadline || (this.stop != null && this.stop.get()))) {
+                this.timedOut = true;
+            }
+            if (this.timedOut) {
+                return 0;
+            }
+
+            if (board.isGameOver()) {
+                return evaluate(board);
+            }
+            if (this.database != null) {
+                final int rest = this.database.probe(board);
+                if (rest != EndgameDatabase.NOT_FOUND) {
+                    return evaluate(board, rest);
+                }
+            }
+            if (depth == 0) {
+                this.reachedHorizon = true;
+                return evaluate(board);
+            }
+
+            final long hash = board.getHash();
+            final long entry = this.table.probe(hash);
+            int firstPit = -1;
+            if (entry != 0) {
+                firstPit = TranspositionTable.bestPit(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    final int stored = TranspositionTable.score(entry);
+                    final int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT) {
+                        return this.fromTable(stored);
+                    } else if (bound == TranspositionTable.LOWER_BOUND) {
+                        alpha = Math.max(alpha, stored);
+                    } else {
+                        beta = Math.min(beta, stored);
+                    }
+                    if (alpha >= beta) {
+                        return this.fromTable(stored);
+                    }
+                }
+            }
+
+            final int originalAlpha = alpha;
+            final int[] pits = new int[board.getPits()];
+            final Board[] children = children(board, pits, firstPit, this.rotation);
+
+            int best = -INFINITY;
+            int bestPit = -1;
+            for (int i = 0; i < children.length; i++) {
+                final int score = this.score(board, children[i], depth - 1, alpha, beta);
+                if (score > best) {
+                    best = score;
+                    bestPit = pits[i];
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (!this.timedOut) {
+                final int bound = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                        : best >= beta ? TranspositionTable.LOWER_BOUND
+                        : TranspositionTable.EXACT;
+                this.table.store(hash, depth, best, bound, bestPit);
+            }
+            return best;
+        }
+
+        /**
+         * a stored score may hide lines that stopped at the horizon, unless the game was decided
+         */
+        private int fromTable(final int score) {
+            if (Math.abs(score) < WIN_SCORE) {
+                this.reachedHorizon = true;
+            }
+            return score;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.mehinovic.kalah.game.search;
+
+import com.google.common.collect.Lists;
+import com.mehinovic.kalah.game.board.Board;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Monte Carlo tree search for boards too large to search full width.
+ * The calling thread and a number of helpers from a fork/join pool grow one tree, picking children by UCT
+ * and finishing every line with random moves. Visits and rewards are updated lock free, a thread counts its
+ * visit when it walks down so the line looks lost to the other threads until its playout is done (virtual loss).
+ * The tree is kept between searches, when the board to search was reached from the previous one the matching
+ * subtree becomes the new root, so an instance should only be used for the moves of a single game.
+ * The nodes of a result are the amount of playouts.
+ */
+public final class MonteCarloSearch implements SearchEngine {
+
+    /**
+     * UCT exploration constant for rewards between 0 and 1
+     */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /**
+     * a leaf is expanded once it has been visited this many times
+     */
+    private static final int EXPAND_VISITS = 2;
+
+    /**
+     * the largest amount of moves between two searches for the tree to be reused
+     */
+    private static final int REUSE_PLIES = 4;
+
+    /**
+     * reward of a playout for the side that moved into a node, a draw is worth half
+     */
+    private static final int WIN = 2;
+    private static final int DRAW = 1;
+
+    private final int threads;
+    private final int maxNodes;
+    private final ForkJoinPool pool;
+
+    private Node root;
+
+    /**
+     * the amount of nodes in the tree kept for the next search
+     */
+    private volatile int treeNodes;
+
+    /**
+     * creates a search on the shared helper pool
+     * @param threads the largest amount of threads a single search may use, the calling thread included
+     */
+    public MonteCarloSearch(final int threads) {
+        this(threads, 1 << 20, ParallelSearch.POOL);
+    }
+
+    /**
+     * @param threads the largest amount of threads a single search may use, the calling thread included
+     * @param maxNodes the largest amount of nodes the tree may grow to, leaves are no longer expanded after that
+     * @param pool the pool the helpers run in
+     */
+    public MonteCarloSearch(final int threads, final int maxNodes, final ForkJoinPool pool) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid amount of threads " + threads + ", must be at least 1");
+        }
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("invalid amount of nodes " + maxNodes + ", must be at least 1");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("Cannot create a monte carlo search without a pool!");
+        }
+
+        this.threads = threads;
+        this.maxNodes = maxNodes;
+        this.pool = pool;
+    }
+
+    @Override
+    public synchronized SearchResult search(final Board board, final long timeBudgetMillis) {
+        if (board.isGameOver()) {
+            throw new IllegalArgumentException("Cannot search a finished game");
+        }
+
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+
+        final Node reused = find(this.root, board);
+        final Tree tree = reused != null
+                ? new Tree(reused, count(reused), this.maxNodes)
+                : new Tree(new Node(board, -1, -1), 1, this.maxNodes);
+        this.root = tree.root;
+
+        final List<ForkJoinTask<Worker>> helpers = Lists.newArrayListWithCapacity(this.threads - 1);
+        for (int i = 1; i < this.threads; i++) {
+            helpers.add(this.pool.submit(new Helper(tree, deadline)));
+        }
+
+        final Worker main = new Worker(tree, deadline);
+        main.run();
+
+        long playouts = main.playouts;
+        int depth = main.depth;
+        for (ForkJoinTask<Worker> helper : helpers) {
+            final Worker worker = helper.join();
+            playouts += worker.playouts;
+            depth = Math.max(depth, worker.depth);
+        }
+
+        // the most visited move is the one the search trusts most
+        Node best = null;
+        for (Node child : tree.root.expand(tree)) {
+            if (best == null || child.visits > best.visits) {
+                best = child;
+            }
+        }
+        this.treeNodes = tree.nodes;
+
+        final int score = best.visits == 0 ? 0 : (int) (1000 * best.reward / best.visits) - 1000;
+        return new SearchResult(best.pit, score, depth, playouts, System.nanoTime() - start, helpers.size() + 1);
+    }
+
+    /**
+     * @return the largest amount of threads a single search may use
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * @return the amount of nodes in the tree kept for the next search, 0 before the first search
+     */
+    public int getTreeNodes() {
+        return this.treeNodes;
+    }
+
+    /**
+     * @return the node of the board within a few moves of the root, or null
+     */
+    private static Node find(final Node root, final Board board) {
+        if (root == null) {
+            return null;
+        }
+
+        List<Node> level = Lists.newArrayList(root);
+        for (int ply = 0; ply <= REUSE_PLIES && !level.isEmpty(); ply++) {
+            final List<Node> next = Lists.newArrayList();
+            for (Node node : level) {
+                if (node.board.getHash() == board.getHash() && node.board.getPits() == board.getPits()) {
+                    return node;
+                }
+                final Node[] children = node.children;
+                if (children != null) {
+                    next.addAll(Arrays.asList(children));
+                }
+            }
+            level = next;
+        }
+        return null;
+    }
+
+    private static int count(final Node root) {
+        int count = 0;
+        final Deque<Node> open = new ArrayDeque<Node>();
+        open.push(root);
+        while (!open.isEmpty()) {
+            final Node node = open.pop();
+            count++;
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    open.push(child);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the side that won a random game from the board, or -1 on a draw
+     */
+    private static int playout(Board board, final Random random) {
+        while (!board.isGameOver()) {
+            int pit = random.nextInt(board.getPits());
+            while (!board.isLegal(pit)) {
+                pit = (pit + 1) % board.getPits();
+            }
+            board = board.play(pit);
+        }
+
+        final int one = board.getStore(Board.PLAYER_ONE);
+        final int two = board.getStore(Board.PLAYER_TWO);
+        return one > two ? Board.PLAYER_ONE : two > one ? Board.PLAYER_TWO : -1;
+    }
+
+    /**
+     * the tree of a search and its size
+     */
+    private static final class Tree {
+
+        private static final AtomicIntegerFieldUpdater<Tree> NODES =
+                AtomicIntegerFieldUpdater.newUpdater(Tree.class, "nodes");
+
+        private final Node root;
+        private final int maxNodes;
+        private volatile int nodes;
+
+        private Tree(final Node root, final int nodes, final int maxNodes) {
+            this.root = root;
+            this.nodes = nodes;
+            this.maxNodes = maxNodes;
+        }
+    }
+
+    /**
+     * a board in the tree, visits and rewards are counted for the side that played the move into it
+     */
+    private static final class Node {
+
+        private static final AtomicIntegerFieldUpdater<Node> VISITS =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        private static final AtomicLongFieldUpdater<Node> REWARD =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "reward");
+        private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        private final Board board;
+        private final int pit;
+        private final int mover;
+
+        private volatile int visits;
+        private volatile long reward;
+        private volatile Node[] children;
+
+        private Node(final Board board, final int pit, final int mover) {
+            this.board = board;
+            this.pit = pit;
+            this.mover = mover;
+        }
+
+        /**
+         * @return the children of this node, created by whichever thread gets here first
+         */
+        private Node[] expand(final Tree tree) {
+            final Node[] existing = this.children;
+            if (existing != null) {
+                return existing;
+            }
+
+            final List<Node> created = Lists.newArrayListWithCapacity(this.board.getPits());
+            for (int pit = 0; pit < this.board.getPits(); pit++) {
+                if (this.board.isLegal(pit)) {
+                    created.add(new Node(this.board.play(pit), pit, this.board.getSideToMove()));
+                }
+            }
+            final Node[] expanded = created.toArray(new Node[created.size()]);
+            if (CHILDREN.compareAndSet(this, null, expanded)) {
+                Tree.NODES.addAndGet(tree, expanded.length);
+                return expanded;
+            }
+            return this.children;
+        }
+
+        /**
+         * @return the child with the highest upper confidence bound
+         */
+        private Node select(final Node[] children, final int offset) {
+            final double logVisits = Math.log(Math.max(1, this.visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < children.length; i++) {
+                final Node child = children[(i + offset) % children.length];
+                final int childVisits = child.visits;
+                if (childVisits == 0) {
+                    return child;
+                }
+
+                final double value = child.reward / (double) (WIN * childVisits)
+                        + EXPLORATION * Math.sqrt(logVisits / childVisits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * runs playouts on the tree until the deadline
+     */
+    private static final class Worker {
+
+        private final Tree tree;
+        private final long deadline;
+        private final Random random = ThreadLocalRandom.current();
+
+        private Node[] path = new Node[64];
+        private long playouts;
+        private int depth;
+
+        private Worker(final Tree tree, final long deadline) {
+            this.tree = tree;
+            this.deadline = deadline;
+        }
+
+        private void run() {
+            // spread threads over the unvisited children
+            final int offset = this.random.nextInt(64);
+            do {
+                this.iterate(offset);
+            } while (System.nanoTime() < this.deadline);
+        }
+
+        private void iterate(final int offset) {
+            Node node = this.tree.root;
+            Node.VISITS.incrementAndGet(node);
+
+            int length = 0;
+            while (!node.board.isGameOver()) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node != this.tree.root
+                            && (node.visits < EXPAND_VISITS || this.tree.nodes >= this.tree.maxNodes)) {
+                        break;
+                    }
+                    children = node.expand(this.tree);
+                }
+
+                node = node.select(children, offset);
+                Node.VISITS.incrementAndGet(node);
+                if (length == this.path.length) {
+                    this.path = Arrays.copyOf(this.path, 2 * length);
+                }
+                this.path[length++] = node;
+            }
+
+            final int winner = MonteCarloSearch.playout(node.board, this.random);
+            for (int i = 0; i < length; i++) {
+                final Node visited = this.path[i];
+                if (winner == -1 || winner == visited.mover) {
+                    Node.REWARD.addAndGet(visited, winner == -1 ? DRAW : WIN);
+                }
+            }
+
+            this.playouts++;
+            this.depth = Math.max(this.depth, length);
+        }
+    }
+
+    /**
+     * a helper running playouts on the same tree
+     */
+    private static final class Helper extends RecursiveTask<Worker> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Tree tree;
+        private final long deadline;
+
+        private Helper(final Tree tree, final long deadline) {
+            this.tree = tree;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Worker compute() {
+            final Worker worker = new Worker(this.tree, this.deadline);
+            worker.run();
+            return worker;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mehinovic.kalah.game.search;
+
+import com.google.common.collect.Lists;
+import com.mehinovic.kalah.game.board.Board;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lazy SMP search, the calling thread and a number of helpers from a fork/join pool
+ * run the same iterative deepening alpha-beta search and share what they find through
+ * the transposition table. Helpers start one depth deeper every other worker and try moves
+ * in a different order so they fill the table with lines the main search needs next.
+ * The deepest completed result wins, the calling thread's result on a tie.
+ */
+public final class ParallelSearch implements SearchEngine {
+
+    /**
+     * pool shared by the helpers of all parallel and monte carlo searches, one thread per core
+     */
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final int threads;
+    private final AlphaBetaSearch search;
+    private final ForkJoinPool pool;
+
+    /**
+     * creates a search on the shared transposition table and helper pool
+     * @param threads the largest amount of threads a single search may use, the calling thread included
+     */
+    public ParallelSearch(final int threads) {
+        this(threads, new AlphaBetaSearch(), POOL);
+    }
+
+    /**
+     * @param threads the largest amount of threads a single search may use, the calling thread included
+     * @param search the search every worker runs, its table is shared by the workers
+     * @param pool the pool the helpers run in
+     */
+    public ParallelSearch(final int threads, final AlphaBetaSearch search, final ForkJoinPool pool) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid amount of threads " + threads + ", must be at least 1");
+        }
+        if (search == null || pool == null) {
+            throw new IllegalArgumentException("Cannot create a parallel search without a search and a pool!");
+        }
+
+        this.threads = threads;
+        this.search = search;
+        this.pool = pool;
+    }
+
+    @Override
+    public SearchResult search(final Board board, final long timeBudgetMillis) {
+        if (board.isGameOver()) {
+            throw new IllegalArgumentException("Cannot search a finished game");
+        }
+
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        final AtomicBoolean stop = new AtomicBoolean();
+        this.search.getTable().newSearch();
+
+        final List<ForkJoinTask<SearchResult>> helpers = Lists.newArrayListWithCapacity(this.threads - 1);
+        for (int worker = 1; worker < this.threads; worker++) {
+            helpers.add(this.pool.submit(new Helper(board, start, deadline, stop, worker)));
+        }
+
+        SearchResult best = this.search.deepen(board, start, deadline, stop, 0);
+
+        // the main search is done, the helpers only served it
+        stop.set(true);
+        long nodes = best.getNodes();
+        for (ForkJoinTask<SearchResult> helper : helpers) {
+            final SearchResult result = helper.join();
+            nodes += result.getNodes();
+            if (result.getDepth() > best.getDepth()) {
+                best = result;
+            }
+        }
+
+        return new SearchResult(best.getBestPit(), best.getScore(), best.getDepth(), nodes,
+                System.nanoTime() - start, helpers.size() + 1);
+    }
+
+    /**
+     * @return the largest amount of threads a single search may use
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * a helper running its own iterative deepening loop
+     */
+    private final class Helper extends RecursiveTask<SearchResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final long start;
+        private final long deadline;
+        private final AtomicBoolean stop;
+        private final int worker;
+
+        private Helper(final Board board, final long start, final long deadline, final AtomicBoolean stop,
+                final int worker) {
+            this.board = board;
+            this.start = start;
+            this.deadline = deadline;
+            this.stop = stop;
+            this.worker = worker;
+        }
+
+        @Override
+        protected SearchResult compute() {
+            // a helper that starts after the main search finished has nothing to do
+            if (this.stop.get()) {
+                return new SearchResult(-1, 0, 0, 0, 0);
+            }
+            return ParallelSearch.this.search.deepen(this.board, this.start, this.deadline, this.stop, this.worker);
+        }
+    }
+}
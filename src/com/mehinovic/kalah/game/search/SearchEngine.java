@@ -0,0 +1,17 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.board.Board;
+
+/**
+ * Finds a move for the side to move of a board
+ */
+public interface SearchEngine {
+
+    /**
+     * searches the best move within the specified time budget
+     * @param board the board to search, the game on it may not have ended
+     * @param timeBudgetMillis the time the search may take in milliseconds
+     * @return a non-null result holding a legal move
+     */
+    public SearchResult search(final Board board, final long timeBudgetMillis);
+}
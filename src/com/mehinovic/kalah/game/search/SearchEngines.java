@@ -0,0 +1,45 @@
+package com.mehinovic.kalah.game.search;
+
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.search.book.BookSearch;
+import com.mehinovic.kalah.game.search.book.OpeningBook;
+
+/**
+ * The searches of the computer player
+ */
+public final class SearchEngines {
+
+    /**
+     * the largest amount of threads the computer player may search a move with
+     */
+    public static final int THREADS = 4;
+
+    /**
+     * boards with more pits than this are too wide for alpha-beta, the computer plays them with a monte carlo search
+     */
+    public static final int MONTE_CARLO_PITS = 12;
+
+    /**
+     * plays from the opening book while the game is in it, searches keep no state so all games share one
+     */
+    private static final SearchEngine SHARED = new BookSearch(OpeningBook.shared(), new ParallelSearch(THREADS));
+
+    private SearchEngines() {
+    }
+
+    /**
+     * stops the helper threads shared by the searches once the running searches are done,
+     * when the web application is stopped. A search started afterwards fails
+     */
+    public static void shutdown() {
+        ParallelSearch.POOL.shutdown();
+    }
+
+    /**
+     * @param configuration the configuration of the game
+     * @return the search for the computer player of a new game, the monte carlo tree is kept per game
+     */
+    public static SearchEngine forBoard(final KalahConfiguration configuration) {
+        return configuration.getPits() > MONTE_CARLO_PITS ? new MonteCarloSearch(THREADS) : SHARED;
+    }
+}
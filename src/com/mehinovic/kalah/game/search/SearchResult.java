@@ -0,0 +1,113 @@
+package com.mehinovic.kalah.game.search;
+
+/**
+ * Outcome of a search
+ */
+public final class SearchResult {
+
+    private final int bestPit;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedNanos;
+    private final int threads;
+
+    /**
+     * @param bestPit the pit to play
+     * @param score the score of the best move from the point of view of the side to move
+     * @param depth the deepest completed search depth
+     * @param nodes the amount of positions visited
+     * @param elapsedNanos the time the search took
+     */
+    public SearchResult(final int bestPit, final int score, final int depth, final long nodes,
+            final long elapsedNanos) {
+        this(bestPit, score, depth, nodes, elapsedNanos, 1);
+    }
+
+    /**
+     * @param bestPit the pit to play
+     * @param score the score of the best move from the point of view of the side to move
+     * @param depth the deepest completed search depth
+     * @param nodes the amount of positions visited
+     * @param elapsedNanos the time the search took
+     * @param threads the amount of threads that searched
+     */
+    public SearchResult(final int bestPit, final int score, final int depth, final long nodes,
+            final long elapsedNanos, final int threads) {
+        this.bestPit = bestPit;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+        this.threads = threads;
+    }
+
+    /**
+     * @return the pit to play
+     */
+    public int getBestPit() {
+        return this.bestPit;
+    }
+
+    /**
+     * @return the score of the best move from the point of view of the side to move
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * @return the deepest completed search depth
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * @return the amount of positions visited
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * @return the time the search took in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * @return the amount of positions visited per second
+     */
+    public long getNodesPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.nodes * 1000000000L / this.elapsedNanos;
+    }
+
+    /**
+     * @return the amount of threads that searched
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * @return the amount of positions visited per second by a single thread,
+     * to compare searches that ran on a different amount of threads
+     */
+    public long getNodesPerSecondPerThread() {
+        return this.getNodesPerSecond() / this.threads;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{"
+                + "bestPit=" + this.bestPit
+                + ", score=" + this.score
+                + ", depth=" + this.depth
+                + ", nodes=" + this.nodes
+                + ", nodesPerSecond=" + this.getNodesPerSecond()
+                + ", threads=" + this.threads
+                + '}';
+    }
+}
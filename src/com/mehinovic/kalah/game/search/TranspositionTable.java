@@ -0,0 +1,165 @@
+package com.mehinovic.kalah.game.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size table of search results keyed by board hash, backed by a single long array.
+ * Every bucket holds two entries, one that is only replaced by deeper or newer results and one that is always replaced.
+ * An entry is stored as its data and the xor of its hash and data, a reader that races a writer sees a
+ * mismatching hash and treats the entry as missing, so no locks are needed.
+ * One table is shared by every search of the JVM so memory stays bounded however many games are searched,
+ * its size is set with the kalah.search.tt.mb system property.
+ */
+public final class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    /**
+     * system property holding the size of the shared table in megabytes
+     */
+    public static final String SIZE_PROPERTY = "kalah.search.tt.mb";
+    private static final int DEFAULT_MEGABYTES = 32;
+
+    private static final TranspositionTable SHARED =
+            new TranspositionTable(Integer.getInteger(SIZE_PROPERTY, DEFAULT_MEGABYTES) * 1024L * 1024L);
+
+    /**
+     * longs per bucket, two entries of a checked hash and data
+     */
+    private static final int BUCKET_LONGS = 4;
+
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int PIT_SHIFT = 42;
+    private static final int GENERATION_SHIFT = 50;
+    private static final long VALID = 1L << 63;
+
+    private final long[] table;
+    private final int bucketMask;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * @param bytes the largest amount of memory the table may take, rounded down to a power of two buckets
+     */
+    public TranspositionTable(final long bytes) {
+        final long buckets = Math.max(1, bytes / (BUCKET_LONGS * 8));
+        final int size = (int) Math.min(Long.highestOneBit(buckets), 1 << 26);
+        this.table = new long[size * BUCKET_LONGS];
+        this.bucketMask = size - 1;
+    }
+
+    /**
+     * @return the table shared by all searches of this JVM
+     */
+    public static TranspositionTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * marks the start of a new search, entries of older searches are replaced first
+     */
+    public void newSearch() {
+        this.generation.incrementAndGet();
+    }
+
+    /**
+     * @param hash the hash of the board
+     * @return the entry data for the board, or 0 if there is none
+     */
+    public long probe(final long hash) {
+        final int base = this.bucket(hash);
+        for (int slot = base; slot < base + BUCKET_LONGS; slot += 2) {
+            final long data = this.table[slot + 1];
+            if (data != 0 && (this.table[slot] ^ data) == hash) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * stores a search result
+     * @param hash the hash of the board
+     * @param depth the depth the board was searched to
+     * @param score the score of the board
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param bestPit the best pit found, or -1
+     */
+    public void store(final long hash, final int depth, final int score, final int bound, final int bestPit) {
+        final int currentGeneration = this.generation.get() & 0xFF;
+        final long data = VALID
+                | (score & 0xFFFFFFFFL)
+                | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) (bestPit + 1) << PIT_SHIFT)
+                | ((long) currentGeneration << GENERATION_SHIFT);
+
+        final int base = this.bucket(hash);
+        final long kept = this.table[base + 1];
+        final boolean replaceKept = kept == 0
+                || (this.table[base] ^ kept) == hash
+                || generation(kept) != currentGeneration
+                || depth >= depth(kept);
+
+        final int slot = replaceKept ? base : base + 2;
+        this.table[slot + 1] = data;
+        this.table[slot] = hash ^ data;
+    }
+
+    /**
+     * forgets all entries
+     */
+    public void clear() {
+        Arrays.fill(this.table, 0);
+    }
+
+    /**
+     * @return the memory taken by the table
+     */
+    public long getSizeInBytes() {
+        return this.table.length * 8L;
+    }
+
+    private int bucket(final long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & this.bucketMask) * BUCKET_LONGS;
+    }
+
+    /**
+     * @param data an entry returned by probe
+     * @return the stored score
+     */
+    public static int score(final long data) {
+        return (int) data;
+    }
+
+    /**
+     * @param data an entry returned by probe
+     * @return the depth the board was searched to
+     */
+    public static int depth(final long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * @param data an entry returned by probe
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int bound(final long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * @param data an entry returned by probe
+     * @return the best pit, or -1
+     */
+    public static int bestPit(final long data) {
+        return ((int) (data >>> PIT_SHIFT) & 0xFF) - 1;
+    }
+
+    private static int generation(final long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mehinovic.kalah.game.search.book;
+
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.search.SearchEngine;
+import com.mehinovic.kalah.game.search.SearchResult;
+
+/**
+ * Plays the moves of an opening book and searches once the game leaves the book
+ */
+public final class BookSearch implements SearchEngine {
+
+    private final OpeningBook book;
+    private final SearchEngine search;
+
+    /**
+     * @param book the book to play from, or null to always search
+     * @param search the search to use for boards that are not in the book
+     */
+    public BookSearch(final OpeningBook book, final SearchEngine search) {
+        if (search == null) {
+            throw new IllegalArgumentException("Cannot play without a search!");
+        }
+        this.book = book;
+        this.search = search;
+    }
+
+    @Override
+    public SearchResult search(final Board board, final long timeBudgetMillis) {
+        if (this.book != null) {
+            final long start = System.nanoTime();
+            final long data = this.book.probe(board);
+            if (data != 0 && board.isLegal(OpeningBook.bestPit(data))) {
+                return new SearchResult(OpeningBook.bestPit(data), OpeningBook.score(data), OpeningBook.depth(data),
+                        0, System.nanoTime() - start);
+            }
+        }
+        return this.search.search(board, timeBudgetMillis);
+    }
+}
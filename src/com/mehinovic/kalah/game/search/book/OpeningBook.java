@@ -0,0 +1,169 @@
+package com.mehinovic.kalah.game.search.book;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Best moves of the opening positions, as found by deep searches of the OpeningBookBuilder.
+ * The file holds entries of a board hash and its data sorted by hash, it is memory mapped read only
+ * and looked up by binary search, so a lookup neither allocates nor copies the file onto the heap.
+ * The book of the JVM is opened from the file named by the kalah.book system property.
+ */
+public final class OpeningBook {
+
+    /**
+     * system property holding the path of the book file
+     */
+    public static final String PATH_PROPERTY = "kalah.book";
+
+    static final int MAGIC = 0x4B424F4B;
+    static final int VERSION = 1;
+
+    /**
+     * magic, version and the amount of entries
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * a hash and its data
+     */
+    static final int ENTRY_SIZE = 16;
+
+    private static final int DEPTH_SHIFT = 8;
+    private static final int SCORE_SHIFT = 32;
+
+    private static final Logger LOGGER = Logger.getLogger(OpeningBook.class.getName());
+
+    private static final OpeningBook SHARED = openShared();
+
+    private final MappedByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(final MappedByteBuffer entries, final int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * @return the book named by the kalah.book system property, or null if there is none
+     */
+    public static OpeningBook shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param file a book written by the OpeningBookBuilder
+     * @return the mapped book
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // reads the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not an opening book");
+            }
+
+            final long size = header.getLong();
+            if (size < 0 || channel.size() != HEADER_SIZE + size * ENTRY_SIZE
+                    || size * ENTRY_SIZE > Integer.MAX_VALUE) {
+                throw new IOException(file + " does not hold " + size + " entries");
+            }
+
+            // the mapping stays valid after the channel is closed
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size * ENTRY_SIZE),
+                    (int) size);
+        }
+    }
+
+    private static OpeningBook openShared() {
+        final String path = System.getProperty(PATH_PROPERTY);
+        if (path == null) {
+            return null;
+        }
+
+        final Path file = Paths.get(path);
+        if (!Files.isReadable(file)) {
+            LOGGER.warning("Opening book " + file + " does not exist, searching every move");
+            return null;
+        }
+        try {
+            return open(file);
+        } catch (IOException exc) {
+            LOGGER.log(Level.WARNING, "Cannot open opening book " + file + ", searching every move", exc);
+            return null;
+        }
+    }
+
+    /**
+     * @return the amount of positions in the book
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param board a board
+     * @return the entry data of the board, or 0 if the book does not hold it
+     */
+    public long probe(final Board board) {
+        final long hash = board.getHash();
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final long found = this.entries.getLong(middle * ENTRY_SIZE);
+            if (found < hash) {
+                low = middle + 1;
+            } else if (found > hash) {
+                high = middle - 1;
+            } else {
+                return this.entries.getLong(middle * ENTRY_SIZE + 8);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the entry data of a searched position, never 0
+     */
+    static long data(final int bestPit, final int depth, final int score) {
+        return (long) score << SCORE_SHIFT | (depth & 0xFFL) << DEPTH_SHIFT | bestPit & 0xFFL;
+    }
+
+    /**
+     * @param data the entry data
+     * @return the pit to play
+     */
+    public static int bestPit(final long data) {
+        return (int) (data & 0xFF);
+    }
+
+    /**
+     * @param data the entry data
+     * @return the depth the position was searched to
+     */
+    public static int depth(final long data) {
+        return (int) (data >>> DEPTH_SHIFT & 0xFF);
+    }
+
+    /**
+     * @param data the entry data
+     * @return the score of the best move from the point of view of the side to move
+     */
+    public static int score(final long data) {
+        return (int) (data >> SCORE_SHIFT);
+    }
+}
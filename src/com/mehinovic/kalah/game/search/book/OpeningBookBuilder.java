@@ -0,0 +1,126 @@
+package com.mehinovic.kalah.game.search.book;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.search.AlphaBetaSearch;
+import com.mehinovic.kalah.game.search.ParallelSearch;
+import com.mehinovic.kalah.game.search.SearchResult;
+import com.mehinovic.kalah.game.search.TranspositionTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds an opening book offline, run with
+ * <pre>java com.mehinovic.kalah.game.search.book.OpeningBookBuilder file plies depth threads pitsxstones...</pre>
+ * Every position reachable within the amount of plies from the start of each configuration is searched
+ * to the depth and its best move is written to the book. A ply is a single move, free moves included.
+ */
+public final class OpeningBookBuilder {
+
+    /**
+     * the book is built offline, searches are limited by depth only
+     */
+    private static final long SEARCH_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final int plies;
+    private final ParallelSearch search;
+    private final ForkJoinPool pool;
+    private final Map<Long, Long> entries = Maps.newHashMap();
+
+    /**
+     * @param plies the amount of moves from the start to store positions for
+     * @param depth the depth to search every position to
+     * @param threads the amount of threads a single search may use
+     */
+    public OpeningBookBuilder(final int plies, final int depth, final int threads) {
+        if (plies < 0) {
+            throw new IllegalArgumentException("invalid amount of plies " + plies);
+        }
+        this.plies = plies;
+        this.pool = new ForkJoinPool(threads);
+        this.search = new ParallelSearch(threads, new AlphaBetaSearch(depth, new TranspositionTable(256L << 20)),
+                this.pool);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("usage: OpeningBookBuilder file plies depth threads pitsxstones...");
+            System.exit(1);
+        }
+
+        final OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        final long start = System.nanoTime();
+        for (int i = 4; i < args.length; i++) {
+            final String[] configuration = args[i].split("x");
+            builder.add(Integer.parseInt(configuration[0]), Integer.parseInt(configuration[1]));
+        }
+        builder.write(Paths.get(args[0]));
+        System.out.println(builder.entries.size() + " positions searched in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * searches the opening positions of a configuration
+     * @param pits the amount of pits per player
+     * @param stones the amount of stones per pit at the start
+     */
+    public void add(final int pits, final int stones) {
+        List<Board> boards = Lists.newArrayList(Board.initial(pits, stones));
+        for (int ply = 0; ply <= this.plies && !boards.isEmpty(); ply++) {
+            final List<Board> next = Lists.newArrayList();
+            for (Board board : boards) {
+                if (board.isGameOver() || this.entries.containsKey(board.getHash())) {
+                    continue;
+                }
+
+                final SearchResult result = this.search.search(board, SEARCH_MILLIS);
+                this.entries.put(board.getHash(),
+                        OpeningBook.data(result.getBestPit(), result.getDepth(), result.getScore()));
+                for (int pit = 0; pit < pits; pit++) {
+                    if (board.isLegal(pit)) {
+                        next.add(board.play(pit));
+                    }
+                }
+            }
+            boards = next;
+        }
+    }
+
+    /**
+     * writes the book of every added configuration
+     * @param file the file to write the book to
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final Path file) throws IOException {
+        final long[] hashes = Longs.toArray(this.entries.keySet());
+        Arrays.sort(hashes);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_SIZE + hashes.length * OpeningBook.ENTRY_SIZE);
+        buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(hashes.length);
+        for (long hash : hashes) {
+            buffer.putLong(hash).putLong(this.entries.get(hash));
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            this.pool.shutdown();
+        }
+    }
+}
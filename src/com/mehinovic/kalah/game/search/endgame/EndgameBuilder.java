@@ -0,0 +1,204 @@
+package com.mehinovic.kalah.game.search.endgame;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds an endgame database by retrograde analysis, run offline with
+ * <pre>java com.mehinovic.kalah.game.search.endgame.EndgameBuilder pits maxStones file [threads]</pre>
+ * Positions are solved from the fewest stones up. A move either takes stones off the pits into a store,
+ * so its position has fewer stones and is solved already, or only sows towards the mover's store,
+ * which raises the potential, the sum of the stones weighted by their pit number plus one.
+ * Positions of one amount of stones are therefore solved by falling potential, and all positions
+ * of the same amount of stones and potential are solved in parallel.
+ */
+public final class EndgameBuilder {
+
+    /**
+     * positions a single task solves before the work is split
+     */
+    private static final int BATCH = 4096;
+
+    private final PositionIndex index;
+    private final ForkJoinPool pool;
+    private final byte[] values;
+
+    /**
+     * @param pits the amount of pits per player
+     * @param maxStones the largest amount of stones left in the pits to solve positions for
+     * @param threads the amount of threads to solve with
+     */
+    public EndgameBuilder(final int pits, final int maxStones, final int threads) {
+        if (pits < 1 || maxStones < 0 || maxStones > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid database of " + pits + " pits and " + maxStones + " stones");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid amount of threads " + threads + ", must be at least 1");
+        }
+
+        this.index = new PositionIndex(pits, maxStones);
+        if (this.index.size() > Integer.MAX_VALUE - EndgameDatabase.HEADER_SIZE) {
+            throw new IllegalArgumentException(this.index.size() + " positions do not fit in a single mapped file");
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.values = new byte[(int) this.index.size()];
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: EndgameBuilder pits maxStones file [threads]");
+            System.exit(1);
+        }
+
+        final int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        final EndgameBuilder builder = new EndgameBuilder(Integer.parseInt(args[0]), Integer.parseInt(args[1]), threads);
+
+        final long start = System.nanoTime();
+        builder.build(Paths.get(args[2]));
+        System.out.println(builder.index.size() + " positions solved in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * solves every position and writes the database
+     * @param file the file to write the database to
+     * @throws IOException if the file cannot be written
+     */
+    public void build(final Path file) throws IOException {
+        this.solve();
+
+        final ByteBuffer header = ByteBuffer.allocate(EndgameDatabase.HEADER_SIZE);
+        header.putInt(EndgameDatabase.MAGIC).putInt(EndgameDatabase.VERSION)
+                .putInt(this.index.getPits()).putInt(this.index.getMaxStones()).putLong(this.index.size());
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer body = ByteBuffer.wrap(this.values);
+            while (header.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[] {header, body});
+            }
+        } finally {
+            this.pool.shutdown();
+        }
+    }
+
+    private void solve() {
+        final int cells = 2 * this.index.getPits();
+        final int[] position = new int[cells];
+        for (int stones = 0; stones <= this.index.getMaxStones(); stones++) {
+            final int size = (int) this.index.levelSize(stones);
+
+            // sort the positions of this amount of stones by potential
+            final int maxPotential = stones * this.index.getPits();
+            final int[] potentials = new int[size];
+            final int[] starts = new int[maxPotential + 2];
+            for (int rank = 0; rank < size; rank++) {
+                this.index.position(stones, rank, position);
+                int potential = 0;
+                for (int i = 0; i < cells; i++) {
+                    potential += (i % this.index.getPits() + 1) * position[i];
+                }
+                potentials[rank] = potential;
+                starts[potential + 1]++;
+            }
+            for (int potential = 0; potential <= maxPotential; potential++) {
+                starts[potential + 1] += starts[potential];
+            }
+            final int[] next = starts.clone();
+            final int[] ranks = new int[size];
+            for (int rank = 0; rank < size; rank++) {
+                ranks[next[potentials[rank]]++] = rank;
+            }
+
+            for (int potential = maxPotential; potential >= 0; potential--) {
+                if (starts[potential] < starts[potential + 1]) {
+                    this.pool.invoke(new Layer(stones, ranks, starts[potential], starts[potential + 1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param position the pits of the side to move followed by the opponent's pits
+     * @param stones the sum of the position
+     * @return the stones the side to move gains on its opponent with perfect play
+     */
+    private int solve(final int[] position, final int stones) {
+        final int pits = this.index.getPits();
+        int own = 0;
+        for (int i = 0; i < pits; i++) {
+            own += position[i];
+        }
+        if (own == 0 || own == stones) {
+            // the game is over, the side with stones left puts them in its own store
+            return 2 * own - stones;
+        }
+
+        final int[] cells = new int[2 * pits + 2];
+        System.arraycopy(position, 0, cells, 0, pits);
+        System.arraycopy(position, pits, cells, pits + 1, pits);
+        final Board board = Board.of(pits, cells, Board.PLAYER_ONE);
+
+        int best = Integer.MIN_VALUE;
+        for (int pit = 0; pit < pits; pit++) {
+            if (!board.isLegal(pit)) {
+                continue;
+            }
+
+            final Board child = board.play(pit);
+            int value = child.getStore(Board.PLAYER_ONE) - child.getStore(Board.PLAYER_TWO);
+            if (!child.isGameOver()) {
+                final int rest = this.values[(int) this.index.index(child, child.getSideToMove())];
+                value += child.getSideToMove() == Board.PLAYER_ONE ? rest : -rest;
+            }
+            best = Math.max(best, value);
+        }
+        return best;
+    }
+
+    /**
+     * solves a range of positions of the same amount of stones and potential
+     */
+    private final class Layer extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int stones;
+        private final int[] ranks;
+        private final int from;
+        private final int to;
+
+        private Layer(final int stones, final int[] ranks, final int from, final int to) {
+            this.stones = stones;
+            this.ranks = ranks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > BATCH) {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Layer(this.stones, this.ranks, this.from, middle),
+                        new Layer(this.stones, this.ranks, middle, this.to));
+                return;
+            }
+
+            final int[] position = new int[2 * EndgameBuilder.this.index.getPits()];
+            final long offset = EndgameBuilder.this.index.offset(this.stones);
+            for (int i = this.from; i < this.to; i++) {
+                EndgameBuilder.this.index.position(this.stones, this.ranks[i], position);
+                EndgameBuilder.this.values[(int) (offset + this.ranks[i])] =
+                        (byte) EndgameBuilder.this.solve(position, this.stones);
+            }
+        }
+    }
+}
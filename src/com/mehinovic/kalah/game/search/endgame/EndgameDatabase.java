@@ -0,0 +1,147 @@
+package com.mehinovic.kalah.game.search.endgame;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exact values of every position with few stones left in the pits, as built by the EndgameBuilder.
+ * The file is memory mapped read only, so lookups read straight from the page cache and every
+ * JVM on the machine that opens the same file shares its pages.
+ * The database of the JVM is opened from the file named by the kalah.endgame.db system property.
+ */
+public final class EndgameDatabase {
+
+    /**
+     * system property holding the path of the database file
+     */
+    public static final String PATH_PROPERTY = "kalah.endgame.db";
+
+    /**
+     * returned by probe for boards the database does not cover
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    static final int MAGIC = 0x4B454442;
+    static final int VERSION = 1;
+
+    /**
+     * magic, version, pits, maximum stones and the amount of positions
+     */
+    static final int HEADER_SIZE = 24;
+
+    private static final Logger LOGGER = Logger.getLogger(EndgameDatabase.class.getName());
+
+    private static final EndgameDatabase SHARED = openShared();
+
+    private final PositionIndex index;
+    private final MappedByteBuffer values;
+
+    private EndgameDatabase(final PositionIndex index, final MappedByteBuffer values) {
+        this.index = index;
+        this.values = values;
+    }
+
+    /**
+     * @return the database named by the kalah.endgame.db system property, or null if there is none
+     */
+    public static EndgameDatabase shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param file a database built by the EndgameBuilder
+     * @return the mapped database
+     * @throws IOException if the file cannot be read or is not a database
+     */
+    public static EndgameDatabase open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // reads the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not an endgame database");
+            }
+
+            final int pits = header.getInt();
+            final int maxStones = header.getInt();
+            final long size = header.getLong();
+            if (pits < 1 || maxStones < 0 || maxStones > Byte.MAX_VALUE) {
+                throw new IOException(file + " has an invalid header");
+            }
+
+            final PositionIndex index = new PositionIndex(pits, maxStones);
+            if (size != index.size() || channel.size() != HEADER_SIZE + size) {
+                throw new IOException(file + " does not hold " + index.size() + " positions");
+            }
+
+            // the mapping stays valid after the channel is closed
+            return new EndgameDatabase(index, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size));
+        }
+    }
+
+    private static EndgameDatabase openShared() {
+        final String path = System.getProperty(PATH_PROPERTY);
+        if (path == null) {
+            return null;
+        }
+
+        final Path file = Paths.get(path);
+        if (!Files.isReadable(file)) {
+            LOGGER.warning("Endgame database " + file + " does not exist, searching without it");
+            return null;
+        }
+        try {
+            return open(file);
+        } catch (IOException exc) {
+            LOGGER.log(Level.WARNING, "Cannot open endgame database " + file + ", searching without it", exc);
+            return null;
+        }
+    }
+
+    /**
+     * @return the amount of pits per player of the positions in the database
+     */
+    public int getPits() {
+        return this.index.getPits();
+    }
+
+    /**
+     * @return the largest amount of stones left in the pits the database holds positions for
+     */
+    public int getMaxStones() {
+        return this.index.getMaxStones();
+    }
+
+    /**
+     * @param board a board
+     * @return true if the database holds the value of the board
+     */
+    public boolean covers(final Board board) {
+        return board.getPits() == this.index.getPits()
+                && board.countPitStones(Board.PLAYER_ONE) + board.countPitStones(Board.PLAYER_TWO)
+                        <= this.index.getMaxStones();
+    }
+
+    /**
+     * @param board a board
+     * @return how many stones the side to move gains on its opponent from here on with perfect play by both sides,
+     * stones that are already in the stores do not count, or NOT_FOUND if the database does not cover the board
+     */
+    public int probe(final Board board) {
+        if (!this.covers(board)) {
+            return NOT_FOUND;
+        }
+        return this.values.get((int) this.index.index(board, board.getSideToMove()));
+    }
+}
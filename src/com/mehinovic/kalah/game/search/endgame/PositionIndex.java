@@ -0,0 +1,130 @@
+package com.mehinovic.kalah.game.search.endgame;
+
+import com.mehinovic.kalah.game.board.Board;
+
+/**
+ * Numbers every spread of up to a maximum amount of stones over the pits of both sides.
+ * Positions are seen from the side to move, its pits come first followed by the opponent's pits,
+ * stores do not matter. Positions are ordered by the amount of stones and then by the
+ * combinatorial number system, so every amount of stones is a contiguous range of indexes.
+ */
+final class PositionIndex {
+
+    private final int pits;
+    private final int cells;
+    private final int maxStones;
+
+    /**
+     * counts[r][m] is the amount of ways to spread r stones over m pits
+     */
+    private final long[][] counts;
+    private final long[] offsets;
+
+    PositionIndex(final int pits, final int maxStones) {
+        this.pits = pits;
+        this.cells = 2 * pits;
+        this.maxStones = maxStones;
+
+        this.counts = new long[maxStones + 1][this.cells + 1];
+        for (int r = 0; r <= maxStones; r++) {
+            for (int m = 1; m <= this.cells; m++) {
+                this.counts[r][m] = r == 0 || m == 1 ? 1 : this.counts[r][m - 1] + this.counts[r - 1][m];
+            }
+        }
+
+        this.offsets = new long[maxStones + 2];
+        for (int k = 0; k <= maxStones; k++) {
+            this.offsets[k + 1] = this.offsets[k] + this.counts[k][this.cells];
+        }
+    }
+
+    int getPits() {
+        return this.pits;
+    }
+
+    int getMaxStones() {
+        return this.maxStones;
+    }
+
+    /**
+     * @return the amount of positions with up to the maximum amount of stones
+     */
+    long size() {
+        return this.offsets[this.maxStones + 1];
+    }
+
+    /**
+     * @param stones an amount of stones
+     * @return the index of the first position holding the amount of stones
+     */
+    long offset(final int stones) {
+        return this.offsets[stones];
+    }
+
+    /**
+     * @param stones an amount of stones
+     * @return the amount of positions holding the amount of stones
+     */
+    long levelSize(final int stones) {
+        return this.counts[stones][this.cells];
+    }
+
+    /**
+     * @param board a board of the same amount of pits, with at most the maximum amount of stones in its pits
+     * @param side the side to see the board from
+     * @return the index of the board's position
+     */
+    long index(final Board board, final int side) {
+        int remaining = board.countPitStones(side) + board.countPitStones(1 - side);
+        long index = this.offsets[remaining];
+        for (int i = 0; i < this.cells - 1; i++) {
+            final int value = i < this.pits ? board.getStones(side, i) : board.getStones(1 - side, i - this.pits);
+            index += this.below(remaining, this.cells - i, value);
+            remaining -= value;
+        }
+        return index;
+    }
+
+    /**
+     * @param position the pits of the side to move followed by the opponent's pits
+     * @param stones the sum of the position
+     * @return the index of the position
+     */
+    long index(final int[] position, final int stones) {
+        int remaining = stones;
+        long index = this.offsets[stones];
+        for (int i = 0; i < this.cells - 1; i++) {
+            index += this.below(remaining, this.cells - i, position[i]);
+            remaining -= position[i];
+        }
+        return index;
+    }
+
+    /**
+     * the inverse of index
+     * @param stones the amount of stones of the position
+     * @param rank the index of the position minus offset(stones)
+     * @param position receives the pits of the side to move followed by the opponent's pits
+     */
+    void position(final int stones, long rank, final int[] position) {
+        int remaining = stones;
+        for (int i = 0; i < this.cells - 1; i++) {
+            final int m = this.cells - i;
+            int value = 0;
+            while (rank >= this.below(remaining, m, value + 1)) {
+                value++;
+            }
+            rank -= this.below(remaining, m, value);
+            position[i] = value;
+            remaining -= value;
+        }
+        position[this.cells - 1] = remaining;
+    }
+
+    /**
+     * @return the amount of ways to spread r stones over m pits with fewer than v stones in the first pit
+     */
+    private long below(final int r, final int m, final int v) {
+        return this.counts[r][m] - (v <= r ? this.counts[r - v][m] : 0);
+    }
+}
@@ -0,0 +1,120 @@
+package com.mehinovic.kalah.game.simulation;
+
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.search.AlphaBetaSearch;
+import com.mehinovic.kalah.game.search.SearchEngine;
+import com.mehinovic.kalah.game.search.TranspositionTable;
+import java.util.Random;
+
+/**
+ * The move policies of the simulator
+ */
+public final class MovePolicies {
+
+    /**
+     * the depth of the search policy created by name
+     */
+    private static final int SEARCH_DEPTH = 4;
+
+    private static final MovePolicy RANDOM = new MovePolicy() {
+        @Override
+        public int choose(final Board board, final Random random) {
+            int pit = random.nextInt(board.getPits());
+            while (!board.isLegal(pit)) {
+                pit = (pit + 1) % board.getPits();
+            }
+            return pit;
+        }
+
+        @Override
+        public String toString() {
+            return "random";
+        }
+    };
+
+    private static final MovePolicy GREEDY = new MovePolicy() {
+        @Override
+        public int choose(final Board board, final Random random) {
+            final int side = board.getSideToMove();
+            final int offset = random.nextInt(board.getPits());
+
+            int bestPit = -1;
+            int bestGain = Integer.MIN_VALUE;
+            for (int i = 0; i < board.getPits(); i++) {
+                final int pit = (i + offset) % board.getPits();
+                if (!board.isLegal(pit)) {
+                    continue;
+                }
+
+                // a free move is worth a stone on top of what it puts in the store
+                final Board played = board.play(pit);
+                final int gain = played.getStore(side) - played.getStore(1 - side) + (played.isFreeMove() ? 1 : 0);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestPit = pit;
+                }
+            }
+            return bestPit;
+        }
+
+        @Override
+        public String toString() {
+            return "greedy";
+        }
+    };
+
+    private MovePolicies() {
+    }
+
+    /**
+     * @return a policy that plays a uniformly random legal move
+     */
+    public static MovePolicy random() {
+        return RANDOM;
+    }
+
+    /**
+     * @return a policy that plays the move that gains the most stones right away, ties are broken at random
+     */
+    public static MovePolicy greedy() {
+        return GREEDY;
+    }
+
+    /**
+     * @param engine the search to use, it is called from all simulation threads at once
+     * @param moveBudgetMillis the time a single move may take in milliseconds
+     * @return a policy that plays the best move the search finds
+     */
+    public static MovePolicy search(final SearchEngine engine, final long moveBudgetMillis) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Cannot create a search policy without a search engine!");
+        }
+        return new MovePolicy() {
+            @Override
+            public int choose(final Board board, final Random random) {
+                return engine.search(board, moveBudgetMillis).getBestPit();
+            }
+
+            @Override
+            public String toString() {
+                return "search";
+            }
+        };
+    }
+
+    /**
+     * @param name random, greedy or search
+     * @return the policy of the name, search is a shallow alpha-beta search
+     * @throws IllegalArgumentException if there is no policy of the name
+     */
+    public static MovePolicy forName(final String name) throws IllegalArgumentException {
+        if ("random".equals(name)) {
+            return random();
+        } else if ("greedy".equals(name)) {
+            return greedy();
+        } else if ("search".equals(name)) {
+            return search(new AlphaBetaSearch(SEARCH_DEPTH, TranspositionTable.shared()), 1000);
+        }
+        throw new IllegalArgumentException("Unknown move policy " + name);
+    }
+}
@@ -0,0 +1,17 @@
+package com.mehinovic.kalah.game.simulation;
+
+import com.mehinovic.kalah.game.board.Board;
+import java.util.Random;
+
+/**
+ * Picks the moves of one side of a simulated game, a policy is shared by all simulation threads
+ */
+public interface MovePolicy {
+
+    /**
+     * @param board a board that is not over
+     * @param random the random source of the calling thread
+     * @return a legal pit for the side to move
+     */
+    int choose(Board board, Random random);
+}
@@ -0,0 +1,105 @@
+package com.mehinovic.kalah.game.simulation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of simulated games, added to by all simulation threads without a shared lock
+ */
+public final class SimulationStats {
+
+    private final LongAdder games = new LongAdder();
+    private final LongAdder winsOne = new LongAdder();
+    private final LongAdder winsTwo = new LongAdder();
+    private final LongAdder plies = new LongAdder();
+    private volatile long elapsedNanos;
+
+    /**
+     * adds the results of a batch of games
+     * @param games the amount of games played
+     * @param winsOne the games player one won
+     * @param winsTwo the games player two won
+     * @param plies the moves of all games together
+     */
+    void add(final long games, final long winsOne, final long winsTwo, final long plies) {
+        this.games.add(games);
+        this.winsOne.add(winsOne);
+        this.winsTwo.add(winsTwo);
+        this.plies.add(plies);
+    }
+
+    void setElapsedNanos(final long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the amount of games played
+     */
+    public long getGames() {
+        return this.games.sum();
+    }
+
+    /**
+     * @return the games player one won
+     */
+    public long getWinsOne() {
+        return this.winsOne.sum();
+    }
+
+    /**
+     * @return the games player two won
+     */
+    public long getWinsTwo() {
+        return this.winsTwo.sum();
+    }
+
+    /**
+     * @return the games that ended in a draw
+     */
+    public long getDraws() {
+        return this.getGames() - this.getWinsOne() - this.getWinsTwo();
+    }
+
+    /**
+     * @return the average amount of moves of a game, free moves included
+     */
+    public double getAverageLength() {
+        final long games = this.getGames();
+        return games == 0 ? 0 : this.plies.sum() / (double) games;
+    }
+
+    /**
+     * @return how much more often the player that moves first wins than loses, between -1 and 1
+     */
+    public double getFirstPlayerAdvantage() {
+        final long games = this.getGames();
+        return games == 0 ? 0 : (this.getWinsOne() - this.getWinsTwo()) / (double) games;
+    }
+
+    /**
+     * @return the time the simulation took in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * @return the amount of games played per second
+     */
+    public long getGamesPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.getGames() * 1000000000L / this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        final double games = Math.max(1, this.getGames());
+        return "SimulationStats{"
+                + "games=" + this.getGames()
+                + ", winOne=" + String.format("%.4f", this.getWinsOne() / games)
+                + ", winTwo=" + String.format("%.4f", this.getWinsTwo() / games)
+                + ", draw=" + String.format("%.4f", this.getDraws() / games)
+                + ", averageLength=" + String.format("%.2f", this.getAverageLength())
+                + ", firstPlayerAdvantage=" + String.format("%.4f", this.getFirstPlayerAdvantage())
+                + ", gamesPerSecond=" + this.getGamesPerSecond()
+                + '}';
+    }
+}
@@ -0,0 +1,232 @@
+package com.mehinovic.kalah.game.simulation;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import com.mehinovic.kalah.game.events.KalahEvent;
+import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.events.MoveSummary;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Plays complete games between two move policies on copies of the board, without games, players or listeners,
+ * run with
+ * <pre>java com.mehinovic.kalah.game.simulation.Simulator pits stones games policyOne policyTwo [threads]</pre>
+ * Games are split over a fork/join pool, every thread counts its own batch and adds it to the shared
+ * striped counters once. Before simulating, main cross-checks the board rules against a real game.
+ */
+public final class Simulator {
+
+    /**
+     * games a single task plays before the work is split
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * games played on both a real game and a board by main before simulating
+     */
+    private static final int CROSS_CHECK_GAMES = 1000;
+
+    private final KalahConfiguration configuration;
+    private final Board start;
+    private final MovePolicy one;
+    private final MovePolicy two;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param configuration the configuration to play
+     * @param one the policy of player one
+     * @param two the policy of player two
+     * @param pool the pool to play the games in
+     */
+    public Simulator(final KalahConfiguration configuration, final MovePolicy one, final MovePolicy two,
+            final ForkJoinPool pool) {
+        if (configuration == null || one == null || two == null || pool == null) {
+            throw new IllegalArgumentException("Cannot simulate without a configuration, policies and a pool!");
+        }
+        this.configuration = configuration;
+        this.start = Board.initial(configuration.getPits(), configuration.getStones());
+        this.one = one;
+        this.two = two;
+        this.pool = pool;
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 5) {
+            System.err.println("usage: Simulator pits stones games policyOne policyTwo [threads]");
+            System.exit(1);
+        }
+
+        final KalahConfiguration configuration =
+                new KalahConfiguration(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        final int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        final Simulator simulator = new Simulator(configuration, MovePolicies.forName(args[3]),
+                MovePolicies.forName(args[4]), new ForkJoinPool(threads));
+
+        simulator.crossCheck(CROSS_CHECK_GAMES, new Random());
+        System.out.println(simulator.run(Long.parseLong(args[2])));
+        simulator.pool.shutdown();
+    }
+
+    /**
+     * @param games the amount of games to play
+     * @return the results of the games
+     */
+    public SimulationStats run(final long games) {
+        if (games < 0) {
+            throw new IllegalArgumentException("invalid amount of games " + games);
+        }
+
+        final SimulationStats stats = new SimulationStats();
+        final long start = System.nanoTime();
+        this.pool.invoke(new Batch(stats, games));
+        stats.setElapsedNanos(System.nanoTime() - start);
+        return stats;
+    }
+
+    /**
+     * plays random games on both a real game and a board and compares them after every move
+     * @param games the amount of games to play
+     * @param random the random source to pick the moves with
+     * @throws IllegalStateException if the board and the game differ
+     */
+    public void crossCheck(final int games, final Random random) throws IllegalStateException {
+        for (int i = 0; i < games; i++) {
+            final Kalah game = new Kalah(this.configuration, new SilentListener());
+            final ReplayPlayer playerOne = new ReplayPlayer(game, 1);
+            final ReplayPlayer playerTwo = new ReplayPlayer(game, 2);
+            game.setPlayerOne(playerOne);
+            game.setPlayerTwo(playerTwo);
+            game.startGame();
+
+            Board board = this.start;
+            while (!board.isGameOver()) {
+                final int pit = MovePolicies.random().choose(board, random);
+                board = board.play(pit);
+                ((ReplayPlayer) game.getCurrentPlayer()).play(pit);
+
+                final Board played = Board.of(game);
+                if (played.getHash() != board.getHash() || played.isGameOver() != board.isGameOver()) {
+                    throw new IllegalStateException("The board " + board + " differs from the game " + played);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the side that won, or -1 on a draw
+     */
+    private int play(final Random random, final int[] plies) {
+        Board board = this.start;
+        while (!board.isGameOver()) {
+            final MovePolicy policy = board.getSideToMove() == Board.PLAYER_ONE ? this.one : this.two;
+            board = board.play(policy.choose(board, random));
+            plies[0]++;
+        }
+
+        final int one = board.getStore(Board.PLAYER_ONE);
+        final int two = board.getStore(Board.PLAYER_TWO);
+        return one > two ? Board.PLAYER_ONE : two > one ? Board.PLAYER_TWO : -1;
+    }
+
+    /**
+     * plays a range of games
+     */
+    private final class Batch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SimulationStats stats;
+        private final long games;
+
+        private Batch(final SimulationStats stats, final long games) {
+            this.stats = stats;
+            this.games = games;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.games > BATCH) {
+                final long half = this.games / 2;
+                invokeAll(new Batch(this.stats, half), new Batch(this.stats, this.games - half));
+                return;
+            }
+
+            final Random random = ThreadLocalRandom.current();
+            final int[] plies = new int[1];
+            long winsOne = 0;
+            long winsTwo = 0;
+            for (long i = 0; i < this.games; i++) {
+                final int winner = Simulator.this.play(random, plies);
+                if (winner == Board.PLAYER_ONE) {
+                    winsOne++;
+                } else if (winner == Board.PLAYER_TWO) {
+                    winsTwo++;
+                }
+            }
+            this.stats.add(this.games, winsOne, winsTwo, plies[0]);
+        }
+    }
+
+    /**
+     * Player whose moves are made by the cross check
+     */
+    private static final class ReplayPlayer extends Player {
+
+        private static final long serialVersionUID = 1L;
+
+        private ReplayPlayer(final Kalah game, final int playerId) {
+            super(game, playerId);
+        }
+
+        private void play(final int pitId) {
+            this.distributeFromPit(pitId);
+        }
+    }
+
+    /**
+     * Listener of the cross checked games, which nobody watches
+     */
+    private static final class SilentListener implements KalahListener {
+
+        @Override
+        public Set<KalahEvent> getEvents() {
+            return EnumSet.noneOf(KalahEvent.class);
+        }
+
+        @Override
+        public void gameStart() {}
+
+        @Override
+        public void gameEnd(Player whoWon, Player whoLost) {}
+
+        @Override
+        public void distStart(Player player, Pit fromPit) {}
+
+        @Override
+        public void distEnd(Player player, Pit fromPit) {}
+
+        @Override
+        public void playerSwitch(Player newPlayer) {}
+
+        @Override
+        public void freeMove(Player forPlayer) {}
+
+        @Override
+        public void pitEmpty(Pit pit) {}
+
+        @Override
+        public void stonesAdded(StoneContainer container, int amount) {}
+
+        @Override
+        public void moveSummary(MoveSummary summary) {}
+    }
+}
@@ -0,0 +1,201 @@
+package com.mehinovic.kalah.servlet;
+
+import com.mehinovic.kalah.game.Kalah;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The requests of clients waiting for their opponent to move, by game.
+ * A waiting request holds no thread, it is put in asynchronous mode and parked here until its game changes
+ * or it times out. It is then dispatched back to the servlet, which answers it like any other request
+ * on a thread of the container, so the amount of waiting clients is only bounded by memory and connections.
+ * The answer is written under the lock of the game, a move the opponent plays meanwhile, like the next move
+ * of a free move, is either whole in it or after its version and sent to the next wait
+ */
+final class GameWaiters {
+
+    private static final Logger LOGGER = Logger.getLogger(GameWaiters.class.getName());
+
+    /**
+     * request attribute set on a waiting request once it is dispatched back, so it is answered and not parked again
+     */
+    static final String WOKEN_ATTRIBUTE = "kalah.woken";
+
+    private static final GameWaiters SHARED = new GameWaiters();
+
+    private final ConcurrentMap<Long, Waiters> games = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @return the waiters of the servlets
+     */
+    static GameWaiters shared() {
+        return SHARED;
+    }
+
+    /**
+     * parks a request until the game changes from the version the client has, or the timeout passes
+     * @param req the request, it must support asynchronous mode
+     * @param game the game the client waits for
+     * @param version the version of the game the client has
+     * @param timeoutMillis the time after which the request is answered regardless
+     * @return false if the game is no longer at the version and the request should be answered now
+     */
+    boolean await(final HttpServletRequest req, final Kalah game, final long version, final long timeoutMillis) {
+        if (game.getVersion() != version) {
+            return false;
+        }
+
+        final AsyncContext async = req.startAsync();
+        async.setTimeout(timeoutMillis);
+        final Waiter waiter = new Waiter(game.getId(), async);
+        async.addListener(waiter);
+        this.add(waiter);
+
+        // a move between the first check and adding the waiter did not find it
+        if (game.getVersion() != version) {
+            waiter.wake();
+        }
+        return true;
+    }
+
+    /**
+     * wakes the requests waiting for a game, once it changed or was removed
+     * @param id the identifier of the game
+     */
+    void changed(final long id) {
+        final Waiters waiters = this.games.remove(id);
+        if (waiters == null) {
+            return;
+        }
+
+        final List<Waiter> woken;
+        synchronized (waiters) {
+            waiters.closed = true;
+            woken = new ArrayList<>(waiters.list);
+        }
+        for (Waiter waiter : woken) {
+            waiter.wake();
+        }
+    }
+
+    /**
+     * @return the amount of requests waiting
+     */
+    int size() {
+        return this.size.get();
+    }
+
+    private void add(final Waiter waiter) {
+        while (true) {
+            Waiters waiters = this.games.get(waiter.id);
+            if (waiters == null) {
+                waiters = new Waiters();
+                final Waiters previous = this.games.putIfAbsent(waiter.id, waiters);
+                if (previous != null) {
+                    waiters = previous;
+                }
+            }
+
+            // a closed list is no longer in the map, the next attempt finds or puts a new one
+            synchronized (waiters) {
+                if (!waiters.closed) {
+                    waiters.list.add(waiter);
+                    this.size.incrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void remove(final Waiter waiter) {
+        final Waiters waiters = this.games.get(waiter.id);
+        if (waiters == null) {
+            return;
+        }
+
+        synchronized (waiters) {
+            if (waiters.list.remove(waiter) && waiters.list.isEmpty() && !waiters.closed) {
+                waiters.closed = true;
+                this.games.remove(waiter.id, waiters);
+            }
+        }
+    }
+
+    /**
+     * the requests waiting for one game, usually one, closed once it is taken out of the map
+     */
+    private static final class Waiters {
+
+        private final List<Waiter> list = new ArrayList<>(2);
+        private boolean closed;
+    }
+
+    /**
+     * a parked request, dispatched back to the servlet exactly once by a change, its timeout or an error
+     */
+    private final class Waiter implements AsyncListener {
+
+        private final long id;
+        private final AsyncContext async;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Waiter(final long id, final AsyncContext async) {
+            this.id = id;
+            this.async = async;
+        }
+
+        private void wake() {
+            if (!this.done.compareAndSet(false, true)) {
+                return;
+            }
+
+            GameWaiters.this.size.decrementAndGet();
+            GameWaiters.this.remove(this);
+            try {
+                this.async.getRequest().setAttribute(WOKEN_ATTRIBUTE, Boolean.TRUE);
+                this.async.dispatch();
+            } catch (IllegalStateException exc) {
+                // the client went away and the container completed the request
+                LOGGER.log(Level.FINE, "Cannot dispatch a request waiting for game " + this.id, exc);
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            // answered with the game as it is, the client waits again
+            this.wake();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            if (this.done.compareAndSet(false, true)) {
+                GameWaiters.this.size.decrementAndGet();
+                GameWaiters.this.remove(this);
+                this.async.complete();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            if (this.done.compareAndSet(false, true)) {
+                GameWaiters.this.size.decrementAndGet();
+                GameWaiters.this.remove(this);
+            }
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.mehinovic.kalah.servlet;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.board.Board;
+import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.entity.Player;
+import com.mehinovic.kalah.game.entity.StoneContainer;
+import com.mehinovic.kalah.game.entity.impl.RequestPlayer;
+import com.mehinovic.kalah.game.entity.impl.SearchPlayer;
+import com.mehinovic.kalah.game.events.KalahEvent;
+import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.events.MoveSummary;
+import com.mehinovic.kalah.game.journal.MoveJournal;
+import com.mehinovic.kalah.game.repository.GameRepository;
+import com.mehinovic.kalah.game.search.SearchEngines;
+import com.mehinovic.kalah.game.search.SearchResult;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The new, join, play, undo, redo, jump and load actions of the api on the game of a session,
+ * the endpoints only differ in how they read the action and write the game.
+ * A wait is answered like a load once the game changed, see GameWaiters.
+ * A session plays both players of its game, or one of them when the other plays from another session
+ */
+final class KalahActions {
+
+    private static final Logger LOGGER = Logger.getLogger(KalahActions.class.getName());
+
+    private KalahActions() {
+    }
+
+    /**
+     * @param session the session of the client
+     * @return the game of the session, or null if none was started or it was evicted
+     */
+    static Kalah getGame(final HttpSession session) {
+        final Object id = session.getAttribute(KalahServlet.GAME_KEY);
+        return id instanceof Long ? GameRepository.shared().get((Long) id) : null;
+    }
+
+    /**
+     * @param session the session of the client
+     * @return the id of the player the session plays, SEAT_BOTH if it plays both players of its game
+     */
+    static int getSeat(final HttpSession session) {
+        final Object seat = session.getAttribute(KalahServlet.SEAT_KEY);
+        return seat instanceof Integer ? (Integer) seat : KalahServlet.SEAT_BOTH;
+    }
+
+    /**
+     * starts a new game, the session only keeps its id and replaces the previous one
+     * @param session the session of the client
+     * @param config the configuration of the game
+     * @param computer true if the second player is the computer
+     * @param remote true if the second player joins from another session, the session plays the first player
+     * @return the new game
+     */
+    static Kalah newGame(final HttpSession session, final KalahConfiguration config, final boolean computer,
+            final boolean remote) {
+        final Kalah game = createGame(Kalah.newId(), config, computer);
+        game.setRemote(remote && !computer);
+
+        leaveGame(session);
+        GameRepository.shared().put(game);
+        // journaled once it is in the repository, a snapshot either copies the game or is older than the record
+        final long position = journal(game, null, 0);
+        session.setAttribute(KalahServlet.GAME_KEY, game.getId());
+        if (game.isRemote()) {
+            session.setAttribute(KalahServlet.SEAT_KEY, KalahServlet.SEAT_PLAYER_ONE);
+        } else {
+            session.removeAttribute(KalahServlet.SEAT_KEY);
+        }
+        awaitDurable(position);
+        return game;
+    }
+
+    /**
+     * lets the session play the second player of another session's remote game, the id of the game is the invitation.
+     * Only one session takes the second seat, the sessions already playing the game keep their seats
+     * @param session the session of the client
+     * @param id the identifier of the game
+     * @return the game
+     * @throws IllegalArgumentException if there is no such game, it is not played from two sessions
+     * or its second seat is taken
+     */
+    static Kalah joinGame(final HttpSession session, final long id) throws IllegalArgumentException {
+        final Kalah game = GameRepository.shared().get(id);
+        if (game == null) {
+            throw new IllegalArgumentException("There is no game " + id + ", it may have ended");
+        }
+        if (!(game.getPlayerTwo() instanceof RequestPlayer)) {
+            throw new IllegalArgumentException("Game " + id + " is played against the computer");
+        }
+        if (Long.valueOf(id).equals(session.getAttribute(KalahServlet.GAME_KEY))) {
+            return game;
+        }
+
+        long position = 0;
+        synchronized (game) {
+            if (!game.isRemote()) {
+                throw new IllegalArgumentException("Game " + id + " is played in one browser");
+            }
+            if (game.isSeatTaken()) {
+                throw new IllegalArgumentException("Game " + id + " already has a second player");
+            }
+            game.setSeatTaken(true);
+            position = journalJoin(game);
+        }
+
+        leaveGame(session);
+        session.setAttribute(KalahServlet.GAME_KEY, id);
+        session.setAttribute(KalahServlet.SEAT_KEY, KalahServlet.SEAT_PLAYER_TWO);
+        awaitDurable(position);
+        return game;
+    }
+
+    /**
+     * removes the game of the session when it started it, a joined game belongs to the session that started it
+     * @param session the session of the client
+     */
+    private static void leaveGame(final HttpSession session) {
+        final Object previous = session.getAttribute(KalahServlet.GAME_KEY);
+        if (previous instanceof Long && getSeat(session) != KalahServlet.SEAT_PLAYER_TWO) {
+            GameRepository.shared().remove((Long) previous);
+            // an opponent waiting for a move learns the game is gone
+            GameWaiters.shared().changed((Long) previous);
+        }
+    }
+
+    /**
+     * creates a started game before its first move, for a new game and when the journal is replayed
+     * @param id the identifier of the game
+     * @param config the configuration of the game
+     * @param computer true if the second player is the computer
+     * @return the game
+     */
+    static Kalah createGame(final long id, final KalahConfiguration config, final boolean computer) {
+        final Kalah game = new Kalah(config, new RequestGameListener(), id);
+
+        final Player playerOne = new RequestPlayer(game, 1);
+        final Player playerTwo = computer
+                ? new SearchPlayer(game, 2, SearchEngines.forBoard(config), KalahServlet.COMPUTER_MOVE_MILLIS)
+                : new RequestPlayer(game, 2);
+
+        game.setPlayerOne(playerOne);
+        game.setPlayerTwo(playerTwo);
+        game.startGame();
+        return game;
+    }
+
+    /**
+     * plays a move for the human whose turn it is, and lets the computer answer
+     * @param game the game of the session
+     * @param seat the player the session plays, see getSeat
+     * @param pitId the pit to play
+     * @throws IllegalArgumentException if the pit does not exist
+     * @throws IllegalStateException if it is not the session's turn or the move is not allowed
+     */
+    static void play(final Kalah game, final int seat, final int pitId)
+            throws IllegalArgumentException, IllegalStateException {
+        long position = 0;
+        try {
+            // the moves of a game are journaled in the order they are played
+            synchronized (game) {
+                final Player currentPlayer = game.getCurrentPlayer();
+                if (!(currentPlayer instanceof RequestPlayer)
+                        || (seat != KalahServlet.SEAT_BOTH && currentPlayer.getPlayerId() != seat)) {
+                    throw new IllegalStateException("It is not your turn, please wait for "
+                            + currentPlayer.getPlayerName());
+                }
+
+                // let the current player play the round
+                ((RequestPlayer) currentPlayer).play(pitId);
+                position = journal(game, currentPlayer, pitId);
+            }
+            // and let the computer answer, it may have several moves in a row
+            position = Math.max(position, playComputerMoves(game));
+        } finally {
+            // the game is changed in place, but the computer's search tree may have grown
+            GameRepository.shared().update(game);
+        }
+        awaitDurable(position);
+        GameWaiters.shared().changed(game.getId());
+    }
+
+    /**
+     * takes back the last move of the human, against the computer its answer is taken back with it
+     * @param game the game of the session
+     * @param seat the player the session plays, see getSeat
+     * @throws IllegalStateException if no move was played or the opponent plays from another session
+     */
+    static void undo(final Kalah game, final int seat) throws IllegalStateException {
+        checkTakeBack(seat);
+        long position;
+        synchronized (game) {
+            if (game.getMovesPlayed() == 0) {
+                throw new IllegalStateException("There is no move to take back");
+            }
+            position = step(game, true);
+            position = Math.max(position, undoComputerMoves(game));
+        }
+        awaitDurable(position);
+        GameWaiters.shared().changed(game.getId());
+    }
+
+    /**
+     * plays the last move taken back again, against the computer with the answer it played before
+     * @param game the game of the session
+     * @param seat the player the session plays, see getSeat
+     * @throws IllegalStateException if no move was taken back or the opponent plays from another session
+     */
+    static void redo(final Kalah game, final int seat) throws IllegalStateException {
+        checkTakeBack(seat);
+        long position;
+        synchronized (game) {
+            if (game.getMovesTakenBack() == 0) {
+                throw new IllegalStateException("There is no move to play again");
+            }
+            position = step(game, false);
+            while (game.isEndOfGame() == null && game.getCurrentPlayer() instanceof SearchPlayer
+                    && game.getMovesTakenBack() > 0) {
+                position = Math.max(position, step(game, false));
+            }
+        }
+        // only when the answer was never played, the computer always answers a move
+        position = Math.max(position, playComputerMoves(game));
+        awaitDurable(position);
+        GameWaiters.shared().changed(game.getId());
+    }
+
+    /**
+     * @param seat the player the session plays, see getSeat
+     * @throws IllegalStateException if the opponent plays from another session, they did not agree
+     */
+    private static void checkTakeBack(final int seat) throws IllegalStateException {
+        if (seat != KalahServlet.SEAT_BOTH) {
+            throw new IllegalStateException("Moves cannot be taken back against an opponent in another browser");
+        }
+    }
+
+    /**
+     * takes back or plays again moves until the given amount of moves is played,
+     * against the computer the game goes back to the human's turn before it
+     * @param game the game of the session
+     * @param seat the player the session plays, see getSeat
+     * @param move the amount of moves to be played
+     * @throws IllegalArgumentException if the game has no such move
+     * @throws IllegalStateException if the opponent plays from another session
+     */
+    static void jumpTo(final Kalah game, final int seat, final int move)
+            throws IllegalArgumentException, IllegalStateException {
+        checkTakeBack(seat);
+        long position = 0;
+        synchronized (game) {
+            final int moves = game.getMovesPlayed() + game.getMovesTakenBack();
+            if (move < 0 || move > moves) {
+                throw new IllegalArgumentException("The move must be between 0 and " + moves);
+            }
+            while (game.getMovesPlayed() > move) {
+                position = step(game, true);
+            }
+            while (game.getMovesPlayed() < move) {
+                position = step(game, false);
+            }
+            position = Math.max(position, undoComputerMoves(game));
+        }
+        awaitDurable(position);
+        GameWaiters.shared().changed(game.getId());
+    }
+
+    /**
+     * @param pits the amount of pits per player
+     * @param stones the amount of stones per pit
+     * @return a valid configuration
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    static KalahConfiguration createConfiguration(final int pits, final int stones) throws IllegalArgumentException {
+        checkRange("pits", pits, KalahServlet.MAX_PITS);
+        checkRange("stones", stones, KalahServlet.MAX_STONES);
+
+        return new KalahConfiguration(pits, stones);
+    }
+
+    private static void checkRange(final String name, final int value, final int maxValue) {
+        if (value < 1 || value > maxValue) {
+            throw new IllegalArgumentException("The amount of " + name + " must be between 1 and " + maxValue);
+        }
+    }
+
+    /**
+     * @param game the game to describe
+     * @return the flags of the game's free move and outcome, see KalahServlet
+     */
+    static int getFlags(final Kalah game) {
+        int flags = game.isFreeMove() ? KalahServlet.FLAG_FREE_MOVE : 0;
+        if (game.isEndOfGame() != null) {
+            flags |= KalahServlet.FLAG_GAME_OVER;
+            final Player whoWon = getWinner(game);
+            if (game.getPlayerOne().equals(whoWon)) {
+                flags |= KalahServlet.FLAG_PLAYER_ONE_WON;
+            } else if (game.getPlayerTwo().equals(whoWon)) {
+                flags |= KalahServlet.FLAG_PLAYER_TWO_WON;
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * read from the game rather than told by its listener, taking back a move changes the outcome
+     * @param game the game to describe
+     * @return the player that has a free move after the last move, or null
+     */
+    static Player getFreeMovePlayer(final Kalah game) {
+        // the mover stays the current player after a free move
+        return game.isFreeMove() ? game.getCurrentPlayer() : null;
+    }
+
+    /**
+     * @param game the game to describe
+     * @return the player who won the game, null if it has not ended or is tied
+     */
+    static Player getWinner(final Kalah game) {
+        if (game.isEndOfGame() == null) {
+            return null;
+        }
+
+        final int p1Score = game.getPlayerOne().countStoreStones();
+        final int p2Score = game.getPlayerTwo().countStoreStones();
+        return p1Score == p2Score ? null : p1Score > p2Score ? game.getPlayerOne() : game.getPlayerTwo();
+    }
+
+    /**
+     * @param game the game to describe
+     * @return the player who lost the game, null if it has not ended or is tied
+     */
+    static Player getLoser(final Kalah game) {
+        final Player whoWon = getWinner(game);
+        return whoWon == null ? null : whoWon.getOpponent();
+    }
+
+    /**
+     * lets the computer player play until it is a human's turn or the game has ended.
+     * The game is only locked to copy its board and to play the move, not while the computer searches,
+     * a move found for a board that was changed meanwhile is searched again
+     * @param game the game to play, not locked by the caller
+     * @return the journal position of the last move, 0 if none was journaled
+     */
+    private static long playComputerMoves(final Kalah game) {
+        long position = 0;
+        while (true) {
+            final SearchPlayer computer;
+            final Board board;
+            final long version;
+            synchronized (game) {
+                if (game.isEndOfGame() != null || !(game.getCurrentPlayer() instanceof SearchPlayer)) {
+                    return position;
+                }
+                computer = (SearchPlayer) game.getCurrentPlayer();
+                board = Board.of(game);
+                version = game.getVersion();
+            }
+
+            final SearchResult result = computer.search(board);
+            synchronized (game) {
+                // every move and move taken back is a version
+                if (game.getVersion() == version) {
+                    computer.play(result.getBestPit());
+                    position = Math.max(position, journal(game, computer, result.getBestPit()));
+                }
+            }
+        }
+    }
+
+    /**
+     * takes back the moves of the computer until it is a human's turn, the human cannot play for the computer
+     * @param game the game
+     * @return the journal position of the last step, 0 if none was journaled
+     */
+    private static long undoComputerMoves(final Kalah game) {
+        long position = 0;
+        while (game.getCurrentPlayer() instanceof SearchPlayer && game.isEndOfGame() == null
+                && game.getMovesPlayed() > 0) {
+            position = Math.max(position, step(game, true));
+        }
+        return position;
+    }
+
+    /**
+     * takes back or plays again a move and journals it
+     * @param game the game
+     * @param undo true to take back the last move, false to play the last move taken back again
+     * @return the journal position of the record, 0 if there is no journal
+     */
+    private static long step(final Kalah game, final boolean undo) {
+        if (undo) {
+            game.undo();
+        } else {
+            game.redo();
+        }
+
+        final MoveJournal journal = MoveJournal.shared();
+        if (journal == null) {
+            return 0;
+        }
+
+        try {
+            return undo ? journal.undo(game) : journal.redo(game);
+        } catch (IOException | IllegalStateException exc) {
+            LOGGER.log(Level.WARNING, "Cannot journal game " + game.getId(), exc);
+            return 0;
+        }
+    }
+
+    /**
+     * writes a new game or a move to the journal, a game that cannot be journaled is still played
+     * @param game the game
+     * @param player the player who moved, null for a new game
+     * @param pitId the pit of the move
+     * @return the journal position of the record, 0 if there is no journal
+     */
+    private static long journal(final Kalah game, final Player player, final int pitId) {
+        final MoveJournal journal = MoveJournal.shared();
+        if (journal == null) {
+            return 0;
+        }
+
+        try {
+            return player == null ? journal.newGame(game) : journal.move(player, pitId);
+        } catch (IOException | IllegalStateException exc) {
+            LOGGER.log(Level.WARNING, "Cannot journal game " + game.getId(), exc);
+            return 0;
+        }
+    }
+
+    /**
+     * writes that a session took the second seat of a game to the journal, the seat is still taken if it cannot
+     * @param game the game
+     * @return the journal position of the record, 0 if there is no journal
+     */
+    private static long journalJoin(final Kalah game) {
+        final MoveJournal journal = MoveJournal.shared();
+        if (journal == null) {
+            return 0;
+        }
+
+        try {
+            return journal.join(game);
+        } catch (IOException | IllegalStateException exc) {
+            LOGGER.log(Level.WARNING, "Cannot journal game " + game.getId(), exc);
+            return 0;
+        }
+    }
+
+    /**
+     * waits until the journal has the records up to a position on disk, depending on its durability
+     * @param position the journal position, 0 for none
+     */
+    private static void awaitDurable(final long position) {
+        final MoveJournal journal = MoveJournal.shared();
+        if (journal == null || position == 0) {
+            return;
+        }
+
+        try {
+            journal.awaitDurable(position);
+        } catch (IOException exc) {
+            LOGGER.log(Level.WARNING, "Cannot force the journal", exc);
+        }
+    }
+
+    /**
+     * listens to nothing, the responses read the outcome and free moves from the game
+     */
+    private static class RequestGameListener implements KalahListener {
+
+        @Override
+        public Set<KalahEvent> getEvents() {
+            return EnumSet.noneOf(KalahEvent.class);
+        }
+
+        @Override
+        public void gameStart() {}
+
+        @Override
+        public void gameEnd(Player whoWon, Player whoLost) {}
+
+        @Override
+        public void distStart(Player player, Pit fromPit) {}
+
+        @Override
+        public void distEnd(Player player, Pit fromPit) {}
+
+        @Override
+        public void playerSwitch(Player newPlayer) {}
+
+        @Override
+        public void freeMove(Player forPlayer) {}
+
+        @Override
+        public void pitEmpty(Pit pit) {}
+
+        @Override
+        public void stonesAdded(StoneContainer container, int amount) {}
+
+        @Override
+        public void moveSummary(MoveSummary summary) {}
+    }
+}
@@ -0,0 +1,179 @@
+package com.mehinovic.kalah.servlet;
+
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.entity.Player;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The api for bots and load generators, the same actions as KalahServlet in a binary encoding.
+ * Numbers are unsigned varints, seven bits per byte with the high bit set on every byte but the last.
+ * <p>
+ * The request body is the protocol version byte and the action byte, followed by
+ * the varint pits, the varint stones and the opponent byte for a new game (0 pits or stones for the default),
+ * the varint pitId for a move or the varint amount of moves to jump to. A load, undo and redo have no arguments.
+ * <p>
+ * The response is the version, the flags of KalahServlet, the error code and the current player id,
+ * a byte each, followed by the varint amount of pits and the varint stones of the board:
+ * player one's pits and store followed by player two's pits and store.
+ * Without a game the current player and the amount of pits are 0.
+ */
+@WebServlet(urlPatterns = {
+    "/api/bin"
+})
+public class KalahBinaryServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 2731398507427716903L;
+
+    /**
+     * version of the protocol, the first byte of requests and responses
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * actions of a request
+     */
+    public static final int ACTION_LOAD = 0;
+    public static final int ACTION_NEW = 1;
+    public static final int ACTION_PLAY = 2;
+    public static final int ACTION_UNDO = 3;
+    public static final int ACTION_REDO = 4;
+    public static final int ACTION_JUMP = 5;
+
+    /**
+     * opponents of a new game
+     */
+    public static final int OPPONENT_HUMAN = 0;
+    public static final int OPPONENT_COMPUTER = 1;
+
+    /**
+     * error codes of a response, the game of the session is sent regardless
+     */
+    public static final int ERROR_NONE = 0;
+    public static final int ERROR_MALFORMED = 1;
+    public static final int ERROR_CONFIGURATION = 2;
+    public static final int ERROR_MOVE = 3;
+    public static final int ERROR_NO_GAME = 4;
+
+    /**
+     * the largest response, the header, the pits and a board of five byte varints
+     */
+    private static final int MAX_MESSAGE_SIZE = 4 + 5 + 2 * (KalahServlet.MAX_PITS + 1) * 5;
+
+    /**
+     * every request thread reuses its own buffer, for the request and then for the response
+     */
+    private static final ThreadLocal<VarintBuffer> BUFFER = new ThreadLocal<VarintBuffer>() {
+        @Override
+        protected VarintBuffer initialValue() {
+            return new VarintBuffer(MAX_MESSAGE_SIZE);
+        }
+    };
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        final VarintBuffer buffer = BUFFER.get();
+
+        int action;
+        int pits = 0;
+        int stones = 0;
+        int opponent = OPPONENT_HUMAN;
+        int pitId = 0;
+        int move = 0;
+        int error = ERROR_NONE;
+
+        // read the whole request before touching the game, a malformed one is answered like a load
+        try {
+            buffer.readFrom(req.getInputStream());
+            if (buffer.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported protocol version");
+            }
+
+            action = buffer.readByte();
+            if (action == ACTION_NEW) {
+                pits = buffer.readVarint();
+                stones = buffer.readVarint();
+                opponent = buffer.readByte();
+            } else if (action == ACTION_PLAY) {
+                pitId = buffer.readVarint();
+            } else if (action == ACTION_JUMP) {
+                move = buffer.readVarint();
+            } else if (action != ACTION_LOAD && action != ACTION_UNDO && action != ACTION_REDO) {
+                throw new IllegalArgumentException("Unknown action " + action);
+            }
+        } catch (IllegalArgumentException ex) {
+            action = ACTION_LOAD;
+            error = ERROR_MALFORMED;
+        }
+
+        // create the session if it does not exist
+        final HttpSession session = req.getSession(true);
+
+        Kalah game = KalahActions.getGame(session);
+        if (action == ACTION_NEW) {
+            final KalahConfiguration defaults = new KalahConfiguration();
+            KalahConfiguration config;
+            try {
+                config = KalahActions.createConfiguration(pits == 0 ? defaults.getPits() : pits,
+                        stones == 0 ? defaults.getStones() : stones);
+            } catch (IllegalArgumentException ex) {
+                // fall back to the default board, and let the client know
+                config = defaults;
+                error = ERROR_CONFIGURATION;
+            }
+
+            game = KalahActions.newGame(session, config, opponent == OPPONENT_COMPUTER, false);
+        } else if (action != ACTION_LOAD && game != null) {
+            final int seat = KalahActions.getSeat(session);
+            try {
+                if (action == ACTION_PLAY) {
+                    KalahActions.play(game, seat, pitId);
+                } else if (action == ACTION_UNDO) {
+                    KalahActions.undo(game, seat);
+                } else if (action == ACTION_REDO) {
+                    KalahActions.redo(game, seat);
+                } else {
+                    KalahActions.jumpTo(game, seat, move);
+                }
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                error = ERROR_MOVE;
+            }
+        }
+
+        if (game == null && error == ERROR_NONE) {
+            error = ERROR_NO_GAME;
+        }
+
+        buffer.reset().writeByte(VERSION);
+        if (game == null) {
+            buffer.writeByte(0).writeByte(error).writeByte(0).writeVarint(0);
+        } else {
+            // the moves hold the lock of the game, the flags and the board are read at one position
+            synchronized (game) {
+                buffer.writeByte(KalahActions.getFlags(game))
+                        .writeByte(error)
+                        .writeByte(game.getCurrentPlayer().getPlayerId())
+                        .writeVarint(game.getConfiguration().getPits());
+                this.writeCounts(game.getPlayerOne(), buffer);
+                this.writeCounts(game.getPlayerTwo(), buffer);
+            }
+        }
+
+        resp.setContentType("application/octet-stream");
+        resp.setContentLength(buffer.size());
+        buffer.writeTo(resp.getOutputStream());
+    }
+
+    private void writeCounts(final Player player, final VarintBuffer buffer) {
+        final int pits = player.getGame().getConfiguration().getPits();
+        for (int i = 0; i < pits; i++) {
+            buffer.writeVarint(player.countPitStones(i));
+        }
+        buffer.writeVarint(player.countStoreStones());
+    }
+}
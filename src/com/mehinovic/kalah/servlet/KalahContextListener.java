@@ -0,0 +1,132 @@
+package com.mehinovic.kalah.servlet;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mehinovic.kalah.game.Kalah;
+import com.mehinovic.kalah.game.KalahConfiguration;
+import com.mehinovic.kalah.game.journal.GameFactory;
+import com.mehinovic.kalah.game.journal.MoveJournal;
+import com.mehinovic.kalah.game.repository.GameRemovalListener;
+import com.mehinovic.kalah.game.repository.GameRepository;
+import com.mehinovic.kalah.game.search.SearchEngines;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Plays the games of the move journal again before the first request, journals the games that leave the repository,
+ * snapshots the live games on a schedule and closes the journal on shutdown, after a last snapshot.
+ * On shutdown the threads of the repository and the searches are stopped as well.
+ * The sessions kept by the container across the restart find their games in the repository again
+ */
+@WebListener
+public class KalahContextListener implements ServletContextListener {
+
+    private static final Logger LOGGER = Logger.getLogger(KalahContextListener.class.getName());
+
+    /**
+     * the amount of threads the journal is replayed with
+     */
+    private static final int REPLAY_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * takes the snapshots, null without a journal or when it could not be replayed
+     */
+    private ScheduledExecutorService snapshots;
+
+    @Override
+    public void contextInitialized(final ServletContextEvent event) {
+        final MoveJournal journal = MoveJournal.shared();
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            final Map<Long, Kalah> games = journal.replay(new GameFactory() {
+                @Override
+                public Kalah newGame(final long id, final KalahConfiguration configuration, final boolean computer) {
+                    return KalahActions.createGame(id, configuration, computer);
+                }
+            }, REPLAY_THREADS);
+
+            for (Kalah game : games.values()) {
+                GameRepository.shared().put(game);
+            }
+        } catch (IOException exc) {
+            // a snapshot would delete the segments that could not be replayed
+            LOGGER.log(Level.SEVERE, "Cannot replay the move journal, the games are lost", exc);
+            return;
+        }
+
+        // a game that left the repository is not played again on the next start, evicted or not
+        GameRepository.shared().setRemovalListener(new GameRemovalListener() {
+            @Override
+            public void gameRemoved(final Kalah game) {
+                try {
+                    journal.remove(game);
+                } catch (IOException | IllegalStateException exc) {
+                    LOGGER.log(Level.WARNING, "Cannot journal the removal of game " + game.getId(), exc);
+                }
+            }
+        });
+
+        final long snapshotSeconds = Long.getLong(MoveJournal.SNAPSHOT_SECONDS_PROPERTY,
+                MoveJournal.DEFAULT_SNAPSHOT_SECONDS);
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("kalah-journal-snapshot-%d")
+                .setDaemon(true)
+                .build());
+        this.snapshots.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                KalahContextListener.this.snapshot(journal);
+            }
+        }, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+    }
+
+    private void snapshot(final MoveJournal journal) {
+        try {
+            journal.snapshot(GameRepository.shared());
+        } catch (IOException | RuntimeException exc) {
+            // an exception would cancel the schedule
+            LOGGER.log(Level.WARNING, "Cannot snapshot the games, the journal keeps growing", exc);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent event) {
+        // the threads would keep the classes of the application and its games alive after it is stopped
+        GameRepository.shared().close();
+        SearchEngines.shutdown();
+
+        final MoveJournal journal = MoveJournal.shared();
+        if (journal == null) {
+            return;
+        }
+
+        if (this.snapshots != null) {
+            this.snapshots.shutdown();
+            try {
+                this.snapshots.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+            // the next start only has to load the snapshot
+            this.snapshot(journal);
+        }
+
+        // games evicted after the last snapshot are not in it anyway
+        GameRepository.shared().setRemovalListener(null);
+        try {
+            journal.close();
+        } catch (IOException exc) {
+            LOGGER.log(Level.WARNING, "Cannot force the move journal, the last moves may be lost", exc);
+        }
+    }
+}
@@ -1,15 +1,12 @@
 package com.mehinovic.kalah.servlet;
 
+import com.mehinovic.kalah.game.JsonWriter;
 import com.mehinovic.kalah.game.Kalah;
 import com.mehinovic.kalah.game.KalahConfiguration;
-import com.mehinovic.kalah.game.entity.Pit;
+import com.mehinovic.kalah.game.KalahSerializer;
 import com.mehinovic.kalah.game.entity.Player;
-import com.mehinovic.kalah.game.entity.Stone;
-import com.mehinovic.kalah.game.entity.StoneContainer;
-import com.mehinovic.kalah.game.entity.impl.RequestPlayer;
-import com.mehinovic.kalah.game.events.KalahListener;
+import com.mehinovic.kalah.game.search.SearchEngines;
 import java.io.IOException;
-import java.io.PrintWriter;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -18,155 +15,334 @@ import javax.servlet.http.HttpSession;
 
 @WebServlet(urlPatterns = {
     "/api"
-})
+}, asyncSupported = true)
 public class KalahServlet extends HttpServlet {
 
     private static final long serialVersionUID = -4153650942420492867L;
 
     /**
-     * session key for kalah game
+     * session key for the id of the kalah game, the game itself is kept in the GameRepository
      */
     public static final String GAME_KEY = "kalah.game";
 
+    /**
+     * session key for the player the session plays, absent when it plays both players of its game
+     */
+    public static final String SEAT_KEY = "kalah.seat";
+
+    /**
+     * seats of a session
+     */
+    public static final int SEAT_BOTH = 0;
+    public static final int SEAT_PLAYER_ONE = 1;
+    public static final int SEAT_PLAYER_TWO = 2;
+
+    /**
+     * the time a wait request is parked without a move before it is answered with the unchanged game
+     */
+    public static final long WAIT_MILLIS = 30000;
+
+    /**
+     * largest amount of pits per player a client may ask for
+     */
+    public static final int MAX_PITS = 32;
+
+    /**
+     * largest amount of stones per pit a client may ask for
+     */
+    public static final int MAX_STONES = 64;
+
+    /**
+     * the time the computer player may take for a move
+     */
+    public static final long COMPUTER_MOVE_MILLIS = 250;
+
+    /**
+     * the largest amount of threads the computer player may search a move with
+     */
+    public static final int COMPUTER_SEARCH_THREADS = SearchEngines.THREADS;
+
+    /**
+     * boards with more pits than this are too wide for alpha-beta, the computer plays them with a monte carlo search
+     */
+    public static final int MONTE_CARLO_PITS = SearchEngines.MONTE_CARLO_PITS;
+
+    /**
+     * value of the v parameter asking for the compact response,
+     * the game is only the board and the outcome of the request is sent as flags.
+     * A client passing the id and version of its game in the id and since parameters
+     * is sent a delta of the changed cells instead of the board
+     */
+    public static final String COMPACT_VERSION = "2";
+
+    /**
+     * flags of the compact response
+     */
+    public static final int FLAG_FREE_MOVE = 1;
+    public static final int FLAG_GAME_OVER = 2;
+    public static final int FLAG_PLAYER_ONE_WON = 4;
+    public static final int FLAG_PLAYER_TWO_WON = 8;
+
+    /**
+     * every request thread reuses its own response buffer
+     */
+    private static final ThreadLocal<JsonWriter> RESPONSE_WRITER = new ThreadLocal<JsonWriter>() {
+        @Override
+        protected JsonWriter initialValue() {
+            return new JsonWriter(4096);
+        }
+    };
+
     @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
-        final StringBuilder result = new StringBuilder("{\"game\":");
-        PrintWriter out = null;
-        try {
-            out = resp.getWriter();
-
-            // create the session if it does not exist
-            final HttpSession session = req.getSession(true);
-            final String action = req.getParameter("action");
-
-            final boolean isNew = "new".equals(action);
-            final boolean isPlay = "play".equals(action);
-
-            // get the current game
-            Kalah game = (Kalah) session.getAttribute(GAME_KEY);
-            if (game == null && !isNew) {
-                result.append("null");
-            } else {
-                // keep track of client exceptions
-                Exception exc = null;
-
-                // if the new action was passed, create a new game
-                if (isNew) {
-                    final KalahConfiguration config = new KalahConfiguration();
-
-                    game = new Kalah(config, new RequestGameListener());
-
-                    final Player playerOne = new RequestPlayer(game, 1);
-                    final Player playerTwo = new RequestPlayer(game, 2);
-
-                    game.setPlayerOne(playerOne);
-                    game.setPlayerTwo(playerTwo);
-                    game.startGame();
-                } else if (isPlay) {
-                    try {
-                        // let the current player play the round
-                        ((RequestPlayer)game.getCurrentPlayer()).play(req);
-                    } catch (Exception ex) {
-                        exc = ex;
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        final boolean compact = COMPACT_VERSION.equals(req.getParameter("v"));
+        final JsonWriter json = RESPONSE_WRITER.get().reset();
+        json.beginObject();
+        if (compact) {
+            json.name("v").value(2);
+        }
+
+        // create the session if it does not exist
+        final HttpSession session = req.getSession(true);
+        final String action = req.getParameter("action");
+
+        final boolean isNew = "new".equals(action);
+        final boolean isPlay = "play".equals(action);
+        final boolean isUndo = "undo".equals(action);
+        final boolean isRedo = "redo".equals(action);
+        final boolean isJump = "jump".equals(action);
+        final boolean isJoin = "join".equals(action);
+        final boolean isWait = "wait".equals(action);
+
+        // keep track of client exceptions
+        Exception exc = null;
+
+        // get the current game, or create a new one if the new action was passed
+        Kalah game = KalahActions.getGame(session);
+        if (isNew) {
+            KalahConfiguration config;
+            try {
+                config = this.createConfiguration(req);
+            } catch (IllegalArgumentException ex) {
+                // fall back to the default board, and let the client know
+                config = new KalahConfiguration();
+                exc = ex;
+            }
+
+            final String opponent = req.getParameter("opponent");
+            game = KalahActions.newGame(session, config, "computer".equals(opponent), "remote".equals(opponent));
+        } else if (isJoin) {
+            try {
+                game = KalahActions.joinGame(session, this.getGameId(req));
+            } catch (IllegalArgumentException ex) {
+                exc = ex;
+            }
+        } else if (isWait && game != null && req.getAttribute(GameWaiters.WOKEN_ATTRIBUTE) == null) {
+            // answered once the game changes from the version the client has, without holding this thread
+            final long since = this.getWaitVersion(game, req);
+            if (since >= 0 && GameWaiters.shared().await(req, game, since, WAIT_MILLIS)) {
+                return;
+            }
+        } else if ((isPlay || isUndo || isRedo || isJump) && game != null) {
+            final int seat = KalahActions.getSeat(session);
+            try {
+                if (isPlay) {
+                    KalahActions.play(game, seat, this.getPitId(req));
+                } else if (isUndo) {
+                    KalahActions.undo(game, seat);
+                } else if (isRedo) {
+                    KalahActions.redo(game, seat);
+                } else {
+                    KalahActions.jumpTo(game, seat, this.getMove(req));
+                }
+            } catch (Exception ex) {
+                exc = ex;
+            }
+        }
+
+        if (game == null) {
+            json.name("game").nullValue();
+        } else {
+            // the moves hold the lock of the game, the version, the board, the flags and the move counts
+            // are read at one position so a delta never misses the cells of a move committed meanwhile
+            synchronized (game) {
+                // always return the game state to the client
+                if (compact) {
+                    // a client that is up to date enough only gets the cells changed since its version
+                    final int[] changed = isNew ? null : this.getChangedSince(game, req);
+                    json.name("version").value(game.getVersion());
+                    if (changed == null) {
+                        json.name("id").value(game.getId()).name("game");
+                        KalahSerializer.writeCompact(game, json);
+                    } else {
+                        KalahSerializer.writeDelta(game, changed, json.name("delta"));
                     }
+                    json.name("flags").value(KalahActions.getFlags(game));
+                } else {
+                    KalahSerializer.writeGame(game, json.name("game"));
                 }
 
-                // always save the current game back to session
-                session.setAttribute(GAME_KEY, game);
+                // the moves that can be taken back and played again
+                json.name("moves").value(game.getMovesPlayed());
+                json.name("takenBack").value(game.getMovesTakenBack());
 
-                // always return the game state to the client
-                result.append(game.toString());
+                // the player of a session playing against another browser
+                final int seat = KalahActions.getSeat(session);
+                if (seat != SEAT_BOTH) {
+                    json.name("seat").value(seat);
+                }
 
                 // add the problem to the response
                 if (exc != null) {
-                    result.append(", \"problem\":").append("\"")
-                            .append(exc.getMessage()).append("\"");
+                    json.name("problem").value(exc.getMessage());
                 }
 
-                // check if the player generated a free move
-                final Player freeMovePlayer = ((RequestGameListener)game.getKalahListener()).getFreeMovePlayer();
-                if (freeMovePlayer != null) {
-                    result.append(", \"freeMovePlayer\":").append("\"")
-                            .append(freeMovePlayer.toString()).append("\"");
-                }
+                // the compact flags already hold the free move and the outcome
+                if (!compact) {
+                    // check if the player generated a free move
+                    final Player freeMovePlayer = KalahActions.getFreeMovePlayer(game);
+                    if (freeMovePlayer != null) {
+                        json.name("freeMovePlayer").value(freeMovePlayer.toString());
+                    }
 
-                // check if the game has ended
-                if (game.isEndOfGame() != null) {
-                    // check who won/lost
-                    final Player whoWon = ((RequestGameListener)game.getKalahListener()).getWinner();
-                    final Player whoLost = ((RequestGameListener)game.getKalahListener()).getLoser();
+                    // check if the game has ended
+                    if (game.isEndOfGame() != null) {
+                        // check who won/lost
+                        final Player whoWon = KalahActions.getWinner(game);
+                        final Player whoLost = KalahActions.getLoser(game);
 
-                    if (whoLost == null || whoWon == null) {
-                        result.append(", \"tied\":true");
-                    } else {
-                        result.append(", \"winner\":").append("\"")
-                                .append(whoWon.getPlayerName()).append("\"");
-                        result.append(", \"loser\":").append("\"")
-                                .append(whoLost.getPlayerName()).append("\"");
+                        if (whoLost == null || whoWon == null) {
+                            json.name("tied").value(true);
+                        } else {
+                            json.name("winner").value(whoWon.getPlayerName());
+                            json.name("loser").value(whoLost.getPlayerName());
+                        }
                     }
                 }
             }
-        } catch (IOException ex) {
-        	result.append(", \"problem\":").append("\"")
-            	.append("Error occured while processing your request").append("\"");
-        } finally {
-            resp.setContentType("application/json");
-            if (out != null) {
-                out.println(result.append("}").toString());
-            }
         }
+        json.endObject();
+
+        // the whole response is in the buffer, so its length is known before the first byte is sent
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentLength(json.size());
+        json.writeTo(resp.getOutputStream());
     }
 
     /**
-     * only keeps track of the winner/loser
+     * reads the game and version the client already has from the optional id and since parameters
+     * @param game the game of the session
+     * @param req the request to use to retrieve the parameters
+     * @return the cells changed since the client's version, or null if the client needs the full board
      */
-    private static class RequestGameListener implements KalahListener {
-
-        private Player winner;
-        private Player loser;
-        private Player freeMovePlayer;
-
-        @Override
-        public void gameStart() {}
-
-        @Override
-        public void gameEnd(Player whoWon, Player whoLost) {
-            this.winner = whoWon;
-            this.loser = whoLost;
+    private int[] getChangedSince(final Kalah game, final HttpServletRequest req) {
+        final String id = req.getParameter("id");
+        final String since = req.getParameter("since");
+        if (id == null || since == null) {
+            return null;
         }
 
-        public Player getWinner() {
-            return this.winner;
+        try {
+            // the client may still hold a game this session has replaced
+            if (Long.parseLong(id) != game.getId()) {
+                return null;
+            }
+            return game.getChangedSince(Long.parseLong(since));
+        } catch (NumberFormatException e) {
+            return null;
         }
+    }
 
-        public Player getLoser() {
-            return this.loser;
+    /**
+     * reads the version the client waits on from the id and since parameters
+     * @param game the game of the session
+     * @param req the request to use to retrieve the parameters
+     * @return the version, or -1 if the client has another game or no version and should be answered now
+     */
+    private long getWaitVersion(final Kalah game, final HttpServletRequest req) {
+        try {
+            if (Long.parseLong(req.getParameter("id")) != game.getId()) {
+                return -1;
+            }
+            return Long.parseLong(req.getParameter("since"));
+        } catch (NumberFormatException e) {
+            return -1;
         }
+    }
 
-        public Player getFreeMovePlayer() {
-            return this.freeMovePlayer;
-        }
+    /**
+     * creates the configuration for a new game from the optional pits and stones parameters
+     * @param req the request to use to retrieve the parameters
+     * @return a valid configuration, the default one if no parameters were passed
+     * @throws IllegalArgumentException if a parameter is not a number or out of range
+     */
+    private KalahConfiguration createConfiguration(final HttpServletRequest req) throws IllegalArgumentException {
+        final KalahConfiguration defaults = new KalahConfiguration();
+        final int pits = this.getIntParameter(req, "pits", defaults.getPits());
+        final int stones = this.getIntParameter(req, "stones", defaults.getStones());
 
-        @Override
-        public void distStart(Player player, Pit fromPit) {
-            this.freeMovePlayer = null;
-        }
+        return KalahActions.createConfiguration(pits, stones);
+    }
 
-        @Override
-        public void distEnd(Player player, Pit fromPit) {}
+    /**
+     * retrieves a number from the request
+     * @param req the request to use to retrieve the parameter
+     * @param name the name of the parameter
+     * @param defaultValue the value to use if the parameter was not passed
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter is not a number
+     */
+    private int getIntParameter(final HttpServletRequest req, final String name,
+            final int defaultValue) throws IllegalArgumentException {
+        final String value = req.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
 
-        @Override
-        public void playerSwitch(Player newPlayer) {}
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot parse " + name);
+        }
+    }
 
-        @Override
-        public void freeMove(Player forPlayer) {
-            this.freeMovePlayer = forPlayer;
+    /**
+     * @param req the request to use to retrieve the game to join
+     * @return the identifier of the game
+     * @throws IllegalArgumentException if the game is missing or not a number
+     */
+    private long getGameId(final HttpServletRequest req) throws IllegalArgumentException {
+        try {
+            return Long.parseLong(req.getParameter("game"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot parse game");
         }
+    }
 
-        @Override
-        public void pitEmpty(Pit pit) {}
+    /**
+     * @param req the request to use to retrieve the move
+     * @return the amount of moves to jump to
+     * @throws IllegalArgumentException if the move is missing or not a number
+     */
+    private int getMove(final HttpServletRequest req) throws IllegalArgumentException {
+        try {
+            return Integer.parseInt(req.getParameter("move"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot parse move");
+        }
+    }
 
-        @Override
-        public void stoneAdded(StoneContainer container, Stone stone) {}
+    /**
+     * @param req the request to use to retrieve the pitId
+     * @return the pit to play
+     * @throws IllegalArgumentException if the pitId is missing or not a number
+     */
+    private int getPitId(final HttpServletRequest req) throws IllegalArgumentException {
+        try {
+            return Integer.parseInt(req.getParameter("pitId"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot parse pit Id");
+        }
     }
-}
\ No newline at end of file
+}
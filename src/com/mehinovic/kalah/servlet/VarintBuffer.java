@@ -0,0 +1,121 @@
+package com.mehinovic.kalah.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A reusable byte buffer for the binary protocol, numbers are written as unsigned varints,
+ * seven bits per byte with the high bit set on every byte but the last
+ */
+final class VarintBuffer {
+
+    private final byte[] bytes;
+    private int position;
+    private int limit;
+
+    /**
+     * @param size the largest message the buffer holds
+     */
+    VarintBuffer(final int size) {
+        this.bytes = new byte[size];
+    }
+
+    /**
+     * clears the buffer for the next message
+     * @return this buffer
+     */
+    VarintBuffer reset() {
+        this.position = 0;
+        this.limit = 0;
+        return this;
+    }
+
+    /**
+     * reads a whole message into the buffer
+     * @param in the stream holding the message
+     * @return this buffer
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the message does not fit the buffer
+     */
+    VarintBuffer readFrom(final InputStream in) throws IOException, IllegalArgumentException {
+        this.reset();
+        int read;
+        while ((read = in.read(this.bytes, this.limit, this.bytes.length - this.limit)) > 0) {
+            this.limit += read;
+        }
+        if (read == 0 && in.read() != -1) {
+            throw new IllegalArgumentException("The message is larger than " + this.bytes.length + " bytes");
+        }
+        return this;
+    }
+
+    /**
+     * @return the next byte of the message
+     * @throws IllegalArgumentException if the message has ended
+     */
+    int readByte() throws IllegalArgumentException {
+        if (this.position == this.limit) {
+            throw new IllegalArgumentException("The message ended early");
+        }
+        return this.bytes[this.position++] & 0xFF;
+    }
+
+    /**
+     * @return the next varint of the message
+     * @throws IllegalArgumentException if the message has ended or the varint does not fit an int
+     */
+    int readVarint() throws IllegalArgumentException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = this.readByte();
+            // the fifth byte only has room for the three bits left of a positive int
+            if (shift == 28 && b > 0x07) {
+                break;
+            }
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("The varint is too large");
+    }
+
+    /**
+     * @param value the byte to append, only the low eight bits are written
+     * @return this buffer
+     */
+    VarintBuffer writeByte(final int value) {
+        this.bytes[this.limit++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * @param value the number to append, at least 0
+     * @return this buffer
+     */
+    VarintBuffer writeVarint(final int value) {
+        int rest = value;
+        while (rest >= 0x80) {
+            this.bytes[this.limit++] = (byte) (rest | 0x80);
+            rest >>>= 7;
+        }
+        this.bytes[this.limit++] = (byte) rest;
+        return this;
+    }
+
+    /**
+     * @return the length of the message
+     */
+    int size() {
+        return this.limit;
+    }
+
+    /**
+     * @param out the stream to write the message to
+     * @throws IOException if the stream cannot be written
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        out.write(this.bytes, 0, this.limit);
+    }
+}